@@ -0,0 +1,132 @@
+package features;
+
+import features.lights.PointLight;
+import objects.Group;
+import objects.LinearBVH;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationRendererTest {
+    /**
+     * Moves the camera around the origin and the light from side to side
+     */
+    private static void orbit(int frame, World w, Camera c) {
+        double angle = frame * Math.PI / 8;
+        c.setTransform(World.view_transform(new Point(5 * Math.sin(angle), 1, -5 * Math.cos(angle)),
+            new Point(0, 0, 0), new Vector(0, 1, 0)));
+        w.clearLights();
+        w.addLight(new PointLight(new Point(-10 + frame * 5, 10, -10), new Colour(1, 1, 1)));
+    }
+
+    @Test
+    void testFramesMatchSeparateRenders() throws IOException {
+        World world = World.defaultWorld();
+        Camera camera = new Camera(30, 20, Math.PI / 3);
+
+        List<Canvas> frames = new ArrayList<>();
+        List<AnimationRenderer.FrameTiming> timings;
+        try (AnimationRenderer r = new AnimationRenderer(world, camera, 2)) {
+            r.setTileSize(8);
+            timings = r.render(3, 3, AnimationRendererTest::orbit, (frame, image) -> {
+                assertEquals(3 + frames.size(), frame);
+                frames.add(image);
+            });
+        }
+
+        assertEquals(3, frames.size());
+        assertEquals(3, timings.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3 + i, timings.get(i).frame());
+            assertTrue(timings.get(i).render() > 0);
+            assertTrue(timings.get(i).total() >= timings.get(i).render());
+
+            // Set up from scratch for the frame
+            World w = World.defaultWorld();
+            Camera c = new Camera(30, 20, Math.PI / 3);
+            orbit(3 + i, w, c);
+            Canvas expected = c.render(w.compile());
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 30; x++) {
+                    assertEquals(expected.getPixel(x, y), frames.get(i).getPixel(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testGroupHierarchiesAreKeptBetweenFrames() throws IOException {
+        World world = World.defaultWorld();
+        Group g = new Group();
+        for (int i = 0; i < 20; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(i - 10, 0, 0).scale(0.4, 0.4, 0.4));
+            g.addObject(s);
+        }
+        world.addObject(g);
+
+        List<LinearBVH> hierarchies = new ArrayList<>();
+        try (AnimationRenderer r = new AnimationRenderer(world, new Camera(10, 10, Math.PI / 3), 2)) {
+            r.render(0, 3, (frame, w, c) -> {
+                g.setTransform(Matrix.translation(0, frame, 0));
+                c.setTransform(World.view_transform(new Point(0, frame, -15), new Point(0, frame, 0), new Vector(0, 1, 0)));
+            }, (frame, image) -> hierarchies.add(g.linearBVH()));
+        }
+
+        // Moving the group doesn't rebuild its hierarchy
+        assertNotNull(hierarchies.get(0));
+        assertSame(hierarchies.get(0), hierarchies.get(1));
+        assertSame(hierarchies.get(0), hierarchies.get(2));
+    }
+
+    @Test
+    void testNextFrameIsUpdatedWhileEncoding() throws IOException {
+        // The first frame can't be encoded until the second has been updated
+        CountDownLatch updated = new CountDownLatch(1);
+        List<Boolean> waited = new ArrayList<>();
+        try (AnimationRenderer r = new AnimationRenderer(World.defaultWorld(), new Camera(10, 10, Math.PI / 3), 2)) {
+            r.render(0, 2, (frame, w, c) -> {
+                if (frame == 1) {
+                    updated.countDown();
+                }
+            }, (frame, image) -> {
+                if (frame == 0) {
+                    try {
+                        waited.add(updated.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+            });
+        }
+        assertEquals(List.of(true), waited);
+    }
+
+    @Test
+    void testFailuresStopTheAnimation() {
+        List<Integer> updates = new ArrayList<>();
+        try (AnimationRenderer r = new AnimationRenderer(World.defaultWorld(), new Camera(10, 10, Math.PI / 3), 2)) {
+            IOException e = assertThrows(IOException.class, () -> r.render(0, 5, (frame, w, c) -> updates.add(frame),
+                (frame, image) -> {
+                    throw new IOException("Disk full");
+                }));
+            assertEquals("Disk full", e.getMessage());
+            assertEquals(List.of(0, 1), updates);
+
+            assertThrows(RuntimeException.class, () -> r.render(0, 2, (frame, w, c) -> {
+                throw new RuntimeException("Bad frame");
+            }, (frame, image) -> {}));
+
+            assertThrows(RuntimeException.class, () -> r.setTileSize(0));
+            assertThrows(RuntimeException.class, () -> r.setSamplesPerPixel(0));
+        }
+        assertThrows(RuntimeException.class, () -> new AnimationRenderer(new World(), new Camera(10, 10, 1), 0));
+    }
+}
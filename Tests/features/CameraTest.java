@@ -1,5 +1,6 @@
 package features;
 
+import features.sampling.StratifiedSampler;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -69,4 +70,107 @@ class CameraTest {
         Canvas image = c.render(w);
         assertEquals(new Colour(0.38066, 0.47583, 0.2855), image.getPixel(5, 5));
     }
+
+    @Test
+    void testRayThroughPixelCentre() {
+        Camera c = new Camera(201, 101, Math.PI / 2);
+        c.setTransform(Matrix.rotation_y(Math.PI/4).multiply(Matrix.translation(0,-2, 5)));
+        Ray r1 = c.rayForPixel(37, 12);
+        Ray r2 = c.rayThrough(37.5, 12.5);
+        assertEquals(r1.getOrigin(), r2.getOrigin());
+        assertEquals(r1.getDirection(), r2.getDirection());
+    }
+
+    @Test
+    void testAntiAliasingSettings() {
+        Camera c = new Camera(11, 11, Math.PI / 2);
+        assertEquals(1, c.getMaxSamples());
+
+        c.setAntiAliasing(20, 0.05);
+        assertEquals(16, c.getMaxSamples());
+        assertEquals(0.05, c.getAntiAliasThreshold());
+
+        c.setAntiAliasing(1, 0.05);
+        assertEquals(1, c.getMaxSamples());
+
+        assertThrows(RuntimeException.class, () -> c.setAntiAliasing(0, 0.1));
+        assertThrows(RuntimeException.class, () -> c.setAntiAliasing(4, -0.1));
+    }
+
+    @Test
+    void testAntiAliasingOnlyRefinesEdges() {
+        World w = World.defaultWorld();
+        Camera c = new Camera(21, 21, Math.PI / 3);
+        c.setTransform(World.view_transform(new Point(0, 0, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        Canvas plain = c.render(w);
+
+        c.setAntiAliasing(16, 0.1);
+        Canvas smooth = c.render(w);
+
+        // The background is flat, so only pixels on or within the sphere are
+        // resampled (its shading changes quickly at this size)
+        int changed = 0;
+        for (int y = 0; y < 21; y++) {
+            for (int x = 0; x < 21; x++) {
+                boolean background = y < 6 || y > 14 || x < 6 || x > 14;
+                if (!plain.getPixel(x, y).equals(smooth.getPixel(x, y))) {
+                    assertFalse(background);
+                    changed++;
+                }
+            }
+        }
+        assertTrue(changed > 0);
+        assertTrue(changed < 21 * 21 / 2);
+    }
+
+    @Test
+    void testSampleRaysPassThroughTheirPixel() {
+        Camera c = new Camera(201, 101, Math.PI / 2);
+        c.setSampler(new StratifiedSampler(4));
+
+        Ray centre = c.rayForPixel(100, 50);
+        double pixel = c.getPixelSize();
+        for (int i = 0; i < 4; i++) {
+            Ray r = c.rayForSample(100, 50, i);
+            assertEquals(r.getDirection(), c.rayForSample(100, 50, i).getDirection());
+            // Directions within half a pixel's width of the centre, at z = -1
+            Vector d = r.getDirection().multiply(-1 / r.getDirection().getZ());
+            Vector dc = centre.getDirection().multiply(-1 / centre.getDirection().getZ());
+            assertTrue(Math.abs(d.getX() - dc.getX()) <= pixel / 2 + EPSILON);
+            assertTrue(Math.abs(d.getY() - dc.getY()) <= pixel / 2 + EPSILON);
+        }
+    }
+
+    @Test
+    void testRegionsMatchTheWholeImage() {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = new Camera(40, 30, Math.PI / 3);
+        c.setTransform(World.view_transform(new Point(0, 0, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        Canvas whole = c.render(scene);
+
+        c.setWavefrontSize(8);
+        Canvas crop = c.render(scene, 13, 7, 17, 11);
+        assertEquals(17, crop.getWidth());
+        assertEquals(11, crop.getHeight());
+        for (int y = 0; y < 11; y++) {
+            for (int x = 0; x < 17; x++) {
+                assertEquals(whole.getPixel(x + 13, y + 7), crop.getPixel(x, y));
+            }
+        }
+
+        // Only the region of the target image is changed
+        Canvas image = new Canvas(40, 30);
+        c.render(scene, image, 13, 7, 17, 11);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                boolean inside = x >= 13 && x < 30 && y >= 7 && y < 18;
+                assertEquals(inside ? whole.getPixel(x, y) : new Colour(0, 0, 0), image.getPixel(x, y));
+            }
+        }
+
+        assertThrows(RuntimeException.class, () -> c.render(scene, 30, 0, 11, 5));
+        assertThrows(RuntimeException.class, () -> c.render(scene, -1, 0, 5, 5));
+        assertThrows(RuntimeException.class, () -> c.render(scene, 0, 0, 0, 5));
+        assertThrows(RuntimeException.class, () -> c.render(scene, new Canvas(20, 30), 0, 0, 5, 5));
+    }
 }
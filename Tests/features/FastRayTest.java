@@ -0,0 +1,57 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import static features.Precompute.EPSILON;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastRayTest {
+    @Test
+    void testPrecomputingTheInverseDirectionAndSigns() {
+        Ray r = new Ray(new Point(1, 2, 3), new Vector(2, -4, 0));
+        FastRay f = r.fast();
+
+        assertEquals(1, f.ox);
+        assertEquals(2, f.oy);
+        assertEquals(3, f.oz);
+        assertEquals(0.5, f.invDx, EPSILON);
+        assertEquals(-0.25, f.invDy, EPSILON);
+        assertEquals(Double.POSITIVE_INFINITY, f.invDz);
+        assertEquals(0, f.signX);
+        assertEquals(1, f.signY);
+        assertEquals(0, f.signZ);
+    }
+
+    @Test
+    void testTheFastRayIsOnlyBuiltOnce() {
+        Ray r = new Ray(new Point(0, 0, 0), new Vector(0, 0, 1));
+        assertSame(r.fast(), r.fast());
+    }
+
+    @Test
+    void testEntryDistanceIntoAFloatBox() {
+        float[] box = { -1, -1, -1, 1, 1, 1 };
+
+        FastRay f = new FastRay(0, 0, -5, 0, 0, 1);
+        assertEquals(4, f.entry(box, 0, 0, Double.POSITIVE_INFINITY), EPSILON);
+
+        // Travelling in the negative direction picks the max planes as near
+        f = new FastRay(0, 0, 5, 0, 0, -1);
+        assertEquals(4, f.entry(box, 0, 0, Double.POSITIVE_INFINITY), EPSILON);
+
+        // Starting inside the box enters at the start of the interval
+        f = new FastRay(0, 0, 0, 0, 0, 1);
+        assertEquals(0, f.entry(box, 0, 0, Double.POSITIVE_INFINITY), EPSILON);
+
+        // A box beyond tMax, or behind the ray, is a miss
+        f = new FastRay(0, 0, -5, 0, 0, 1);
+        assertEquals(Double.POSITIVE_INFINITY, f.entry(box, 0, 0, 3));
+        f = new FastRay(0, 0, 5, 0, 0, 1);
+        assertEquals(Double.POSITIVE_INFINITY, f.entry(box, 0, 0, Double.POSITIVE_INFINITY));
+
+        // Boxes can sit anywhere in the array
+        float[] boxes = { 0, 0, 0, 0, 0, 0, 2, -1, -1, 4, 1, 1 };
+        f = new FastRay(0, 0, 0, 1, 0, 0);
+        assertEquals(2, f.entry(boxes, 6, 0, Double.POSITIVE_INFINITY), EPSILON);
+    }
+}
@@ -0,0 +1,102 @@
+package features;
+
+import features.lights.PointLight;
+import objects.GlassSphere;
+import objects.Plane;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegratorTest {
+    /**
+     * The default world with a reflective, transparent floor, a glass ball and
+     * a mirrored ball added
+     */
+    private static World glassWorld() {
+        World w = World.defaultWorld();
+
+        Plane floor = new Plane();
+        floor.setTransform(Matrix.translation(0, -1, 0));
+        Material m = new Material();
+        m.setReflectivity(0.5);
+        m.setTransparency(0.5);
+        m.setRefractiveIndex(1.5);
+        floor.setMaterial(m);
+        w.addObject(floor);
+
+        GlassSphere glass = new GlassSphere();
+        glass.setTransform(Matrix.translation(1.5, 0, -1).scale(0.5, 0.5, 0.5));
+        w.addObject(glass);
+
+        Sphere mirror = new Sphere();
+        m = new Material();
+        m.setReflectivity(0.9);
+        mirror.setMaterial(m);
+        mirror.setTransform(Matrix.translation(-1.5, 0, 1).scale(0.5, 0.5, 0.5));
+        w.addObject(mirror);
+
+        return w;
+    }
+
+    @Test
+    void testIterativeShadingMatchesRecursiveShading() {
+        World w = glassWorld();
+        RenderScene scene = w.compile();
+        Random rnd = new Random(21);
+
+        for (int i = 0; i < 200; i++) {
+            Point target = new Point(rnd.nextDouble() * 4 - 2, rnd.nextDouble() * 2 - 1.5, rnd.nextDouble() * 4 - 2);
+            Point origin = new Point(0, 1, -5);
+            Ray r = new Ray(origin, target.subtract(origin).normalize());
+
+            assertEquals(w.colourAt(r, 5), Integrator.get().trace(scene, r, 5, Termination.EXACT));
+        }
+        assertEquals(0, Integrator.get().pending());
+    }
+
+    @Test
+    void testShadingAKnownHit() {
+        World w = glassWorld();
+        w.addLight(new PointLight(new Point(10, 10, -10), new Colour(0.5, 0.5, 0.5)));
+        RenderScene scene = w.compile();
+
+        Ray r = new Ray(new Point(0, 0, -3), new Vector(0, -Math.sqrt(2)/2, Math.sqrt(2)/2));
+        ArrayList<Intersection> xs = scene.intersect(r);
+        Intersection hit = Intersection.hit(xs);
+        assertNotNull(hit);
+
+        Colour expected = w.shadeHit(new Precompute(hit, r, xs), 5);
+        assertEquals(expected, Integrator.get().shade(scene, new Precompute(hit, r, xs), 5, Termination.EXACT));
+    }
+
+    @Test
+    void testDeepReflectionsDontGrowTheCallStack() {
+        // Two facing mirrors bounce a ray back and forth between them
+        World w = new World();
+        w.addLight(new PointLight(new Point(0, 0, 0), new Colour(1, 1, 1)));
+        Material m = new Material();
+        m.setReflectivity(0.5);
+
+        Plane lower = new Plane();
+        lower.setTransform(Matrix.translation(0, -1, 0));
+        lower.setMaterial(m);
+        w.addObject(lower);
+
+        Plane upper = new Plane();
+        upper.setTransform(Matrix.translation(0, 1, 0));
+        upper.setMaterial(m);
+        w.addObject(upper);
+
+        RenderScene scene = w.compile();
+        Ray r = new Ray(new Point(0, 0, 0), new Vector(0, 1, 0));
+
+        Colour shallow = scene.colourAt(r, 50);
+        Colour deep = scene.colourAt(r, 20000);
+        assertEquals(shallow, deep);
+        assertEquals(0, Integrator.get().pending());
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static features.Precompute.EPSILON;
@@ -117,7 +118,7 @@ class IntersectionTest {
         ));
 
         Precompute comps = new Precompute(xs.get(1), r, xs);
-        assertEquals(1.0, comps.reflectance);
+        assertEquals(1.0, comps.reflectance());
     }
 
     @Test
@@ -130,7 +131,7 @@ class IntersectionTest {
         ));
 
         Precompute comps = new Precompute(xs.get(1), r, xs);
-        assertEquals(0.04, comps.reflectance, EPSILON);
+        assertEquals(0.04, comps.reflectance(), EPSILON);
     }
 
     @Test
@@ -142,6 +143,24 @@ class IntersectionTest {
         ));
 
         Precompute comps = new Precompute(xs.get(0), r, xs);
-        assertEquals(0.48873, comps.reflectance, EPSILON);
+        assertEquals(0.48873, comps.reflectance(), EPSILON);
+    }
+
+    @Test
+    void testShadingADiffuseSurfaceSkipsRefractionBookkeeping() {
+        World w = World.defaultWorld();
+        Ray r = new Ray(new Point(0, 0, -5), new Vector(0, 0, 1));
+        ArrayList<Intersection> xs = r.intersect(w);
+        Collections.sort(xs);
+
+        long scans = Statistics.refractiveScans;
+        Precompute comps = new Precompute(xs.get(0), r, xs);
+        w.shadeHit(comps, 5);
+        assertEquals(scans, Statistics.refractiveScans);
+
+        // ...but the values are still there when asked for
+        assertEquals(1.0, comps.n1());
+        assertEquals(1.0, comps.n2());
+        assertEquals(scans + 1, Statistics.refractiveScans);
     }
 }
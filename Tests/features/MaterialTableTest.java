@@ -0,0 +1,106 @@
+package features;
+
+import objects.Sphere;
+import objects.Triangle;
+import org.junit.jupiter.api.Test;
+import textures.Stripes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaterialTableTest {
+    @Test
+    void testNewShapesShareTheDefaultMaterial() {
+        Sphere s = new Sphere();
+        Triangle t = new Triangle(new Point(0, 1, 0), new Point(-1, 0, 0), new Point(1, 0, 0));
+
+        assertSame(MaterialTable.DEFAULT, s.sharedMaterial());
+        assertSame(MaterialTable.DEFAULT, t.sharedMaterial());
+        assertEquals(new Material(), MaterialTable.DEFAULT);
+
+        s.setMaterial(new Material());
+        assertSame(MaterialTable.DEFAULT, s.sharedMaterial());
+    }
+
+    @Test
+    void testEqualMaterialsShareAnEntry() {
+        Material m1 = new Material();
+        m1.setColour(new Colour(0.25, 0.5, 0.75));
+        Material m2 = new Material();
+        m2.setColour(new Colour(0.25, 0.5, 0.75));
+
+        Material entry = MaterialTable.intern(m1);
+        assertSame(entry, MaterialTable.intern(m2));
+        assertNotSame(m1, entry);
+        assertEquals(m1, entry);
+
+        // Changing the original afterwards doesn't touch the table's copy
+        m1.setAmbient(0.7);
+        assertEquals(0.1, entry.getAmbient());
+        assertNotSame(entry, MaterialTable.intern(m1));
+
+        // Nor does changing the copy handed out by a shape
+        Sphere s = new Sphere();
+        s.setMaterial(m2);
+        s.getMaterial().setDiffuse(0.1);
+        assertEquals(0.9, s.sharedMaterial().getDiffuse());
+    }
+
+    @Test
+    void testMaterialsDifferingOnlyInPatternTransformAreKeptApart() {
+        Colour white = new Colour(1, 1, 1);
+        Colour black = new Colour(0, 0, 0);
+
+        Material m1 = new Material();
+        m1.setPattern(new Stripes(white, black));
+        Material m2 = new Material();
+        Stripes scaled = new Stripes(white, black);
+        scaled.setTransform(Matrix.scaling(2, 2, 2));
+        m2.setPattern(scaled);
+        Material m3 = new Material();
+        m3.setRefractiveIndex(1.5);
+
+        assertNotSame(MaterialTable.intern(m1), MaterialTable.intern(m2));
+        assertNotSame(MaterialTable.DEFAULT, MaterialTable.intern(m3));
+    }
+
+    @Test
+    void testTableGrowsAsMaterialsAreAdded() {
+        Material[] entries = new Material[100];
+
+        for (int i = 0; i < entries.length; i++) {
+            Material m = new Material();
+            m.setShininess(1000 + i);
+            entries[i] = MaterialTable.intern(m);
+        }
+
+        // Entries still in use are all kept
+        assertTrue(MaterialTable.size() >= 100);
+        for (int i = 0; i < entries.length; i++) {
+            Material m = new Material();
+            m.setShininess(1000 + i);
+            assertSame(entries[i], MaterialTable.intern(m));
+        }
+    }
+
+    @Test
+    void testUnusedMaterialsAreCollected() throws InterruptedException {
+        // A shape given a new colour 10,000 times, as an animation might
+        Sphere s = new Sphere();
+        for (int i = 0; i < 10000; i++) {
+            Material m = new Material();
+            m.setColour(new Colour(i / 10000.0, 0.5, 0.5));
+            s.setMaterial(m);
+        }
+
+        for (int attempt = 0; attempt < 50 && MaterialTable.size() > 100; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(MaterialTable.size() <= 100);
+
+        // The material still in use is kept
+        Material m = new Material();
+        m.setColour(new Colour(9999 / 10000.0, 0.5, 0.5));
+        assertSame(s.sharedMaterial(), MaterialTable.intern(m));
+    }
+}
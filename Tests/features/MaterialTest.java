@@ -240,7 +240,7 @@ class MaterialTest {
         Intersection i = new Intersection(Math.sqrt(2), plane);
         Precompute comps = new Precompute(i, r);
 
-        assertEquals(new Vector(0, Math.sqrt(2)/2, Math.sqrt(2)/2), comps.reflectv);
+        assertEquals(new Vector(0, Math.sqrt(2)/2, Math.sqrt(2)/2), comps.reflectv());
     }
 
     @Test
@@ -391,8 +391,8 @@ class MaterialTest {
 
         for (int i = 0; i < xs.size(); i++) {
             Precompute comps = new Precompute(xs.get(i), r, xs);
-            assertEquals(n1ary[i], comps.n1);
-            assertEquals(n2ary[i], comps.n2);
+            assertEquals(n1ary[i], comps.n1());
+            assertEquals(n2ary[i], comps.n2());
         }
     }
 
@@ -405,7 +405,7 @@ class MaterialTest {
         ArrayList<Intersection> xs = new ArrayList<>();
         xs.add(i);
         Precompute comps = new Precompute(i, r, xs);
-        assertTrue(comps.under_point.getZ() > EPSILON/2);
-        assertTrue(comps.point.getZ() < comps.under_point.getZ());
+        assertTrue(comps.under_point().getZ() > EPSILON/2);
+        assertTrue(comps.point.getZ() < comps.under_point().getZ());
     }
 }
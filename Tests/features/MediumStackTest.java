@@ -0,0 +1,77 @@
+package features;
+
+import objects.GlassSphere;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediumStackTest {
+    @Test
+    void testEnteringAndLeavingShapes() {
+        GlassSphere a = new GlassSphere();
+        Sphere b = new Sphere();
+        Material m = new Material();
+        m.setRefractiveIndex(2.0);
+        b.setMaterial(m);
+
+        MediumStack media = new MediumStack();
+        assertEquals(MediumStack.VACUUM, media.current());
+
+        media.cross(a);
+        assertEquals(1.5, media.current());
+        media.cross(b);
+        assertEquals(2.0, media.current());
+
+        // Leaving a shape which isn't on top of the stack
+        media.cross(a);
+        assertEquals(1, media.depth());
+        assertEquals(2.0, media.current());
+
+        media.cross(b);
+        assertEquals(0, media.depth());
+        assertEquals(MediumStack.VACUUM, media.current());
+    }
+
+    @Test
+    void testEqualShapesAreDistinctMedia() {
+        // Two identical spheres in the same place are equal(), but the ray
+        // still has to leave both of them
+        GlassSphere a = new GlassSphere();
+        GlassSphere b = new GlassSphere();
+        assertEquals(a, b);
+
+        MediumStack media = new MediumStack();
+        media.cross(a);
+        media.cross(b);
+        assertEquals(2, media.depth());
+    }
+
+    @Test
+    void testDeeplyNestedGlass() {
+        int count = 40;
+        ArrayList<Intersection> xs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GlassSphere s = new GlassSphere();
+            s.setTransform(Matrix.scaling(count - i, count - i, count - i));
+            Material m = new Material(s.getMaterial());
+            m.setRefractiveIndex(1.0 + i / 100.0);
+            s.setMaterial(m);
+            xs.add(new Intersection(i, s));
+            xs.add(new Intersection(2 * count - i, s));
+        }
+        Intersection.hit(xs);
+
+        Ray r = new Ray(new Point(0, 0, -2 * count), new Vector(0, 0, 1));
+        // Entering the innermost sphere, and then leaving it
+        Precompute comps = new Precompute(xs.get(count - 1), r, xs);
+        assertEquals(1.38, comps.n1(), Precompute.EPSILON);
+        assertEquals(1.39, comps.n2(), Precompute.EPSILON);
+
+        comps = new Precompute(xs.get(count), r, xs);
+        assertEquals(1.39, comps.n1(), Precompute.EPSILON);
+        assertEquals(1.38, comps.n2(), Precompute.EPSILON);
+    }
+}
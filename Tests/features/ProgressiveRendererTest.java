@@ -0,0 +1,93 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static features.RenderTestSupport.assertSameImage;
+import static features.RenderTestSupport.camera;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressiveRendererTest {
+    @Test
+    void testFullResolutionPassMatchesNormalRender() {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(40, 30);
+        Canvas expected = c.render(scene);
+
+        ProgressiveRenderer p = new ProgressiveRenderer(c);
+        p.setMaxSamples(1);
+        List<Integer> samples = new ArrayList<>();
+        p.addListener((pass, n, image) -> samples.add(n));
+        Canvas image = p.render(scene);
+
+        // 16x16, 8x8, 4x4, 2x2 and finally single pixel blocks
+        assertEquals(List.of(0, 0, 0, 0, 1), samples);
+        assertSameImage(expected, image);
+    }
+
+    @Test
+    void testCoarsePassesFillBlocks() {
+        RenderScene scene = World.defaultWorld().compile();
+        ProgressiveRenderer p = new ProgressiveRenderer(camera(40, 30));
+        p.setMaxSamples(1);
+        List<Canvas> passes = new ArrayList<>();
+        p.addListener((pass, n, image) -> {
+            if (pass == 1) {
+                Canvas copy = new Canvas(image.getWidth(), image.getHeight());
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        copy.setPixel(x, y, image.getPixel(x, y));
+                    }
+                }
+                passes.add(copy);
+            }
+        });
+        p.render(scene);
+
+        Canvas first = passes.get(0);
+        for (int y = 0; y < first.getHeight(); y++) {
+            for (int x = 0; x < first.getWidth(); x++) {
+                assertEquals(first.getPixel(x / 16 * 16, y / 16 * 16), first.getPixel(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testSamplePassesStopAtConvergence() {
+        RenderScene scene = World.defaultWorld().compile();
+        ProgressiveRenderer p = new ProgressiveRenderer(camera(40, 30));
+        p.setMaxSamples(32);
+        List<Integer> samples = new ArrayList<>();
+        p.addListener((pass, n, image) -> samples.add(n));
+
+        p.setConvergenceThreshold(1);
+        p.render(scene);
+        assertEquals(2, (int) samples.get(samples.size() - 1));
+
+        samples.clear();
+        p.setConvergenceThreshold(0);
+        p.setMaxSamples(4);
+        p.render(scene);
+        assertEquals(List.of(0, 0, 0, 0, 1, 2, 3, 4), samples);
+    }
+
+    @Test
+    void testTimeLimitStillGivesAnImage() {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(40, 30);
+        ProgressiveRenderer p = new ProgressiveRenderer(c);
+        p.setTimeLimit(Duration.ZERO);
+        List<Integer> passes = new ArrayList<>();
+        p.addListener((pass, n, image) -> passes.add(pass));
+
+        Canvas image = p.render(scene);
+        assertEquals(List.of(1), passes);
+        // The coarse pass covers the sphere in the middle of the image
+        assertNotEquals(new Colour(0, 0, 0), image.getPixel(16, 16));
+
+        assertNotNull(c.render(scene, Duration.ofMillis(1)));
+    }
+}
@@ -0,0 +1,91 @@
+package features;
+
+import objects.Group;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import static features.Precompute.EPSILON;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RayPacketTest {
+    private static Group sphereCloud(int count, long seed) {
+        Random rnd = new Random(seed);
+        Group g = new Group();
+        for (int i = 0; i < count; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(rnd.nextDouble() * 20 - 10, rnd.nextDouble() * 20 - 10, rnd.nextDouble() * 20 - 10)
+                .scale(0.5, 0.5, 0.5));
+            g.addObject(s);
+        }
+        return g;
+    }
+
+    @Test
+    void testPacketSizeLimits() {
+        assertThrows(RuntimeException.class, () -> new RayPacket(new Ray[0]));
+        assertThrows(RuntimeException.class, () -> new RayPacket(new Ray[RayPacket.MAX_SIZE + 1]));
+
+        Ray[] rays = new Ray[RayPacket.MAX_SIZE];
+        for (int i = 0; i < rays.length; i++) {
+            rays[i] = new Ray(new Point(0, 0, 0), new Vector(0, 0, 1));
+        }
+        RayPacket p = new RayPacket(rays);
+        assertEquals(-1L, p.allRays());
+        assertEquals(0b111, new RayPacket(new Ray[] {rays[0], rays[1], rays[2]}).allRays());
+    }
+
+    @Test
+    void testPacketIntersectionsMatchSingleRays() {
+        Group g = sphereCloud(300, 7);
+        g.setTransform(Matrix.rotation_y(0.3));
+        g.buildLinearBVH();
+
+        // A coherent 8x8 fan of rays, as a camera would produce
+        Ray[] rays = new Ray[64];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                rays[y * 8 + x] = new Ray(new Point(0, 0, -30),
+                    new Vector((x - 3.5) * 0.03, (y - 3.5) * 0.03, 1).normalize());
+            }
+        }
+
+        RayPacket packet = new RayPacket(rays);
+        g.intersect(packet);
+
+        for (int i = 0; i < rays.length; i++) {
+            ArrayList<Intersection> expected = g.intersect(rays[i]);
+            ArrayList<Intersection> actual = packet.hits(i);
+            Collections.sort(actual);
+
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.get(j).getTime(), actual.get(j).getTime(), EPSILON);
+                assertSame(expected.get(j).getShape(), actual.get(j).getShape());
+            }
+        }
+    }
+
+    @Test
+    void testPacketRenderMatchesSingleRayRender() {
+        World w = World.defaultWorld();
+        Camera c = new Camera(11, 11, Math.PI / 2);
+        c.setTransform(World.view_transform(new Point(0, 0, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        Canvas expected = c.render(w);
+
+        assertThrows(RuntimeException.class, () -> c.setPacketSize(9));
+        c.setPacketSize(4);
+        assertEquals(4, c.getPacketSize());
+        Canvas actual = c.render(w);
+
+        for (int y = 0; y < 11; y++) {
+            for (int x = 0; x < 11; x++) {
+                assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+            }
+        }
+        assertEquals(new Colour(0.38066, 0.47583, 0.2855), actual.getPixel(5, 5));
+    }
+}
@@ -0,0 +1,62 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RayQueueTest {
+    private static int octant(Ray r) {
+        Vector d = r.getDirection();
+        return (d.getX() < 0 ? 4 : 0) | (d.getY() < 0 ? 2 : 0) | (d.getZ() < 0 ? 1 : 0);
+    }
+
+    @Test
+    void testMortonCodesInterleaveBits() {
+        assertEquals(0, RayQueue.morton(0, 0, 0));
+        assertEquals(1, RayQueue.morton(0, 0, 1));
+        assertEquals(2, RayQueue.morton(0, 1, 0));
+        assertEquals(4, RayQueue.morton(1, 0, 0));
+        assertEquals(7, RayQueue.morton(1, 1, 1));
+        assertEquals(0b111000, RayQueue.morton(2, 2, 2));
+        assertEquals((1L << 30) - 1, RayQueue.morton(1023, 1023, 1023));
+    }
+
+    @Test
+    void testSortingKeepsEachRaysData() {
+        Random rnd = new Random(31);
+        RayQueue queue = new RayQueue(4);
+        HashMap<Ray, Integer> pixels = new HashMap<>();
+
+        for (int i = 0; i < 500; i++) {
+            Ray r = new Ray(new Point(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble()),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5).normalize());
+            queue.add(r, i, i, i * 2, i * 3, i % 5);
+            pixels.put(r, i);
+        }
+        queue.sortByCoherence();
+
+        assertEquals(500, queue.size());
+        Set<Integer> octantsSeen = new HashSet<>();
+        int lastOctant = -1;
+        for (int i = 0; i < queue.size(); i++) {
+            int p = pixels.get(queue.ray(i));
+            assertEquals(p, queue.pixel(i));
+            assertEquals(p, queue.weight(i, 0));
+            assertEquals(p * 2, queue.weight(i, 1));
+            assertEquals(p * 3, queue.weight(i, 2));
+            assertEquals(p % 5, queue.depth(i));
+
+            // Each octant forms a single run
+            int octant = octant(queue.ray(i));
+            if (octant != lastOctant) {
+                assertTrue(octantsSeen.add(octant));
+                lastOctant = octant;
+            }
+        }
+    }
+}
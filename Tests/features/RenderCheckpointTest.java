@@ -0,0 +1,57 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+import objects.Sphere;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCheckpointTest {
+    @Test
+    void testCheckpointsSurviveSaving() throws IOException {
+        Path dir = Files.createTempDirectory("checkpoint");
+        Path file = dir.resolve("render.ckpt");
+        assertNull(RenderCheckpoint.read(file));
+
+        // A 5x3 image in 4x4 tiles: a full tile, and a 1x3 one not started
+        RenderCheckpoint.Tile[] tiles = {
+            new RenderCheckpoint.Tile(2, new double[] {
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+                19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36}),
+            RenderCheckpoint.Tile.EMPTY
+        };
+        new RenderCheckpoint(42, 1, 2, 5, 3, 4, 2, tiles).write(file);
+
+        RenderCheckpoint c = RenderCheckpoint.read(file);
+        assertTrue(c.matches(42, 1, 2, 5, 3, 4, 2));
+        assertFalse(c.matches(43, 1, 2, 5, 3, 4, 2));
+        assertFalse(c.matches(42, 0, 2, 5, 3, 4, 2));
+        assertFalse(c.matches(42, 1, 2, 5, 3, 4, 3));
+        assertEquals(2, c.tiles[0].samples());
+        assertArrayEquals(tiles[0].sums(), c.tiles[0].sums());
+        assertEquals(0, c.tiles[1].samples());
+        assertFalse(Files.exists(dir.resolve("render.ckpt.tmp")));
+
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> RenderCheckpoint.read(file));
+        Files.delete(file);
+        Files.delete(dir);
+    }
+
+    @Test
+    void testSceneHashIdentifiesTheRender() {
+        Camera c = new Camera(50, 40, Math.PI / 3);
+        long hash = RenderCheckpoint.sceneHash(World.defaultWorld(), c);
+        assertEquals(hash, RenderCheckpoint.sceneHash(World.defaultWorld(), c));
+
+        World w = World.defaultWorld();
+        w.addObject(new Sphere());
+        assertNotEquals(hash, RenderCheckpoint.sceneHash(w, c));
+
+        c.setTransform(Matrix.translation(0, 1, 0));
+        assertNotEquals(hash, RenderCheckpoint.sceneHash(World.defaultWorld(), c));
+    }
+}
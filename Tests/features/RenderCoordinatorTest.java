@@ -0,0 +1,144 @@
+package features;
+
+import objects.Shape;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static features.RenderTestSupport.assertSameImage;
+import static features.RenderTestSupport.camera;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCoordinatorTest {
+    private static CompletableFuture<Integer> worker(int port, int threads) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new RenderWorker("localhost", port, threads).run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, runnable -> new Thread(runnable).start());
+    }
+
+    @Test
+    void testWorldsSurviveSerialisation() throws Exception {
+        World w = World.defaultWorld();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(w);
+        }
+        World copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (World) in.readObject();
+        }
+
+        assertEquals(w.objectCount(), copy.objectCount());
+        for (int i = 0; i < w.objectCount(); i++) {
+            Shape a = w.getObjects().get(i);
+            Shape b = copy.getObjects().get(i);
+            assertEquals(a.getMaterial(), b.getMaterial());
+            assertSame(a.sharedMaterial(), b.sharedMaterial());
+            assertEquals(a.getTransform(), b.getTransform());
+        }
+        assertSameImage(camera(50, 40).render(w.compile()), camera(50, 40).render(copy.compile()));
+    }
+
+    @Test
+    void testWorkersRenderTheImage() throws Exception {
+        World w = World.defaultWorld();
+        Camera c = camera(50, 40);
+        c.setPacketSize(4);
+
+        try (RenderCoordinator coordinator = new RenderCoordinator(w, c)) {
+            coordinator.setTileSize(8);
+            int port = coordinator.listen(0);
+            CompletableFuture<Integer> a = worker(port, 3);
+            CompletableFuture<Integer> b = worker(port, 1);
+
+            assertSameImage(c.render(w.compile()), coordinator.result().get(30, TimeUnit.SECONDS));
+            // 7 x 5 tiles between them
+            assertEquals(35, (int) a.get(30, TimeUnit.SECONDS) + b.get(30, TimeUnit.SECONDS));
+            assertEquals(0, coordinator.reassignedTiles());
+            assertThrows(RuntimeException.class, () -> coordinator.setTileSize(16));
+            assertThrows(RuntimeException.class, () -> coordinator.setWorkerTimeout(Duration.ZERO));
+            assertThrows(RuntimeException.class, () -> coordinator.setWorkerTimeout(Duration.ofNanos(10)));
+            assertThrows(RuntimeException.class, () -> coordinator.setWorkerTimeout(Duration.ofSeconds(-1)));
+            assertEquals(Duration.ofMinutes(5), coordinator.getWorkerTimeout());
+        }
+        assertThrows(RuntimeException.class, () -> new RenderWorker("localhost", 1, 0));
+    }
+
+    @Test
+    void testTilesOfLostWorkersAreReassigned() throws Exception {
+        World w = World.defaultWorld();
+        Camera c = camera(50, 40);
+
+        try (RenderCoordinator coordinator = new RenderCoordinator(w, c)) {
+            int port = coordinator.listen(0);
+
+            // A worker with 2 threads which takes the scene and its first
+            // tiles (one per thread and a spare), then dies
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(s.getInputStream());
+                DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                assertEquals(RenderCoordinator.MAGIC, in.readInt());
+                in.readFully(new byte[in.readInt()]);
+                out.writeInt(2);
+                out.flush();
+                for (int i = 0; i < 3 * 5; i++) {
+                    in.readInt();
+                }
+            }
+
+            CompletableFuture<Integer> survivor = worker(port, 2);
+            assertSameImage(c.render(w.compile()), coordinator.result().get(30, TimeUnit.SECONDS));
+            assertEquals(4, (int) survivor.get(30, TimeUnit.SECONDS));
+            assertEquals(3, coordinator.reassignedTiles());
+        }
+    }
+
+    @Test
+    void testWorkerProcesses() throws Exception {
+        World w = World.defaultWorld();
+        Camera c = camera(50, 40);
+        String java = System.getProperty("java.home") + File.separator +"bin"+ File.separator +"java";
+
+        try (RenderCoordinator coordinator = new RenderCoordinator(w, c)) {
+            coordinator.setTileSize(10);
+            int port = coordinator.listen(0);
+
+            List<Process> workers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                workers.add(new ProcessBuilder(java, "--add-modules", "jdk.incubator.vector",
+                    "-cp", System.getProperty("java.class.path"), RenderWorker.class.getName(), "localhost", String.valueOf(port))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start());
+            }
+
+            try {
+                assertSameImage(c.render(w.compile()), coordinator.result().get(60, TimeUnit.SECONDS));
+                // A worker too slow to start to get any tiles finds nobody
+                // listening and gives up, so either way both stop
+                for (Process p: workers) {
+                    assertTrue(p.waitFor(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                workers.forEach(Process::destroyForcibly);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static features.RenderTestSupport.assertSameImage;
+import static features.RenderTestSupport.camera;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderJobTest {
+    @Test
+    void testJobRendersTheSameImage() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 40);
+        Canvas expected = c.render(scene);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            RenderJob job = new RenderJob(c, scene);
+            job.setTileSize(16);
+            job.setExecutor(pool);
+            AtomicInteger tiles = new AtomicInteger();
+            AtomicInteger lastProgress = new AtomicInteger();
+            job.addListener(new RenderJob.Listener() {
+                @Override
+                public void progress(int tilesDone, int total) {
+                    assertEquals(12, total);
+                    lastProgress.accumulateAndGet(tilesDone, Math::max);
+                }
+
+                @Override
+                public void tileComplete(int left, int top, int width, int height, Canvas image) {
+                    tiles.incrementAndGet();
+                    assertEquals(0, left % 16);
+                    assertEquals(0, top % 16);
+                }
+            });
+
+            assertSameImage(expected, job.start().get(30, TimeUnit.SECONDS));
+            assertEquals(12, tiles.get());
+            assertEquals(12, lastProgress.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testPacketAndWavefrontModesAreUsedForTiles() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 40);
+        Canvas expected = c.render(scene);
+
+        c.setPacketSize(4);
+        assertSameImage(expected, c.renderAsync(scene).get(30, TimeUnit.SECONDS));
+
+        c.setWavefrontSize(16);
+        assertSameImage(expected, c.renderAsync(scene).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCancellingStopsTheJob() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            RenderJob job = new RenderJob(camera(50, 40), scene);
+            job.setTileSize(10);
+            job.setExecutor(pool);
+
+            AtomicInteger tiles = new AtomicInteger();
+            CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+            job.addListener(new RenderJob.Listener() {
+                @Override
+                public void tileComplete(int left, int top, int width, int height, Canvas image) {
+                    if (tiles.incrementAndGet() == 2) {
+                        future[0].cancel(true);
+                    }
+                }
+            });
+
+            // Hold the thread until the future is stored, so the listener can see it
+            CompletableFuture<Void> gate = new CompletableFuture<>();
+            pool.execute(gate::join);
+            future[0] = job.start();
+            gate.complete(null);
+
+            assertThrows(java.util.concurrent.CancellationException.class, () -> future[0].get(30, TimeUnit.SECONDS));
+            pool.submit(() -> {}).get(30, TimeUnit.SECONDS);
+            assertEquals(2, tiles.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCancellingStopsATilePartWayThroughAPass() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 40);
+        CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+        AtomicInteger lastRow = new AtomicInteger(-1);
+
+        // Cancel as soon as the second sample of any pixel is asked for
+        c.setSampler((px, py, index, dimension) -> {
+            future[0].cancel(false);
+            lastRow.accumulateAndGet(py, Math::max);
+            return 0.5;
+        });
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            RenderJob job = new RenderJob(c, scene);
+            job.setTileSize(40);
+            job.setSamplesPerPixel(100);
+            job.setExecutor(pool);
+
+            CompletableFuture<Void> gate = new CompletableFuture<>();
+            pool.execute(gate::join);
+            future[0] = job.start();
+            gate.complete(null);
+
+            assertThrows(java.util.concurrent.CancellationException.class, () -> future[0].get(30, TimeUnit.SECONDS));
+            pool.submit(() -> {}).get(30, TimeUnit.SECONDS);
+
+            // The tile gave up within a few rows of its second pass
+            assertTrue(lastRow.get() >= 0);
+            assertTrue(lastRow.get() < 16);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testFailuresCompleteTheFuture() {
+        RenderScene scene = World.defaultWorld().compile();
+        RenderJob job = new RenderJob(camera(50, 40), scene);
+        job.setExecutor(Runnable::run);
+        job.addListener(new RenderJob.Listener() {
+            @Override
+            public void progress(int tilesDone, int tiles) {
+                throw new RuntimeException("Listener failed");
+            }
+        });
+
+        CompletableFuture<Canvas> f = job.start();
+        ExecutionException e = assertThrows(ExecutionException.class, f::get);
+        assertEquals("Listener failed", e.getCause().getMessage());
+        assertThrows(RuntimeException.class, () -> job.setTileSize(0));
+    }
+
+    @Test
+    void testSamplesAreAveraged() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 40);
+        ProgressiveRenderer p = new ProgressiveRenderer(c);
+        p.setMaxSamples(3);
+        Canvas expected = p.render(scene);
+
+        RenderJob job = new RenderJob(c, scene);
+        job.setSamplesPerPixel(3);
+        job.setTileSize(20);
+        assertSameImage(expected, job.start().get(30, TimeUnit.SECONDS));
+        assertThrows(RuntimeException.class, () -> job.setSamplesPerPixel(0));
+    }
+
+    @Test
+    void testJobsRenderRegions() throws Exception {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 40);
+        Canvas whole = c.render(scene);
+
+        // A 20x15 region at 12,9 in 16x16 tiles is 2x1 tiles, placed relative
+        // to the region
+        RenderJob job = new RenderJob(c, scene);
+        job.setTileSize(16);
+        job.setExecutor(Runnable::run);
+        job.setRegion(12, 9, 20, 15);
+        List<int[]> tiles = new ArrayList<>();
+        job.addListener(new RenderJob.Listener() {
+            @Override
+            public void tileComplete(int left, int top, int width, int height, Canvas image) {
+                tiles.add(new int[] {left, top, width, height});
+            }
+        });
+
+        Canvas crop = job.start().get(10, TimeUnit.SECONDS);
+        assertEquals(20, crop.getWidth());
+        assertEquals(15, crop.getHeight());
+        for (int y = 0; y < 15; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(whole.getPixel(x + 12, y + 9), crop.getPixel(x, y));
+            }
+        }
+        assertEquals(2, tiles.size());
+        assertArrayEquals(new int[] {0, 0, 16, 15}, tiles.get(0));
+        assertArrayEquals(new int[] {16, 0, 4, 15}, tiles.get(1));
+
+        // Rendered into a target, the region's pixels land in place
+        Canvas target = new Canvas(50, 40);
+        job.setTarget(target);
+        assertSame(target, job.start().get(10, TimeUnit.SECONDS));
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 50; x++) {
+                boolean inside = x >= 12 && x < 32 && y >= 9 && y < 24;
+                assertEquals(inside ? whole.getPixel(x, y) : new Colour(0, 0, 0), target.getPixel(x, y));
+            }
+        }
+        assertArrayEquals(new int[] {12, 9, 16, 15}, tiles.get(2));
+
+        job.clearRegion();
+        job.setTarget(null);
+        assertSameImage(whole, job.start().get(10, TimeUnit.SECONDS));
+
+        assertThrows(RuntimeException.class, () -> job.setRegion(40, 0, 11, 5));
+        assertThrows(RuntimeException.class, () -> job.setTarget(new Canvas(40, 50)));
+    }
+
+    @Test
+    void testCheckpointsResumeFinishedTiles() throws Exception {
+        World w = World.defaultWorld();
+        RenderScene scene = w.compile();
+        Camera c = camera(50, 40);
+        Path dir = Files.createTempDirectory("checkpoint");
+        String file = dir.resolve("render.ckpt").toString();
+
+        RenderJob full = new RenderJob(c, scene);
+        full.setSamplesPerPixel(2);
+        full.setTileSize(10);
+        full.setExecutor(Runnable::run);
+        long before = Statistics.precomputes;
+        Canvas expected = full.start().get();
+        long fullCost = Statistics.precomputes - before;
+
+        // Render the 6 tiles in the middle of the 5x4, then cancel
+        RenderJob job = new RenderJob(c, scene);
+        job.setSamplesPerPixel(2);
+        job.setTileSize(10);
+        job.setCheckpoint(file, w, Duration.ofHours(1));
+        List<Runnable> tasks = new ArrayList<>();
+        job.setExecutor(tasks::add);
+        CompletableFuture<Integer> saved = new CompletableFuture<>();
+        job.addListener(new RenderJob.Listener() {
+            @Override
+            public void checkpointSaved(int tilesDone) {
+                saved.complete(tilesDone);
+            }
+        });
+
+        CompletableFuture<Canvas> first = job.start();
+        for (int i: new int[] {6, 7, 8, 11, 12, 13}) {
+            tasks.get(i).run();
+        }
+        first.cancel(false);
+        assertEquals(6, (int) saved.get(30, TimeUnit.SECONDS));
+        assertTrue(Files.exists(dir.resolve("render.ckpt")));
+
+        // Starting again picks up where it left off
+        job.setExecutor(Runnable::run);
+        before = Statistics.precomputes;
+        assertSameImage(expected, job.start().get());
+        assertTrue(Statistics.precomputes - before < fullCost);
+
+        // The finished render's checkpoint is deleted
+        for (int i = 0; i < 100 && Files.exists(dir.resolve("render.ckpt")); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(Files.exists(dir.resolve("render.ckpt")));
+        Files.delete(dir);
+    }
+
+    @Test
+    void testCheckpointsResumeSampling() throws Exception {
+        World w = World.defaultWorld();
+        RenderScene scene = w.compile();
+        Camera c = camera(50, 40);
+        Path dir = Files.createTempDirectory("checkpoint");
+        Path file = dir.resolve("render.ckpt");
+
+        // A checkpoint with two of three samples done for every tile, made
+        // from a two sample render
+        RenderJob two = new RenderJob(c, scene);
+        two.setSamplesPerPixel(2);
+        two.setTileSize(25);
+        Canvas half = two.start().get(30, TimeUnit.SECONDS);
+        RenderCheckpoint.Tile[] tiles = new RenderCheckpoint.Tile[4];
+        for (int t = 0; t < 4; t++) {
+            int left = (t % 2) * 25;
+            int top = (t / 2) * 25;
+            int height = t < 2 ? 25 : 15;
+            double[] sums = new double[25 * height * 3];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < 25; x++) {
+                    Colour p = half.getPixel(left + x, top + y);
+                    int i = (y * 25 + x) * 3;
+                    sums[i] = p.getR() * 2;
+                    sums[i+1] = p.getG() * 2;
+                    sums[i+2] = p.getB() * 2;
+                }
+            }
+            tiles[t] = new RenderCheckpoint.Tile(2, sums);
+        }
+        new RenderCheckpoint(RenderCheckpoint.sceneHash(w, c), 0, 0, 50, 40, 25, 3, tiles).write(file);
+
+        RenderJob three = new RenderJob(c, scene);
+        three.setSamplesPerPixel(3);
+        three.setTileSize(25);
+        Canvas expected = three.start().get(30, TimeUnit.SECONDS);
+
+        three.setCheckpoint(file.toString(), w, Duration.ofHours(1));
+        three.setExecutor(Runnable::run);
+        long before = Statistics.precomputes;
+        assertSameImage(expected, three.start().get());
+        long resumedCost = Statistics.precomputes - before;
+
+        // A checkpoint of another render is ignored
+        new RenderCheckpoint(12345, 0, 0, 50, 40, 25, 3, tiles).write(file);
+        before = Statistics.precomputes;
+        assertSameImage(expected, three.start().get());
+        assertTrue(resumedCost < Statistics.precomputes - before);
+
+        for (int i = 0; i < 100 && Files.exists(file); i++) {
+            Thread.sleep(50);
+        }
+        Files.deleteIfExists(file);
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,177 @@
+package features;
+
+import features.lights.PointLight;
+import objects.Group;
+import objects.Plane;
+import objects.Shape;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderSceneTest {
+    @Test
+    void testEqualMaterialsAreInterned() {
+        World w = World.defaultWorld();
+        Material shiny = new Material();
+        shiny.setReflectivity(0.5);
+
+        Sphere s1 = new Sphere();
+        s1.setTransform(Matrix.translation(3, 0, 0));
+        Sphere s2 = new Sphere();
+        s2.setTransform(Matrix.translation(-3, 0, 0));
+        Sphere s3 = new Sphere();
+        s3.setTransform(Matrix.translation(0, 3, 0));
+        s3.setMaterial(shiny);
+        w.addObject(s1);
+        w.addObject(s2);
+        w.addObject(s3);
+
+        RenderScene scene = w.compile();
+
+        // The default material, the default world's green sphere, and the reflective one
+        assertEquals(3, scene.materialCount());
+        assertSame(scene.material(s1), scene.material(s2));
+        assertSame(scene.material(s1), scene.material(w.getObjects().get(1)));
+        assertNotSame(scene.material(s1), scene.material(s3));
+        assertEquals(0.5, scene.material(s3).getReflectivity());
+    }
+
+    @Test
+    void testSceneShadesLikeTheWorld() {
+        World w = World.defaultWorld();
+        RenderScene scene = w.compile();
+
+        Ray r = new Ray(new Point(0, 0, -5), new Vector(0, 0, 1));
+        assertEquals(new Colour(0.38066, 0.47583, 0.2855), scene.colourAt(r, 5));
+        assertEquals(w.colourAt(r, 5), scene.colourAt(r, 5));
+
+        r = new Ray(new Point(0, 0, -5), new Vector(0, 1, 0));
+        assertEquals(new Colour(0, 0, 0), scene.colourAt(r, 5));
+
+        assertFalse(scene.isShadowed(new Point(0, 10, 0)));
+        assertTrue(scene.isShadowed(new Point(10, -10, 10)));
+    }
+
+    @Test
+    void testShadowsMatchTheWorld() {
+        World w = World.defaultWorld();
+        Sphere hidden = new Sphere();
+        hidden.setTransform(Matrix.translation(-3, 3, -3));
+        hidden.castsShadow(false);
+        w.addObject(hidden);
+        w.addObject(new Plane());
+        Plane wall = new Plane();
+        wall.setTransform(Matrix.translation(0, 0, 20).rotate_x(Math.PI / 2));
+        w.addObject(wall);
+        RenderScene scene = w.compile();
+
+        for (int x = -10; x <= 10; x += 2) {
+            for (int y = -10; y <= 10; y += 2) {
+                for (int z = -10; z <= 25; z += 5) {
+                    Point p = new Point(x + 0.5, y + 0.25, z);
+                    assertEquals(w.isShadowed(p), scene.isShadowed(p));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSceneIsASnapshotOfTheWorld() {
+        World w = World.defaultWorld();
+        RenderScene scene = w.compile();
+
+        Shape outer = w.getObjects().get(0);
+        Material m = outer.getMaterial();
+        m.setAmbient(1);
+        outer.setMaterial(m);
+        w.addObject(new Plane());
+
+        Ray r = new Ray(new Point(0, 0, -5), new Vector(0, 0, 1));
+        assertEquals(new Colour(0.38066, 0.47583, 0.2855), scene.colourAt(r, 5));
+        assertEquals(4, scene.intersect(new Ray(new Point(0, 5, 0), new Vector(0, -1, 0))).size());
+        assertNotEquals(scene.colourAt(r, 5), w.compile().colourAt(r, 5));
+
+        w.clearLights();
+        assertEquals(1, scene.getLights().size());
+    }
+
+    @Test
+    void testRefractiveIndicesComeFromTheScene() {
+        World w = World.defaultWorld();
+        Sphere glass = new Sphere();
+        glass.setTransform(Matrix.translation(0, 0, -3).scale(0.5, 0.5, 0.5));
+        Material m = new Material();
+        m.setTransparency(1);
+        m.setRefractiveIndex(1.5);
+        glass.setMaterial(m);
+        w.addObject(glass);
+        RenderScene scene = w.compile();
+
+        m.setRefractiveIndex(2.5);
+        glass.setMaterial(m);
+
+        Ray r = new Ray(new Point(0, 0, -5), new Vector(0, 0, 1));
+        ArrayList<Intersection> xs = scene.intersect(r);
+        assertSame(glass, xs.get(0).getShape());
+        assertEquals(1.5, new Precompute(xs.get(0), r, xs, scene).n2());
+        assertEquals(2.5, new Precompute(xs.get(0), r, xs).n2());
+        assertEquals(1.5, scene.material(glass).getRefractiveIndex());
+    }
+
+    @Test
+    void testCompilingBuildsHierarchiesForLargeGroups() {
+        World w = new World();
+        w.addLight(new PointLight(new Point(-10, 10, -10), new Colour(1, 1, 1)));
+
+        Group g = new Group();
+        for (int i = 0; i < 50; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(i - 25, 0, 0).scale(0.4, 0.4, 0.4));
+            g.addObject(s);
+        }
+        w.addObject(g);
+        assertNull(g.linearBVH());
+
+        RenderScene scene = w.compile();
+        assertNotNull(g.linearBVH());
+
+        ArrayList<Intersection> xs = scene.intersect(new Ray(new Point(-30, 0, 0), new Vector(1, 0, 0)));
+        assertEquals(100, xs.size());
+        for (int i = 1; i < xs.size(); i++) {
+            assertTrue(xs.get(i - 1).getTime() <= xs.get(i).getTime());
+        }
+    }
+
+    @Test
+    void testSceneCanBeRenderedFromSeveralThreads() throws InterruptedException {
+        World w = World.defaultWorld();
+        Camera c = new Camera(20, 20, Math.PI / 2);
+        c.setTransform(World.view_transform(new Point(0, 0, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        RenderScene scene = w.compile();
+        Canvas expected = c.render(scene);
+
+        Canvas[] images = new Canvas[4];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < images.length; i++) {
+            int n = i;
+            Thread t = new Thread(() -> images[n] = c.render(scene));
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t: threads) {
+            t.join();
+        }
+
+        for (Canvas image: images) {
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 20; x++) {
+                    assertEquals(expected.getPixel(x, y), image.getPixel(x, y));
+                }
+            }
+        }
+    }
+}
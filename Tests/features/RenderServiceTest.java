@@ -0,0 +1,117 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static features.RenderTestSupport.assertSameImage;
+import static features.RenderTestSupport.camera;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderServiceTest {
+    @Test
+    void testJobsShareCompiledScenes() throws Exception {
+        World w = World.defaultWorld();
+        try (RenderService service = new RenderService(2, Long.MAX_VALUE)) {
+            service.setTileSize(16);
+            Camera c = camera(50, 40);
+            Canvas expected = c.render(w.compile());
+
+            CompletableFuture<Canvas> a = service.submit(w, c);
+            CompletableFuture<Canvas> b = service.submit(w, camera(50, 40), 3);
+            assertSameImage(expected, a.get(30, TimeUnit.SECONDS));
+            assertSameImage(expected, b.get(30, TimeUnit.SECONDS));
+
+            RenderScene scene = service.scene(w);
+            assertEquals(1, service.cachedScenes());
+            assertSame(scene, service.scene(w));
+            service.invalidate(w);
+            assertNotSame(scene, service.scene(w));
+
+            // Moving a shape makes the cached scene stale, so it's compiled again
+            scene = service.scene(w);
+            Ray r = new Ray(new Point(5, 0, -5), new Vector(0, 0, 1));
+            assertEquals(0, scene.intersect(r).size());
+            w.getObjects().get(0).setTransform(Matrix.translation(5, 0, 0));
+            RenderScene moved = service.scene(w);
+            assertNotSame(scene, moved);
+            assertEquals(2, moved.intersect(r).size());
+            assertSame(moved, service.scene(w));
+        }
+    }
+
+    @Test
+    void testMemoryLimitQueuesJobsByPriority() throws Exception {
+        World w = World.defaultWorld();
+        // Room for one job at a time
+        try (RenderService service = new RenderService(1, 1)) {
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<Canvas> first = service.submit(w, camera(200, 150), 0);
+            CompletableFuture<Canvas> low = service.submit(w, camera(20, 10), 0);
+            CompletableFuture<Canvas> high = service.submit(w, camera(20, 10), 5);
+            CompletableFuture.allOf(
+                first.thenRun(() -> order.add("first")),
+                low.thenRun(() -> order.add("low")),
+                high.thenRun(() -> order.add("high"))
+            ).get(30, TimeUnit.SECONDS);
+            assertEquals(List.of("first", "high", "low"), order);
+        }
+    }
+
+    @Test
+    void testSocketClientsRenderRegisteredScenes() throws Exception {
+        World w = World.defaultWorld();
+        try (RenderService service = new RenderService(2, Long.MAX_VALUE)) {
+            service.registerScene("default", w);
+            int port = service.listen(0);
+
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                out.println("RENDER default 20 10 "+ Math.PI / 3 +" 0 0 -5 0 0 0 0 1 0");
+                String status = in.readLine();
+                assertTrue(status.startsWith("OK "));
+
+                List<String> lines = new ArrayList<>();
+                int n = Integer.parseInt(status.substring(3));
+                for (int i = 0; i < n; i++) {
+                    lines.add(in.readLine());
+                }
+                assertEquals(PPMWriter.canvas_to_ppm(camera(20, 10).render(w.compile())), lines);
+
+                out.println("RENDER nowhere 20 10 1 0 0 -5 0 0 0 0 1 0");
+                assertEquals("ERROR Unknown scene nowhere", in.readLine());
+                out.println("RENDER default 20");
+                assertTrue(in.readLine().startsWith("ERROR"));
+                out.println("QUIT");
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    void testClosingCancelsJobs() {
+        assertThrows(RuntimeException.class, () -> new RenderService(0, 1));
+        assertThrows(RuntimeException.class, () -> new RenderService(1, 0));
+
+        World w = World.defaultWorld();
+        RenderService service = new RenderService(1, 1);
+        service.submit(w, camera(200, 150));
+        CompletableFuture<Canvas> waiting = service.submit(w, camera(20, 10));
+        service.close();
+
+        assertTrue(waiting.isCancelled());
+        assertTrue(service.submit(w, camera(20, 10)).isCompletedExceptionally());
+        assertEquals(0, service.getMemoryInUse());
+    }
+}
@@ -0,0 +1,33 @@
+package features;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Helpers shared by the tests of the various renderers
+ */
+final class RenderTestSupport {
+    private RenderTestSupport() {}
+
+    /**
+     * @return A camera looking at the origin from 5 units in front of it,
+     *         as the default world is usually seen
+     */
+    static Camera camera(int width, int height) {
+        Camera c = new Camera(width, height, Math.PI / 3);
+        c.setTransform(World.view_transform(new Point(0, 0, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        return c;
+    }
+
+    /**
+     * Checks that two images have the same pixels
+     */
+    static void assertSameImage(Canvas expected, Canvas actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package features;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static features.RenderTestSupport.camera;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingRendererTest {
+    @Test
+    void testStreamedPPMMatchesWholeImage() throws IOException {
+        RenderScene scene = World.defaultWorld().compile();
+        Camera c = camera(50, 45);
+        String expected = String.join("\n", PPMWriter.canvas_to_ppm(c.render(scene))) + "\n";
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            StreamingRenderer r = new StreamingRenderer(c);
+            r.setBandHeight(4);
+            r.setMaxBands(3);
+            r.setExecutor(pool);
+            StringWriter out = new StringWriter();
+            r.renderPPM(scene, out);
+            assertEquals(expected, out.toString());
+
+            c.setPacketSize(4);
+            out = new StringWriter();
+            r.renderPPM(scene, out);
+            assertEquals(expected, out.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testBandsArriveInOrderWithBoundedMemory() throws IOException {
+        RenderScene scene = World.defaultWorld().compile();
+        StreamingRenderer r = new StreamingRenderer(camera(50, 45));
+        r.setBandHeight(10);
+        r.setMaxBands(3);
+
+        // Holds tasks back until three are waiting (or the last band has
+        // been handed over), then runs them last first, so bands finish out
+        // of order.  Also counts the tasks handed over but not yet run.
+        List<Runnable> queued = new ArrayList<>();
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger most = new AtomicInteger();
+        r.setExecutor(task -> {
+            queued.add(task);
+            most.accumulateAndGet(queued.size(), Math::max);
+            if (submitted.incrementAndGet() == 5 || queued.size() == 3) {
+                while (!queued.isEmpty()) {
+                    queued.remove(queued.size() - 1).run();
+                }
+            }
+        });
+
+        List<Integer> tops = new ArrayList<>();
+        List<Integer> heights = new ArrayList<>();
+        r.render(scene, (top, band) -> {
+            tops.add(top);
+            heights.add(band.getHeight());
+            assertEquals(50, band.getWidth());
+        });
+
+        assertEquals(List.of(0, 10, 20, 30, 40), tops);
+        assertEquals(List.of(10, 10, 10, 10, 5), heights);
+        assertTrue(most.get() <= 3);
+    }
+
+    @Test
+    void testFailuresStopTheRender() {
+        RenderScene scene = World.defaultWorld().compile();
+        StreamingRenderer r = new StreamingRenderer(camera(50, 45));
+        r.setExecutor(Runnable::run);
+
+        IOException e = assertThrows(IOException.class, () -> r.render(scene, (top, band) -> {
+            throw new IOException("Disk full");
+        }));
+        assertEquals("Disk full", e.getMessage());
+
+        // The renderer can be used again afterwards
+        AtomicInteger bands = new AtomicInteger();
+        assertDoesNotThrow(() -> r.render(scene, (top, band) -> bands.incrementAndGet()));
+        assertEquals(3, bands.get());
+
+        assertThrows(RuntimeException.class, () -> r.setBandHeight(0));
+        assertThrows(RuntimeException.class, () -> r.setMaxBands(0));
+    }
+}
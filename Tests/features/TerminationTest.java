@@ -0,0 +1,114 @@
+package features;
+
+import features.lights.PointLight;
+import objects.Plane;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerminationTest {
+    /**
+     * Two facing mirrors with a light between them
+     * @param reflectivity How reflective the mirrors are
+     */
+    private static RenderScene mirrors(double reflectivity) {
+        World w = new World();
+        w.addLight(new PointLight(new Point(0, 0, 0), new Colour(1, 1, 1)));
+        Material m = new Material();
+        m.setReflectivity(reflectivity);
+
+        Plane lower = new Plane();
+        lower.setTransform(Matrix.translation(0, -1, 0));
+        lower.setMaterial(m);
+        w.addObject(lower);
+
+        Plane upper = new Plane();
+        upper.setTransform(Matrix.translation(0, 1, 0));
+        upper.setMaterial(m);
+        w.addObject(upper);
+
+        return w.compile();
+    }
+
+    @Test
+    void testRaysAboveTheThresholdSurvive() {
+        Termination t = new Termination(0.01, false);
+        assertEquals(1, t.survive(0.5, 0.99));
+        assertEquals(1, t.survive(0.01, 0.99));
+        assertEquals(0, t.survive(0.005, 0.0));
+
+        assertEquals(1, Termination.EXACT.survive(0, 0.5));
+        assertThrows(RuntimeException.class, () -> new Termination(-1, false));
+        assertThrows(RuntimeException.class, () -> new Termination(1, false));
+    }
+
+    @Test
+    void testRussianRouletteReweightsSurvivors() {
+        Termination t = new Termination(0.01, true);
+        assertEquals(1, t.survive(0.02, 0.99));
+        assertEquals(4, t.survive(0.0025, 0.2), Precompute.EPSILON);
+        assertEquals(0, t.survive(0.0025, 0.3));
+    }
+
+    @Test
+    void testDimRaysAreNotFollowed() {
+        RenderScene scene = mirrors(0.1);
+        Ray r = new Ray(new Point(0, 0, 0), new Vector(0, 1, 0));
+
+        long rays = Statistics.rays;
+        Colour exact = scene.colourAt(r, 50);
+        long exactRays = Statistics.rays - rays;
+
+        rays = Statistics.rays;
+        Colour quick = scene.colourAt(r, 50, Termination.DEFAULT);
+        long quickRays = Statistics.rays - rays;
+
+        // The error is at most the threshold times the brightness seen (which
+        // is well over 1 this close to the light)
+        assertTrue(quickRays * 5 < exactRays);
+        assertEquals(exact.getR(), quick.getR(), exact.getR() / 512);
+        assertEquals(exact.getG(), quick.getG(), exact.getG() / 512);
+        assertEquals(exact.getB(), quick.getB(), exact.getB() / 512);
+    }
+
+    @Test
+    void testRussianRouletteIsUnbiased() {
+        RenderScene scene = mirrors(0.5);
+        Ray r = new Ray(new Point(0, 0, 0), new Vector(0, 1, 0));
+        Colour exact = scene.colourAt(r, 30);
+        Termination t = new Termination(0.3, true);
+
+        int n = 20000;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += scene.colourAt(r, 30, t).getR();
+        }
+        assertEquals(exact.getR(), sum / n, exact.getR() * 0.02);
+    }
+
+    @Test
+    void testMaterialsCanCapTheDepth() {
+        RenderScene capped = mirrors(0.5);
+        Ray r = new Ray(new Point(0, 0, 0), new Vector(0, 1, 0));
+
+        World w = new World();
+        w.addLight(new PointLight(new Point(0, 0, 0), new Colour(1, 1, 1)));
+        Material m = new Material();
+        m.setReflectivity(0.5);
+        m.setMaxDepth(2);
+        Plane lower = new Plane();
+        lower.setTransform(Matrix.translation(0, -1, 0));
+        lower.setMaterial(m);
+        w.addObject(lower);
+        Plane upper = new Plane();
+        upper.setTransform(Matrix.translation(0, 1, 0));
+        upper.setMaterial(m);
+        w.addObject(upper);
+
+        // A cap of two at every hit still leaves two bounces from each hit
+        assertNotEquals(capped.colourAt(r, 3), capped.colourAt(r, 2));
+        assertEquals(w.compile().colourAt(r, 2), w.compile().colourAt(r, 50));
+        assertEquals(capped.colourAt(r, 2), w.compile().colourAt(r, 50));
+        assertEquals(w.colourAt(r, 50), w.compile().colourAt(r, 50));
+    }
+}
@@ -0,0 +1,69 @@
+package features;
+
+import objects.GlassSphere;
+import objects.Plane;
+import objects.Sphere;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WavefrontRendererTest {
+    private static World glassWorld() {
+        World w = World.defaultWorld();
+
+        Plane floor = new Plane();
+        floor.setTransform(Matrix.translation(0, -1, 0));
+        Material m = new Material();
+        m.setReflectivity(0.5);
+        m.setTransparency(0.5);
+        m.setRefractiveIndex(1.5);
+        floor.setMaterial(m);
+        w.addObject(floor);
+
+        GlassSphere glass = new GlassSphere();
+        glass.setTransform(Matrix.translation(1.5, 0, -1).scale(0.5, 0.5, 0.5));
+        w.addObject(glass);
+
+        Sphere mirror = new Sphere();
+        m = new Material();
+        m.setReflectivity(0.9);
+        mirror.setMaterial(m);
+        mirror.setTransform(Matrix.translation(-1.5, 0, 1).scale(0.5, 0.5, 0.5));
+        w.addObject(mirror);
+
+        return w;
+    }
+
+    private static Camera camera() {
+        Camera c = new Camera(30, 20, Math.PI / 2);
+        c.setTransform(World.view_transform(new Point(0, 1.5, -5), new Point(0, 0, 0), new Vector(0, 1, 0)));
+        c.setTermination(Termination.EXACT);
+        return c;
+    }
+
+    @Test
+    void testWavefrontRenderMatchesSingleRays() {
+        RenderScene scene = glassWorld().compile();
+        Camera c = camera();
+        Canvas expected = c.render(scene);
+
+        // Tile sizes which do and don't divide the image
+        for (int size: new int[] {10, 7, 64}) {
+            c.setWavefrontSize(size);
+            Canvas image = c.render(scene);
+
+            for (int y = 0; y < c.getVSize(); y++) {
+                for (int x = 0; x < c.getHSize(); x++) {
+                    assertEquals(expected.getPixel(x, y), image.getPixel(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWavefrontSizeMustNotBeNegative() {
+        Camera c = camera();
+        assertEquals(0, c.getWavefrontSize());
+        assertThrows(RuntimeException.class, () -> c.setWavefrontSize(-1));
+    }
+}
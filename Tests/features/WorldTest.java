@@ -2,6 +2,9 @@ package features;
 
 import features.lights.Light;
 import features.lights.PointLight;
+import objects.Cone;
+import objects.Cylinder;
+import objects.Group;
 import objects.Plane;
 import objects.Shape;
 import objects.Sphere;
@@ -309,4 +312,41 @@ class WorldTest {
         Colour c = w.shadeHit(comps, 5);
         assertEquals(new Colour(0.93391, 0.69643, 0.69243), c);
     }
+
+    @Test
+    void testModificationCountSeesEveryChange() {
+        World w = World.defaultWorld();
+        Group g = new Group();
+        Sphere inner = new Sphere();
+        Cylinder cylinder = new Cylinder();
+        Cone cone = new Cone();
+        g.addObject(inner);
+        g.addObject(cylinder);
+        g.addObject(cone);
+        w.addObject(g);
+
+        long count = w.modificationCount();
+        w.compile();
+        assertEquals(count, w.modificationCount());
+
+        List<Runnable> changes = List.of(
+            () -> inner.setTransform(Matrix.translation(1, 0, 0)),
+            () -> inner.setMaterial(new Material()),
+            () -> w.getObjects().get(0).castsShadow(false),
+            () -> cylinder.maxY(2),
+            () -> cylinder.closed(true),
+            () -> cone.closed(true),
+            () -> cone.closed(false),
+            () -> g.addObject(new Sphere()),
+            () -> w.addLight(new PointLight(new Point(0, 0, 0), new Colour(1, 1, 1))),
+            () -> w.addObject(new Sphere()),
+            w::clearLights,
+            w::clearObjects
+        );
+        for (Runnable change: changes) {
+            change.run();
+            assertTrue(w.modificationCount() > count);
+            count = w.modificationCount();
+        }
+    }
 }
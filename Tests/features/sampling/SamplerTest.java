@@ -0,0 +1,123 @@
+package features.sampling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplerTest {
+    /**
+     * @return True if exactly one of the first 2^(a+b) samples of a pixel falls
+     *         in each cell of a 2^a x 2^b grid over two dimensions
+     */
+    private static boolean isNet(Sampler s, int px, int py, int d1, int d2, int a, int b) {
+        int n = 1 << (a + b);
+        boolean[] seen = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int x = (int) (s.get(px, py, i, d1) * (1 << a));
+            int y = (int) (s.get(px, py, i, d2) * (1 << b));
+            int cell = y * (1 << a) + x;
+            if (seen[cell]) {
+                return false;
+            }
+            seen[cell] = true;
+        }
+        return true;
+    }
+
+    /**
+     * RMS error, over many pixels, in the area of a quarter disc estimated
+     * from the first n samples of each pixel
+     */
+    private static double discError(Sampler s, int n) {
+        double total = 0;
+        int pixels = 64;
+        for (int p = 0; p < pixels; p++) {
+            int inside = 0;
+            for (int i = 0; i < n; i++) {
+                double x = s.get(p, 7, i, 0);
+                double y = s.get(p, 7, i, 1);
+                if (x*x + y*y < 1) {
+                    inside++;
+                }
+            }
+            double error = (double) inside / n - Math.PI / 4;
+            total += error * error;
+        }
+        return Math.sqrt(total / pixels);
+    }
+
+    @Test
+    void testSamplesAreRepeatableAndInRange() {
+        Sampler[] samplers = {new StratifiedSampler(16), new HaltonSampler(), new SobolSampler()};
+
+        for (Sampler s: samplers) {
+            for (int d = 0; d < 40; d++) {
+                for (int i = 0; i < 20; i++) {
+                    double v = s.get(3, -5, i, d);
+                    assertTrue(v >= 0 && v < 1);
+                    assertEquals(v, s.get(3, -5, i, d));
+                }
+            }
+            // Different pixels see different points
+            assertNotEquals(s.get(0, 0, 0, 0), s.get(1, 0, 0, 0));
+        }
+    }
+
+    @Test
+    void testStratifiedSamplesFillTheGrid() {
+        StratifiedSampler s = new StratifiedSampler(18);
+        assertEquals(16, s.getSamplesPerPixel());
+
+        for (int pair = 0; pair < 3; pair++) {
+            assertTrue(isNet(s, 12, 34, pair * 2, pair * 2 + 1, 2, 2));
+        }
+        assertThrows(RuntimeException.class, () -> new StratifiedSampler(0));
+    }
+
+    @Test
+    void testRadicalInverse() {
+        assertEquals(0.5, HaltonSampler.radicalInverse(1, 2));
+        assertEquals(0.25, HaltonSampler.radicalInverse(2, 2));
+        assertEquals(0.75, HaltonSampler.radicalInverse(3, 2));
+        assertEquals(1.0/3, HaltonSampler.radicalInverse(1, 3), 1e-12);
+        assertEquals(1.0/9, HaltonSampler.radicalInverse(3, 3), 1e-12);
+        assertEquals(0, HaltonSampler.radicalInverse(0, 5));
+    }
+
+    @Test
+    void testSobolPointsAreStratified() {
+        // Unscrambled, the first 2^m values of each dimension are k/2^m in some order
+        for (int d = 0; d < SobolSampler.dimensions(); d++) {
+            boolean[] seen = new boolean[256];
+            for (int i = 0; i < 256; i++) {
+                int v = SobolSampler.sobol(i, d);
+                assertEquals(0, v & 0x00ffffff);
+                int slot = v >>> 24;
+                assertFalse(seen[slot]);
+                seen[slot] = true;
+            }
+        }
+
+        // Scrambling keeps the first two dimensions a (0, m, 2)-net
+        SobolSampler s = new SobolSampler();
+        for (int a = 0; a <= 6; a++) {
+            assertTrue(isNet(s, 5, 9, 0, 1, a, 6 - a));
+        }
+        for (int d = 0; d < SobolSampler.dimensions(); d++) {
+            assertTrue(isNet(s, 5, 9, d, d, 6, 0));
+        }
+    }
+
+    @Test
+    void testLowDiscrepancySamplesConvergeFaster() {
+        Random rnd = new Random(41);
+        Sampler random = (px, py, index, dimension) -> rnd.nextDouble();
+
+        double randomError = discError(random, 256);
+        assertTrue(discError(new SobolSampler(), 256) < randomError / 2);
+        assertTrue(discError(new HaltonSampler(), 256) < randomError / 2);
+        assertTrue(discError(new StratifiedSampler(256), 256) < randomError / 2);
+    }
+}
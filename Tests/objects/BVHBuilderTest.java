@@ -0,0 +1,208 @@
+package objects;
+
+import features.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static features.Precompute.EPSILON;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BVHBuilderTest {
+    /**
+     * Generates a reproducible cloud of small spheres
+     */
+    private static List<Shape> sphereCloud(int count, long seed) {
+        Random rnd = new Random(seed);
+        ArrayList<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(rnd.nextDouble() * 100 - 50, rnd.nextDouble() * 100 - 50, rnd.nextDouble() * 100 - 50)
+                .scale(0.2, 0.2, 0.2));
+            shapes.add(s);
+        }
+        return shapes;
+    }
+
+    private static void collectLeafShapes(BVHNode node, List<Shape> out) {
+        if (node.isLeaf()) {
+            out.addAll(node.shapes());
+        } else {
+            collectLeafShapes(node.left(), out);
+            collectLeafShapes(node.right(), out);
+        }
+    }
+
+    @Test
+    void testBuildingOverASingleShapeGivesALeaf() {
+        Sphere s = new Sphere();
+        BVHNode root = new BVHBuilder().build(List.of(s));
+
+        assertTrue(root.isLeaf());
+        assertEquals(1, root.shapes().size());
+        assertEquals(new Point(-1, -1, -1), root.bounds().min());
+        assertEquals(new Point(1, 1, 1), root.bounds().max());
+    }
+
+    @Test
+    void testEveryShapeEndsUpInExactlyOneLeaf() {
+        List<Shape> shapes = sphereCloud(500, 1);
+        BVHNode root = new BVHBuilder().build(shapes);
+
+        ArrayList<Shape> leaves = new ArrayList<>();
+        collectLeafShapes(root, leaves);
+
+        assertEquals(shapes.size(), leaves.size());
+        Set<Shape> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+        unique.addAll(leaves);
+        assertEquals(shapes.size(), unique.size());
+        assertEquals(shapes.size(), root.shapeCount());
+    }
+
+    @Test
+    void testSplittingSeparatedShapes() {
+        Sphere s1 = new Sphere();
+        s1.setTransform(Matrix.translation(-10, 0, 0));
+        Sphere s2 = new Sphere();
+        s2.setTransform(Matrix.translation(10, 0, 0));
+        Sphere s3 = new Sphere();
+        s3.setTransform(Matrix.translation(-10, 0, 0));
+        Sphere s4 = new Sphere();
+        s4.setTransform(Matrix.translation(10, 0, 0));
+        Sphere s5 = new Sphere();
+        s5.setTransform(Matrix.translation(-10, 0, 0));
+
+        BVHNode root = new BVHBuilder().build(List.of(s1, s2, s3, s4, s5));
+
+        assertFalse(root.isLeaf());
+        assertEquals(new Point(-11, -1, -1), root.bounds().min());
+        assertEquals(new Point(11, 1, 1), root.bounds().max());
+
+        // The two clusters should each end up on their own side of the root
+        for (BVHNode child: List.of(root.left(), root.right())) {
+            double x = child.bounds().center().getX();
+            assertEquals(10, Math.abs(x), EPSILON);
+        }
+    }
+
+    @Test
+    void testLeavesRespectTheMaximumLeafSize() {
+        BVHNode root = new BVHBuilder().build(sphereCloud(1000, 2));
+        Deque<BVHNode> stack = new ArrayDeque<>(List.of(root));
+
+        while (!stack.isEmpty()) {
+            BVHNode n = stack.pop();
+            if (n.isLeaf()) {
+                assertTrue(n.shapes().size() <= BVHBuilder.MAX_LEAF_SIZE);
+            } else {
+                assertTrue(n.bounds().contains(n.left().bounds()));
+                assertTrue(n.bounds().contains(n.right().bounds()));
+                stack.push(n.left());
+                stack.push(n.right());
+            }
+        }
+    }
+
+    @Test
+    void testCoincidentShapesStillSplit() {
+        ArrayList<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            shapes.add(new Sphere());
+        }
+        BVHNode root = new BVHBuilder().build(shapes);
+
+        assertEquals(20, root.shapeCount());
+        assertFalse(root.isLeaf());
+    }
+
+    @Test
+    void testParallelBuildMatchesSerialBuild() {
+        List<Shape> shapes = sphereCloud(3000, 3);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        BVHNode serial = new BVHBuilder().build(shapes);
+        // Use small thresholds so that both forking and parallel binning get used
+        BVHNode parallel = new BVHBuilder(pool, 16, 64).build(shapes);
+        pool.shutdown();
+
+        assertEquals(serial.nodeCount(), parallel.nodeCount());
+        assertEquals(serial.depth(), parallel.depth());
+        assertEquals(serial.cost(), parallel.cost(), EPSILON);
+
+        ArrayList<Shape> a = new ArrayList<>();
+        ArrayList<Shape> b = new ArrayList<>();
+        collectLeafShapes(serial, a);
+        collectLeafShapes(parallel, b);
+        for (int i = 0; i < a.size(); i++) {
+            assertSame(a.get(i), b.get(i));
+        }
+    }
+
+    @Test
+    void testSAHTreeIsCheaperThanAFlatList() {
+        List<Shape> shapes = sphereCloud(1000, 4);
+        BVHNode root = new BVHBuilder().build(shapes);
+
+        assertTrue(root.cost() < shapes.size());
+    }
+
+    @Test
+    void testBuildIsReportedInStatistics() {
+        long builds = Statistics.bvhBuilds;
+        long nodes = Statistics.bvhNodes;
+
+        BVHNode root = new BVHBuilder().build(sphereCloud(100, 5));
+
+        assertEquals(builds + 1, Statistics.bvhBuilds);
+        assertEquals(nodes + root.nodeCount(), Statistics.bvhNodes);
+    }
+
+    @Test
+    void testGroupBVHGivesTheSameIntersections() {
+        Group flat = new Group();
+        Group tree = new Group();
+        for (Shape s: sphereCloud(200, 6)) {
+            flat.addObject(s);
+        }
+        for (Shape s: sphereCloud(200, 6)) {
+            tree.addObject(s);
+        }
+        tree.buildBVH(BVHBuilder.parallel());
+
+        assertTrue(tree.contents().size() < flat.contents().size());
+        assertEquals(flat.bounds().min(), tree.bounds().min());
+        assertEquals(flat.bounds().max(), tree.bounds().max());
+
+        Random rnd = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Ray r = new Ray(new Point(0, 0, -100),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, 1).normalize());
+            ArrayList<Intersection> xs1 = flat.intersect(r);
+            ArrayList<Intersection> xs2 = tree.intersect(r);
+
+            assertEquals(xs1.size(), xs2.size());
+            for (int j = 0; j < xs1.size(); j++) {
+                assertEquals(xs1.get(j).getTime(), xs2.get(j).getTime(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    void testGroupBoundsFollowChildTransforms() {
+        Group g = new Group();
+        Sphere s = new Sphere();
+        g.addObject(s);
+        assertEquals(new Point(1, 1, 1), g.bounds().max());
+
+        s.setTransform(Matrix.translation(5, 0, 0));
+        assertEquals(new Point(6, 1, 1), g.bounds().max());
+    }
+}
@@ -98,6 +98,31 @@ class BoundingBoxTest {
         assertEquals(new Point(1.41421, 1.70711, 1.70711), box2.max());
     }
 
+    @Test
+    void testTransformingAnUnboundedBox() {
+        // A plane's box, translated and then tilted about the z axis
+        BoundingBox plane = new Plane().bounds();
+        assertFalse(plane.isFinite());
+
+        BoundingBox moved = plane.transform(Matrix.translation(0, -2, 0));
+        assertEquals(-2, moved.min().getY(), EPSILON);
+        assertEquals(-2, moved.max().getY(), EPSILON);
+        assertEquals(Double.NEGATIVE_INFINITY, moved.min().getX());
+        assertEquals(Double.POSITIVE_INFINITY, moved.max().getZ());
+
+        BoundingBox tilted = plane.transform(Matrix.rotation_z(Math.PI/4));
+        for (double v: new double[] {tilted.min().getX(), tilted.min().getY(), tilted.min().getZ()}) {
+            assertEquals(Double.NEGATIVE_INFINITY, v);
+        }
+        for (double v: new double[] {tilted.max().getX(), tilted.max().getY(), tilted.max().getZ()}) {
+            assertEquals(Double.POSITIVE_INFINITY, v);
+        }
+
+        BoundingBox empty = new BoundingBox().transform(Matrix.rotation_z(Math.PI/4));
+        assertEquals(Double.POSITIVE_INFINITY, empty.min().getX());
+        assertEquals(Double.NEGATIVE_INFINITY, empty.max().getX());
+    }
+
     @Test
     void testIntersectingARayWithABoundingBoxAtOrigin() {
         BoundingBox box = new BoundingBox(new Point(-1,-1,-1), new Point(1,1,1));
@@ -106,4 +106,76 @@ class GroupTest {
 
         assertNotNull(child.saved_ray);
     }
+
+    @Test
+    void testUnboundedChildrenAreKeptOutOfTheGroupBounds() {
+        Group g = new Group();
+        Plane floor = new Plane();
+        floor.setTransform(Matrix.translation(0, -1, 0));
+        Sphere s = new Sphere();
+        g.addObject(floor);
+        g.addObject(s);
+
+        assertFalse(floor.isBounded());
+        assertTrue(s.isBounded());
+        assertFalse(g.isBounded());
+        assertEquals(1, g.unboundedContents().size());
+        assertSame(floor, g.unboundedContents().get(0));
+
+        // The group as a whole is still reported as unbounded, without NaNs
+        BoundingBox box = g.bounds();
+        assertEquals(-1, box.min().getY(), Precompute.EPSILON);
+        assertEquals(Double.POSITIVE_INFINITY, box.max().getX());
+
+        // Rays which miss the sphere still find the floor
+        Ray r = new Ray(new Point(5, 5, 0), new Vector(0, -1, 0));
+        ArrayList<Intersection> xs = g.intersect(r);
+        assertEquals(1, xs.size());
+        assertEquals(6, xs.get(0).getTime(), Precompute.EPSILON);
+
+        g.removeObject(floor);
+        assertTrue(g.isBounded());
+    }
+
+    @Test
+    void testHierarchiesOverFloorAndModelScenes() {
+        Group flat = new Group();
+        Group accel = new Group();
+        for (Group g: new Group[] {flat, accel}) {
+            Plane floor = new Plane();
+            floor.setTransform(Matrix.translation(0, -12, 0));
+            g.addObject(floor);
+
+            Cylinder pillar = new Cylinder();
+            pillar.setTransform(Matrix.translation(8, 0, 8));
+            g.addObject(pillar);
+
+            for (int i = 0; i < 200; i++) {
+                Sphere s = new Sphere();
+                s.setTransform(Matrix.translation(i % 10 - 5, i / 10 - 10, i % 7 - 3).scale(0.4, 0.4, 0.4));
+                g.addObject(s);
+            }
+        }
+        accel.buildLinearBVH();
+
+        // Only the spheres end up in the hierarchy, with tight bounds
+        assertEquals(200, accel.linearBVH().shapeCount());
+        assertEquals(2, accel.unboundedContents().size());
+
+        for (int i = 0; i < 100; i++) {
+            Ray r = new Ray(new Point(i % 10 - 4.5, 20, -20), new Vector(0, -1, 1 + i / 100.0).normalize());
+            ArrayList<Intersection> xs1 = flat.intersect(r);
+            ArrayList<Intersection> xs2 = accel.intersect(r);
+
+            assertEquals(xs1.size(), xs2.size());
+            for (int j = 0; j < xs1.size(); j++) {
+                assertEquals(xs1.get(j).getTime(), xs2.get(j).getTime(), Precompute.EPSILON);
+            }
+        }
+
+        // Nested hierarchies leave the unbounded shapes directly in the group
+        accel.buildBVH();
+        assertEquals(2, accel.unboundedContents().size());
+        assertTrue(accel.contents().containsAll(accel.unboundedContents()));
+    }
 }
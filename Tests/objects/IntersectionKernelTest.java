@@ -0,0 +1,136 @@
+package objects;
+
+import features.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static features.Precompute.EPSILON;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntersectionKernelTest {
+    private static Point randomPoint(Random rnd, double size) {
+        return new Point(rnd.nextDouble() * size - size/2, rnd.nextDouble() * size - size/2, rnd.nextDouble() * size - size/2);
+    }
+
+    private static List<Triangle> randomTriangles(Random rnd, int count) {
+        List<Triangle> triangles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Point p = randomPoint(rnd, 4);
+            triangles.add(new Triangle(p, p.add(randomPoint(rnd, 2).toVector()), p.add(randomPoint(rnd, 2).toVector())));
+        }
+        return triangles;
+    }
+
+    private static Ray randomRay(Random rnd) {
+        return new Ray(randomPoint(rnd, 10), randomPoint(rnd, 2).toVector().normalize());
+    }
+
+    @Test
+    void testBlockMatchesIndividualTriangles() {
+        Random rnd = new Random(11);
+        IntersectionKernel[] kernels = {new ScalarIntersectionKernel(), IntersectionKernel.get()};
+
+        for (int n = 1; n <= 8; n++) {
+            List<Triangle> triangles = randomTriangles(rnd, n);
+
+            for (IntersectionKernel kernel: kernels) {
+                TriangleBlock block = new TriangleBlock(triangles, kernel.lanes());
+                assertEquals(0, block.width() % kernel.lanes());
+
+                for (int i = 0; i < 200; i++) {
+                    Ray r = randomRay(rnd);
+                    ArrayList<Intersection> expected = new ArrayList<>();
+                    for (Triangle t: triangles) {
+                        expected.addAll(t.intersect(r));
+                    }
+
+                    ArrayList<Intersection> actual = new ArrayList<>();
+                    block.intersect(kernel, r.fast(), actual);
+
+                    assertEquals(expected.size(), actual.size());
+                    for (int j = 0; j < expected.size(); j++) {
+                        assertEquals(expected.get(j).getTime(), actual.get(j).getTime(), EPSILON);
+                        assertSame(expected.get(j).getShape(), actual.get(j).getShape());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testOnlyPlainTrianglesAreBlocked() {
+        Triangle t1 = new Triangle(new Point(0, 1, 0), new Point(-1, 0, 0), new Point(1, 0, 0));
+        Triangle t2 = new Triangle(new Point(0, 1, 0), new Point(-1, 0, 0), new Point(1, 0, 0));
+        assertNotNull(TriangleBlock.of(List.of(t1, t2), 4));
+
+        t2.setTransform(Matrix.translation(0, 0, 1));
+        assertNull(TriangleBlock.of(List.of(t1, t2), 4));
+        assertNull(TriangleBlock.of(List.of(t1, new Sphere()), 4));
+    }
+
+    @Test
+    void testPacketBoxTestsAgree() {
+        Random rnd = new Random(12);
+        IntersectionKernel scalar = new ScalarIntersectionKernel();
+        IntersectionKernel kernel = IntersectionKernel.get();
+        float[] box = {-1, -1, -1, 1, 1, 1};
+
+        for (int n = 1; n <= RayPacket.MAX_SIZE; n += 7) {
+            Ray[] rays = new Ray[n];
+            for (int i = 0; i < n; i++) {
+                // Include some axis aligned rays, which have infinite reciprocals
+                rays[i] = i % 5 == 0
+                    ? new Ray(randomPoint(rnd, 3), new Vector(0, 0, 1))
+                    : randomRay(rnd);
+            }
+            RayPacket p = new RayPacket(rays);
+            long active = rnd.nextLong() & p.allRays();
+
+            long expected = scalar.boxes(box, 0, p, active);
+            assertEquals(expected, kernel.boxes(box, 0, p, active));
+            assertEquals(0, expected & ~active);
+
+            for (int i = 0; i < n; i++) {
+                if ((active & (1L << i)) != 0) {
+                    boolean hit = new BoundingBox(new Point(-1, -1, -1), new Point(1, 1, 1)).intersects(rays[i]);
+                    assertEquals(hit, (expected & (1L << i)) != 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTriangleMeshesUseBlocks() {
+        Random rnd = new Random(13);
+        Group flat = new Group();
+        Group accel = new Group();
+        for (Triangle t: randomTriangles(rnd, 500)) {
+            flat.addObject(t);
+            accel.addObject(new Triangle(t.point(0), t.point(1), t.point(2)));
+        }
+        accel.buildLinearBVH();
+        assertTrue(accel.linearBVH().blockCount() > 0);
+
+        for (int i = 0; i < 200; i++) {
+            Ray r = randomRay(rnd);
+            ArrayList<Intersection> xs1 = flat.intersect(r);
+            ArrayList<Intersection> xs2 = accel.intersect(r);
+
+            assertEquals(xs1.size(), xs2.size());
+            for (int j = 0; j < xs1.size(); j++) {
+                assertEquals(xs1.get(j).getTime(), xs2.get(j).getTime(), EPSILON);
+            }
+
+            Intersection hit = accel.linearBVH().hit(r);
+            Intersection expected = Intersection.hit(xs1);
+            if (expected == null) {
+                assertNull(hit);
+            } else {
+                assertEquals(expected.getTime(), hit.getTime(), EPSILON);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package objects;
+
+import features.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static features.Precompute.EPSILON;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinearBVHTest {
+    private static Group sphereCloud(int count, long seed) {
+        Random rnd = new Random(seed);
+        Group g = new Group();
+        for (int i = 0; i < count; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(rnd.nextDouble() * 20 - 10, rnd.nextDouble() * 20 - 10, rnd.nextDouble() * 20 - 10)
+                .scale(0.3, 0.3, 0.3));
+            g.addObject(s);
+        }
+        return g;
+    }
+
+    @Test
+    void testFlatteningKeepsEveryNodeAndShape() {
+        Group g = sphereCloud(300, 1);
+        BVHNode root = new BVHBuilder().build(g.contents());
+        LinearBVH bvh = new LinearBVH(root);
+
+        assertEquals(root.nodeCount(), bvh.nodeCount());
+        assertEquals(300, bvh.shapeCount());
+        assertEquals(bvh.nodeCount() * 32L, bvh.nodeBytes());
+    }
+
+    @Test
+    void testIntersectingASingleShapeHierarchy() {
+        Sphere s = new Sphere();
+        LinearBVH bvh = new LinearBVH(new BVHBuilder().build(List.of(s)));
+        Ray r = new Ray(new Point(0, 0, -5), new Vector(0, 0, 1));
+
+        ArrayList<Intersection> xs = bvh.intersect(r);
+        assertEquals(2, xs.size());
+        assertEquals(4, xs.get(0).getTime(), EPSILON);
+        assertEquals(6, xs.get(1).getTime(), EPSILON);
+
+        r = new Ray(new Point(0, 5, -5), new Vector(0, 0, 1));
+        assertTrue(bvh.intersect(r).isEmpty());
+    }
+
+    @Test
+    void testLinearBVHMatchesBruteForce() {
+        Group flat = sphereCloud(400, 2);
+        Group accel = sphereCloud(400, 2);
+        accel.buildLinearBVH();
+        assertNotNull(accel.linearBVH());
+
+        Random rnd = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            Ray r = new Ray(new Point(rnd.nextDouble() * 4 - 2, rnd.nextDouble() * 4 - 2, -30),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, 1).normalize());
+            ArrayList<Intersection> xs1 = flat.intersect(r);
+            ArrayList<Intersection> xs2 = accel.intersect(r);
+
+            assertEquals(xs1.size(), xs2.size());
+            for (int j = 0; j < xs1.size(); j++) {
+                assertEquals(xs1.get(j).getTime(), xs2.get(j).getTime(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    void testAxisAlignedRaysThroughFlatBounds() {
+        // Triangles lying in the z=0 plane have zero thickness boxes
+        Group g = new Group();
+        for (int i = 0; i < 10; i++) {
+            g.addObject(new Triangle(new Point(i, 0, 0), new Point(i + 1, 0, 0), new Point(i, 1, 0)));
+        }
+        g.buildLinearBVH();
+
+        Ray r = new Ray(new Point(4.2, 0.2, -5), new Vector(0, 0, 1));
+        ArrayList<Intersection> xs = g.intersect(r);
+        assertEquals(1, xs.size());
+        assertEquals(5, xs.get(0).getTime(), EPSILON);
+    }
+
+    @Test
+    void testChangingTheContentsDiscardsTheHierarchy() {
+        Group g = sphereCloud(20, 4);
+        g.buildLinearBVH();
+        assertNotNull(g.linearBVH());
+
+        g.addObject(new Sphere());
+        assertNull(g.linearBVH());
+
+        g.buildLinearBVH();
+        g.contents().get(0).setTransform(Matrix.translation(100, 0, 0));
+        assertNull(g.linearBVH());
+    }
+
+    @Test
+    void testDeepTreesStillTraverse() {
+        // A long line of spheres gives a deep tree, exercising stack growth
+        Group g = new Group();
+        for (int i = 0; i < 2000; i++) {
+            Sphere s = new Sphere();
+            s.setTransform(Matrix.translation(i * Math.pow(1.01, i), 0, 0));
+            g.addObject(s);
+        }
+        g.buildLinearBVH();
+
+        Ray r = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+        assertEquals(4000, g.intersect(r).size());
+    }
+
+    @Test
+    void testNestedHierarchiesShareTheThreadsStack() {
+        // Groups with hierarchies of their own inside a hierarchy, so
+        // traversals nest on the same stack
+        Group flat = new Group();
+        Group outer = new Group();
+        for (int i = 0; i < 8; i++) {
+            Group a = sphereCloud(30, 10 + i);
+            Group b = sphereCloud(30, 10 + i);
+            a.setTransform(Matrix.translation(i * 25, 0, 0));
+            b.setTransform(Matrix.translation(i * 25, 0, 0));
+            b.buildLinearBVH();
+            flat.addObject(a);
+            outer.addObject(b);
+        }
+        outer.buildLinearBVH();
+        TraversalStack stack = TraversalStack.get();
+        int[] nodes = stack.nodes;
+
+        Random rnd = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Ray r = new Ray(new Point(-30, rnd.nextDouble() * 4 - 2, rnd.nextDouble() * 4 - 2),
+                new Vector(1, rnd.nextDouble() * 0.1 - 0.05, rnd.nextDouble() * 0.1 - 0.05).normalize());
+            ArrayList<Intersection> xs1 = flat.intersect(r);
+            ArrayList<Intersection> xs2 = outer.intersect(r);
+
+            assertEquals(xs1.size(), xs2.size());
+            for (int j = 0; j < xs1.size(); j++) {
+                assertEquals(xs1.get(j).getTime(), xs2.get(j).getTime(), EPSILON);
+            }
+            assertEquals(0, stack.top);
+        }
+        // Shallow trees never need the stack to grow
+        assertSame(nodes, stack.nodes);
+    }
+
+    @Test
+    void testClosestHitMatchesTheFullIntersectionList() {
+        Group g = sphereCloud(400, 5);
+        g.buildLinearBVH();
+        LinearBVH bvh = g.linearBVH();
+
+        Random rnd = new Random(6);
+        for (int i = 0; i < 300; i++) {
+            // Start some rays inside the cloud so hits behind the origin get ignored
+            Ray r = new Ray(new Point(rnd.nextDouble() * 10 - 5, rnd.nextDouble() * 10 - 5, rnd.nextDouble() * 30 - 20),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5).normalize());
+
+            Intersection expected = Intersection.hit(bvh.intersect(r));
+            Intersection actual = bvh.hit(r);
+
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertNotNull(actual);
+                assertEquals(expected.getTime(), actual.getTime(), EPSILON);
+                assertSame(expected.getShape(), actual.getShape());
+            }
+        }
+    }
+
+    @Test
+    void testOcclusionOnlyCountsShadowCastersBeforeTheDistance() {
+        Group g = sphereCloud(400, 8);
+        for (int i = 0; i < 400; i += 3) {
+            g.contents().get(i).castsShadow(false);
+        }
+        g.buildLinearBVH();
+        LinearBVH bvh = g.linearBVH();
+
+        Random rnd = new Random(9);
+        for (int i = 0; i < 300; i++) {
+            Ray r = new Ray(new Point(rnd.nextDouble() * 10 - 5, rnd.nextDouble() * 10 - 5, rnd.nextDouble() * 30 - 20),
+                new Vector(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5).normalize());
+            double distance = rnd.nextDouble() * 20;
+
+            boolean expected = false;
+            for (Intersection x: bvh.intersect(r)) {
+                if (x.getTime() >= 0 && x.getTime() < distance && x.getShape().castsShadow()) {
+                    expected = true;
+                }
+            }
+            assertEquals(expected, bvh.occluded(r, distance));
+        }
+    }
+}
@@ -137,6 +137,32 @@ class ShapeTest {
         assertEquals(-0.85716, n.getZ(), EPSILON);
     }
 
+    @Test
+    void testWorldTransformsFollowChangesToParents() {
+        Group g1 = new Group();
+        Group g2 = new Group();
+        g2.setTransform(Matrix.scaling(2, 2, 2));
+        g1.addObject(g2);
+        Sphere s = new Sphere();
+        s.setTransform(Matrix.translation(5, 0, 0));
+        g2.addObject(s);
+
+        assertEquals(new Point(-5, 0, 0), s.worldToObject(new Point(0, 0, 0)));
+
+        // Changing an ancestor's transform after the matrices have been cached
+        g1.setTransform(Matrix.rotation_y(Math.PI/2));
+        assertEquals(new Point(0, 0, -1), s.worldToObject(new Point(-2, 0, -10)));
+
+        // As does moving the shape to another group
+        Group g3 = new Group();
+        g3.setTransform(Matrix.translation(0, 1, 0));
+        g3.addObject(s);
+        assertEquals(new Point(-5, -1, 0), s.worldToObject(new Point(0, 0, 0)));
+
+        g3.removeObject(s);
+        assertEquals(new Point(-5, 0, 0), s.worldToObject(new Point(0, 0, 0)));
+    }
+
     @Test
     void testQueryingAShapesBoundingBoxInParentSpace() {
         Sphere shape = new Sphere();
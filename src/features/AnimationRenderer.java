@@ -0,0 +1,271 @@
+package features;
+
+import objects.BVHBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the frames of an animation: before each frame a callback updates
+ * the world and camera (moving shapes, lights and the camera), then the world
+ * is compiled and the frame rendered and handed on to be encoded.
+ *
+ * Rather than setting everything up from scratch each frame, the renderer
+ * keeps what it can between frames:
+ *
+ *  - the world itself, so shapes, groups and their materials (in the
+ *    MaterialTable) are made once and only changed by the callback
+ *  - the flattened hierarchies of groups, which compiling only rebuilds for
+ *    groups whose contents changed.  Moving a group as a whole keeps its
+ *    hierarchy, so only the (small) top level hierarchy is built every frame.
+ *  - a thread pool, used both to build hierarchies and to render the frame's
+ *    tiles (see RenderJob), and a thread for encoding frames
+ *
+ * Encoding is pipelined with rendering: a frame is encoded on the encoding
+ * thread while the next frame is updated, compiled and rendered.  Only one
+ * frame waits to be encoded at a time, so at most two images are held.  The
+ * callback runs on the calling thread, and never while a frame is rendering,
+ * so it's free to change the world.
+ *
+ * Frames are rendered with the camera's packet and wavefront settings, but
+ * not anti-aliased, as with any other tiled render.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class AnimationRenderer implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(AnimationRenderer.class);
+
+    /**
+     * Sets up the world and camera for a frame
+     */
+    @FunctionalInterface
+    public interface FrameUpdate {
+        /**
+         * @param frame The number of the frame about to be rendered
+         * @param world The world, as it was left after the previous frame
+         * @param camera The camera, as it was left after the previous frame
+         */
+        void update(int frame, @NotNull World world, @NotNull Camera camera);
+    }
+
+    /**
+     * Receives the finished frames, in order, on the encoding thread
+     */
+    @FunctionalInterface
+    public interface FrameConsumer {
+        /**
+         * @param frame The number of the frame
+         * @param image The frame's image
+         * @throws IOException if the frame can't be written
+         */
+        void accept(int frame, @NotNull Canvas image) throws IOException;
+    }
+
+    /**
+     * How long each stage of a frame took, in nanoseconds
+     * @param frame The number of the frame
+     * @param update Running the update callback
+     * @param compile Compiling the world
+     * @param render Rendering the image
+     * @param encode Handing the image to the consumer
+     */
+    public record FrameTiming(int frame, long update, long compile, long render, long encode) {
+        /**
+         * @return The time taken by every stage of the frame
+         */
+        public long total() {
+            return update + compile + render + encode;
+        }
+    }
+
+    private final World world;
+    private final Camera camera;
+    private final ForkJoinPool pool;
+    private final BVHBuilder builder;
+    private final ExecutorService encoder;
+    private int tileSize = 32;
+    private int samples = 1;
+
+    /**
+     * Creates a renderer for an animation of a world seen from a camera, with
+     * a thread per processor
+     * @param world The world
+     * @param camera The camera
+     */
+    public AnimationRenderer(@NotNull World world, @NotNull Camera camera) {
+        this(world, camera, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a renderer for an animation of a world seen from a camera
+     * @param world The world
+     * @param camera The camera
+     * @param threads The number of threads to render with
+     * @throws RuntimeException if threads is less than 1
+     */
+    public AnimationRenderer(@NotNull World world, @NotNull Camera camera, int threads) throws RuntimeException {
+        if (threads < 1) {
+            throw new RuntimeException("Need at least one thread to render with");
+        }
+        this.world = world;
+        this.camera = camera;
+        pool = new ForkJoinPool(threads);
+        builder = new BVHBuilder(pool);
+        encoder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "animation-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param size The width (and height) of the tiles frames are split into
+     * @throws RuntimeException if the size is less than 1
+     */
+    public void setTileSize(int size) throws RuntimeException {
+        if (size < 1) {
+            throw new RuntimeException("Tile size must be at least 1");
+        }
+        tileSize = size;
+    }
+
+    /**
+     * @return The width (and height) of the tiles frames are split into
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param samples The number of samples per pixel
+     * @throws RuntimeException if samples is less than 1
+     */
+    public void setSamplesPerPixel(int samples) throws RuntimeException {
+        if (samples < 1) {
+            throw new RuntimeException("Need at least one sample per pixel");
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * @return The number of samples per pixel
+     */
+    public int getSamplesPerPixel() {
+        return samples;
+    }
+
+    /**
+     * Renders frames to PPM files
+     * @param first The number of the first frame
+     * @param count The number of frames
+     * @param update Sets up the world and camera for each frame
+     * @param pattern The name of each frame's file, as a format string given
+     *                the frame number (e.g. "frame%04d.ppm")
+     * @return The timings of each frame
+     * @throws IOException if a file can't be written
+     */
+    public List<FrameTiming> renderToFiles(int first, int count, @NotNull FrameUpdate update, @NotNull String pattern) throws IOException {
+        return render(first, count, update, (frame, image) -> {
+            try (Writer out = new BufferedWriter(new FileWriter(String.format(pattern, frame)))) {
+                PPMWriter.writeHeader(out, image.getWidth(), image.getHeight());
+                PPMWriter.writeRows(out, image);
+            }
+        });
+    }
+
+    /**
+     * Renders frames, handing each to the consumer on the encoding thread
+     * while the next is rendered.  If anything fails, the animation stops
+     * there: no more frames are updated, and none after it are handed on.
+     * @param first The number of the first frame
+     * @param count The number of frames
+     * @param update Sets up the world and camera for each frame
+     * @param consumer Where to send the frames
+     * @return The timings of each frame
+     * @throws IOException if the consumer fails
+     * @throws RuntimeException if updating or rendering a frame fails
+     */
+    public List<FrameTiming> render(int first, int count, @NotNull FrameUpdate update, @NotNull FrameConsumer consumer) throws IOException {
+        List<FrameTiming> timings = new ArrayList<>(count);
+        Future<FrameTiming> encoding = null;
+
+        for (int frame = first; frame < first + count; frame++) {
+            long start = System.nanoTime();
+            update.update(frame, world, camera);
+            long updated = System.nanoTime();
+            RenderScene scene = world.compile(builder);
+            long compiled = System.nanoTime();
+
+            RenderJob job = new RenderJob(camera, scene);
+            job.setTileSize(tileSize);
+            job.setSamplesPerPixel(samples);
+            job.setExecutor(pool);
+            Canvas image = await(job.start());
+            long rendered = System.nanoTime();
+
+            // The previous frame has had all this time to be encoded
+            if (encoding != null) {
+                timings.add(await(encoding));
+            }
+
+            int f = frame;
+            encoding = encoder.submit(() -> {
+                long encodeStart = System.nanoTime();
+                consumer.accept(f, image);
+                FrameTiming t = new FrameTiming(f, updated - start, compiled - updated, rendered - compiled, System.nanoTime() - encodeStart);
+                log.debug("Frame {}: update {}ms, compile {}ms, render {}ms, encode {}ms", f,
+                    String.format("%.1f", t.update() / 1.0e6), String.format("%.1f", t.compile() / 1.0e6),
+                    String.format("%.1f", t.render() / 1.0e6), String.format("%.1f", t.encode() / 1.0e6));
+                return t;
+            });
+        }
+
+        if (encoding != null) {
+            timings.add(await(encoding));
+        }
+        return timings;
+    }
+
+    /**
+     * Waits for a frame to be rendered or encoded, passing on its failure
+     */
+    private static <T> T await(@NotNull Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rendering an animation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException r) {
+                throw r;
+            }
+            throw new RuntimeException("Rendering a frame failed", cause);
+        }
+    }
+
+    /**
+     * Stops the renderer's threads, once any frame being encoded is written
+     */
+    @Override
+    public void close() {
+        encoder.shutdown();
+        pool.shutdown();
+    }
+}
@@ -1,8 +1,17 @@
 package features;
 
 import features.Matrix;
+import features.sampling.Sampler;
+import features.sampling.SobolSampler;
+import objects.Shape;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Models a camera within the world, which we'll use to view and render the
  * scene
@@ -10,12 +19,22 @@ import org.jetbrains.annotations.NotNull;
  * @author Mark Edwards
  * @version July 18th, 2022
  */
-public class Camera {
+public class Camera implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LogManager.getLogger(Camera.class);
     private static final int MAX_RAY_RECURSION = 5;
     private final int hsize;
     private final int vsize;
     private final double fov;
     Matrix transform;
+    private int packetSize;
+    private int wavefrontSize;
+    private int maxRecursion = MAX_RAY_RECURSION;
+    private Termination termination = Termination.DEFAULT;
+    private int aaLevels;
+    private double aaThreshold = 0.1;
+    private Sampler sampler = new SobolSampler();
 
     private double half_width;
     private double half_height;
@@ -73,6 +92,151 @@ public class Camera {
         transform = new Matrix(t);
     }
 
+    /**
+     * @return The width (and height) of the square ray packets used when
+     *         rendering, or 0 if packet tracing is switched off
+     */
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    /**
+     * Switches packet tracing on or off.  With packets on, the image is
+     * rendered in square blocks of size x size pixels whose primary rays are
+     * traced through the scene together, which pays off for groups carrying a
+     * flattened BVH.  Sizes of 4 and 8 are the sensible choices.
+     * @param size The width of a packet in pixels, or 0 to trace single rays
+     * @throws RuntimeException if a packet would hold more rays than allowed
+     */
+    public void setPacketSize(int size) throws RuntimeException {
+        if (size < 0 || size * size > RayPacket.MAX_SIZE) {
+            throw new RuntimeException("Packet size must be between 0 and "+ (int) Math.sqrt(RayPacket.MAX_SIZE));
+        }
+        packetSize = size <= 1 ? 0 : size;
+    }
+
+    /**
+     * @return The width (and height) of the square tiles rendered as one
+     *         wavefront, or 0 if wavefront rendering is switched off
+     */
+    public int getWavefrontSize() {
+        return wavefrontSize;
+    }
+
+    /**
+     * Switches wavefront rendering on or off.  With wavefronts on, the image
+     * is rendered in square tiles of size x size pixels, and every ray for a
+     * tile is taken through each stage of the work (finding hits, tracing
+     * shadow rays, shading, spawning reflected and refracted rays) before any
+     * moves on to the next.  Rays are traced in packets, so the packet size
+     * is ignored.  Sizes of 32 to 128 are the sensible choices.
+     * @param size The width of a tile in pixels, or 0 to trace rays one at a time
+     * @throws RuntimeException if the size is negative
+     */
+    public void setWavefrontSize(int size) throws RuntimeException {
+        if (size < 0) {
+            throw new RuntimeException("Wavefront size can't be negative");
+        }
+        wavefrontSize = size;
+    }
+
+    /**
+     * @return The most reflections or refractions followed from a primary ray
+     */
+    public int getMaxRecursion() {
+        return maxRecursion;
+    }
+
+    /**
+     * Sets the most reflections or refractions followed from a primary ray.
+     * With throughput termination, rays usually stop well short of this, so it
+     * can safely be raised for mirror or glass heavy scenes.
+     * @param depth The maximum depth
+     * @throws RuntimeException if the depth is negative
+     */
+    public void setMaxRecursion(int depth) throws RuntimeException {
+        if (depth < 0) {
+            throw new RuntimeException("Maximum recursion depth can't be negative");
+        }
+        maxRecursion = depth;
+    }
+
+    /**
+     * @return When reflected and refracted rays with little throughput stop
+     *         being followed
+     */
+    public Termination getTermination() {
+        return termination;
+    }
+
+    /**
+     * Sets when reflected and refracted rays with little throughput stop being
+     * followed.  Defaults to Termination.DEFAULT, which makes no visible
+     * difference; use Termination.EXACT to follow every ray to full depth.
+     * @param t The termination to use
+     */
+    public void setTermination(@NotNull Termination t) {
+        termination = t;
+    }
+
+    /**
+     * @return The most samples taken for any one pixel
+     */
+    public int getMaxSamples() {
+        return 1 << (2 * aaLevels);
+    }
+
+    /**
+     * @return The colour difference between neighbouring pixels above which
+     *         they are anti-aliased
+     */
+    public double getAntiAliasThreshold() {
+        return aaThreshold;
+    }
+
+    /**
+     * Switches adaptive anti-aliasing on or off.  Every pixel is first sampled
+     * once through its centre.  Pixels whose colour differs from one of their
+     * neighbours by more than the threshold (in any colour channel), or which
+     * see a different object from one of their neighbours, lie on an edge, and
+     * only those are sampled again: split into four quarters, each sampled
+     * through its centre, with any quarter whose samples still differ split
+     * again, up to the sample budget.  Each pixel's colour is the average of
+     * its samples.
+     * @param maxSamples The most samples to take for any one pixel.  Rounded
+     *                   down to a power of 4 (4, 16, 64...); 1 switches
+     *                   anti-aliasing off.
+     * @param threshold The colour difference above which pixels are refined
+     * @throws RuntimeException if maxSamples is less than 1 or the threshold is negative
+     */
+    public void setAntiAliasing(int maxSamples, double threshold) throws RuntimeException {
+        if (maxSamples < 1 || threshold < 0) {
+            throw new RuntimeException("Anti-aliasing needs at least one sample and a threshold of at least 0");
+        }
+        int levels = 0;
+        while (1 << (2 * (levels + 1)) <= maxSamples && levels < 15) {
+            levels++;
+        }
+        aaLevels = levels;
+        aaThreshold = threshold;
+    }
+
+    /**
+     * @return The sampler used to place multiple samples within a pixel
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Sets the sampler used to place multiple samples within a pixel
+     * (dimensions 0 and 1 of each sample).  Defaults to a SobolSampler.
+     * @param s The sampler to use
+     */
+    public void setSampler(@NotNull Sampler s) {
+        sampler = s;
+    }
+
     /**
      * @return The size of a pixel on the canvas in world-space terms
      */
@@ -110,8 +274,32 @@ public class Camera {
      */
     public Ray rayForPixel(int px, int py) {
         // Offset from the edge of canvas to the pixel's centre
-        double x_offset = (px + 0.5) * pixel_size;
-        double y_offset = (py + 0.5) * pixel_size;
+        return rayThrough(px + 0.5, py + 0.5);
+    }
+
+    /**
+     * Returns the ray for one of several samples of a pixel, passing through
+     * the point within the pixel given by the sampler.  The same pixel and
+     * index always give the same ray.
+     * @param px The x coordinate of the pixel
+     * @param py The y coordinate of the pixel
+     * @param index The index of the sample within the pixel
+     * @return The computed ray
+     */
+    public Ray rayForSample(int px, int py, int index) {
+        return rayThrough(px + sampler.get(px, py, index, 0), py + sampler.get(px, py, index, 1));
+    }
+
+    /**
+     * Returns a ray that passes from the camera through any point on the
+     * canvas
+     * @param x Distance across the canvas, in pixels, from its left edge
+     * @param y Distance down the canvas, in pixels, from its top edge
+     * @return The computed ray
+     */
+    public Ray rayThrough(double x, double y) {
+        double x_offset = x * pixel_size;
+        double y_offset = y * pixel_size;
 
         // Untransformed coordinates of the pixel in world space
         double world_x = half_width - x_offset;
@@ -119,19 +307,30 @@ public class Camera {
 
         // Transform the canvas point with the camera transform and the origin
         // Then compute the ray's direction
-        Point pixel = transform.inverse().multiply(new Point(world_x, world_y, -1)).toPoint();
-        Point origin = transform.inverse().multiply(new Point(0,0,0)).toPoint();
+        Matrix inverse = transform.inverse();
+        Point pixel = inverse.multiply(new Point(world_x, world_y, -1)).toPoint();
+        Point origin = inverse.multiply(new Point(0,0,0)).toPoint();
         Vector direction = pixel.subtract(origin).normalize();
 
         return new Ray(origin, direction);
     }
 
     /**
-     * Renders the scene specified in world
+     * Renders the scene specified in world.  The world is compiled first, so
+     * changes made to it while rendering won't be seen.
      * @param world The scene we're rendering
      * @return The rendered image canvas
      */
     public Canvas render(@NotNull World world) {
+        return render(world.compile());
+    }
+
+    /**
+     * Renders a compiled scene
+     * @param scene The scene we're rendering
+     * @return The rendered image canvas
+     */
+    public Canvas render(@NotNull RenderScene scene) {
         Canvas image = new Canvas(hsize, vsize);
 
         int totalPx = vsize * hsize;
@@ -141,22 +340,323 @@ public class Camera {
 
         System.out.print("Rendering: 0%");
 
-        for (int row = 0; row < vsize; row++) {
-            for (int col = 0; col < hsize; col++) {
-                Ray r = rayForPixel(col, row);
-                Colour c = world.colourAt(r, MAX_RAY_RECURSION);
-                image.setPixel(col, row, c);
-
-                progress += onePct;
-                if (progress > lastOutput+1) {
-                    System.out.print("\rRendering: "+ String.format("%.0f", progress) +"%");
-                    lastOutput = progress;
+        // Only the single ray renderer records which object each pixel sees
+        Shape[] seen = null;
+
+        if (wavefrontSize > 0) {
+            new WavefrontRenderer(scene, wavefrontSize, maxRecursion, termination).render(this, image);
+        } else if (packetSize > 0) {
+            renderPackets(scene, image);
+        } else {
+            seen = aaLevels > 0 ? new Shape[totalPx] : null;
+
+            for (int row = 0; row < vsize; row++) {
+                for (int col = 0; col < hsize; col++) {
+                    Ray r = rayForPixel(col, row);
+                    Colour c = scene.colourAt(r, maxRecursion, termination);
+                    image.setPixel(col, row, c);
+                    if (seen != null) {
+                        seen[row * hsize + col] = Integrator.get().primaryHit();
+                    }
+
+                    progress += onePct;
+                    if (progress > lastOutput+1) {
+                        System.out.print("\rRendering: "+ String.format("%.0f", progress) +"%");
+                        lastOutput = progress;
+                    }
                 }
             }
         }
 
+        if (aaLevels > 0) {
+            antiAlias(scene, image, seen);
+        }
+
         System.out.println("\rRendering: 100%");
 
         return image;
     }
+
+    /**
+     * Renders a compiled scene progressively, returning the best image which
+     * can be rendered in the time given (see ProgressiveRenderer)
+     * @param scene The scene we're rendering
+     * @param timeLimit How long to spend rendering
+     * @return The rendered image canvas
+     */
+    public Canvas render(@NotNull RenderScene scene, @NotNull Duration timeLimit) {
+        ProgressiveRenderer renderer = new ProgressiveRenderer(this);
+        renderer.setTimeLimit(timeLimit);
+        return renderer.render(scene);
+    }
+
+    /**
+     * Renders only a rectangle (the region of interest) of the camera's
+     * image, giving a canvas the size of the rectangle.  Pixels come out
+     * exactly as they would in a render of the whole image, except that they
+     * aren't anti-aliased.
+     * @param scene The scene we're rendering
+     * @param left The leftmost column of the region
+     * @param top The top row of the region
+     * @param width The width of the region
+     * @param height The height of the region
+     * @return The rendered region
+     * @throws RuntimeException if the region isn't within the image
+     */
+    public Canvas render(@NotNull RenderScene scene, int left, int top, int width, int height) throws RuntimeException {
+        checkRegion(left, top, width, height);
+        Canvas image = new Canvas(width, height);
+        renderRegion(scene, image, left, top, left, top, width, height);
+        return image;
+    }
+
+    /**
+     * Renders only a rectangle (the region of interest) of the camera's
+     * image, into the same rectangle of an existing image, leaving the rest
+     * of that image as it was
+     * @param scene The scene we're rendering
+     * @param image The image to render into, the size of the camera's
+     * @param left The leftmost column of the region
+     * @param top The top row of the region
+     * @param width The width of the region
+     * @param height The height of the region
+     * @throws RuntimeException if the image is the wrong size or the region
+     *                          isn't within it
+     */
+    public void render(@NotNull RenderScene scene, @NotNull Canvas image, int left, int top, int width, int height) throws RuntimeException {
+        if (image.getWidth() != hsize || image.getHeight() != vsize) {
+            throw new RuntimeException("Image must be "+ hsize +"x"+ vsize +" to render a region into");
+        }
+        checkRegion(left, top, width, height);
+        renderRegion(scene, image, 0, 0, left, top, width, height);
+    }
+
+    /**
+     * @throws RuntimeException if the rectangle isn't an area of the image
+     */
+    void checkRegion(int left, int top, int width, int height) throws RuntimeException {
+        if (width < 1 || height < 1 || left < 0 || top < 0 || left + width > hsize || top + height > vsize) {
+            throw new RuntimeException("Region "+ width +"x"+ height +" at "+ left +","+ top
+                +" isn't within the "+ hsize +"x"+ vsize +" image");
+        }
+    }
+
+    /**
+     * Renders a region, a wavefront sized tile at a time when wavefronts are
+     * on (a wavefront holds every ray of its tile)
+     */
+    private void renderRegion(@NotNull RenderScene scene, @NotNull Canvas image, int imageLeft, int imageTop,
+                              int left, int top, int width, int height) {
+        int step = wavefrontSize > 0 ? wavefrontSize : Math.max(width, height);
+        for (int y = top; y < top + height; y += step) {
+            for (int x = left; x < left + width; x += step) {
+                renderTile(scene, image, imageLeft, imageTop, x, y, Math.min(step, left + width - x), Math.min(step, top + height - y));
+            }
+        }
+    }
+
+    /**
+     * Adaptive anti-aliasing pass: resamples the pixels which lie on edges
+     * @param scene The scene we're rendering
+     * @param image The image, with one sample per pixel
+     * @param seen The object seen through each pixel, or null if not known
+     */
+    private void antiAlias(@NotNull RenderScene scene, @NotNull Canvas image, Shape[] seen) {
+        boolean[] edge = new boolean[hsize * vsize];
+        for (int row = 0; row < vsize; row++) {
+            for (int col = 0; col < hsize; col++) {
+                int i = row * hsize + col;
+                if (col + 1 < hsize && differ(image, seen, col, row, col + 1, row)) {
+                    edge[i] = edge[i + 1] = true;
+                }
+                if (row + 1 < vsize && differ(image, seen, col, row, col, row + 1)) {
+                    edge[i] = edge[i + hsize] = true;
+                }
+            }
+        }
+
+        int refined = 0;
+        long[] samples = new long[1];
+        for (int row = 0; row < vsize; row++) {
+            for (int col = 0; col < hsize; col++) {
+                if (edge[row * hsize + col]) {
+                    image.setPixel(col, row, sampleArea(scene, col, row, 1.0, aaLevels, samples));
+                    refined++;
+                }
+            }
+        }
+
+        log.debug("Anti-aliasing refined "+ refined +" of "+ (hsize * vsize) +" pixels with "+ samples[0] +" extra samples");
+    }
+
+    /**
+     * @return True if two pixels differ enough to be an edge
+     */
+    private boolean differ(@NotNull Canvas image, Shape[] seen, int x1, int y1, int x2, int y2) {
+        if (seen != null && seen[y1 * hsize + x1] != seen[y2 * hsize + x2]) {
+            return true;
+        }
+        return contrast(image.getPixel(x1, y1), image.getPixel(x2, y2)) > aaThreshold;
+    }
+
+    /**
+     * @return The largest difference between two colours in any channel
+     */
+    private static double contrast(@NotNull Colour a, @NotNull Colour b) {
+        return Math.max(Math.abs(a.getR() - b.getR()),
+            Math.max(Math.abs(a.getG() - b.getG()), Math.abs(a.getB() - b.getB())));
+    }
+
+    /**
+     * Samples a square area of the canvas by splitting it into quarters and
+     * sampling the centre of each.  Quarters are split again while the
+     * samples differ and levels remain.
+     * @param scene The scene we're rendering
+     * @param x Left edge of the area, in pixels
+     * @param y Top edge of the area, in pixels
+     * @param size Width of the area, in pixels
+     * @param levels The number of times the area may still be split
+     * @param samples Counter for the number of samples taken
+     * @return The average colour of the area
+     */
+    private Colour sampleArea(@NotNull RenderScene scene, double x, double y, double size, int levels, long @NotNull [] samples) {
+        double half = size / 2;
+        Colour[] quarters = new Colour[4];
+        Shape[] seen = new Shape[4];
+
+        for (int q = 0; q < 4; q++) {
+            double qx = x + (q % 2) * half;
+            double qy = y + (q / 2) * half;
+            quarters[q] = scene.colourAt(rayThrough(qx + half / 2, qy + half / 2), maxRecursion, termination);
+            seen[q] = Integrator.get().primaryHit();
+        }
+        samples[0] += 4;
+
+        if (levels > 1) {
+            for (int q = 0; q < 4; q++) {
+                boolean split = false;
+                for (int other = 0; other < 4 && !split; other++) {
+                    split = seen[q] != seen[other] || contrast(quarters[q], quarters[other]) > aaThreshold;
+                }
+                if (split) {
+                    quarters[q] = sampleArea(scene, x + (q % 2) * half, y + (q / 2) * half, half, levels - 1, samples);
+                }
+            }
+        }
+
+        double r = 0, g = 0, b = 0;
+        for (Colour c: quarters) {
+            r += c.getR();
+            g += c.getG();
+            b += c.getB();
+        }
+        return new Colour(r / 4, g / 4, b / 4);
+    }
+
+    /**
+     * Renders the scene a block of pixels at a time, tracing each block's
+     * primary rays as a single packet
+     * @param scene The scene we're rendering
+     * @param image The canvas to render into
+     */
+    private void renderPackets(@NotNull RenderScene scene, @NotNull Canvas image) {
+        int lastOutput = 0;
+
+        for (int top = 0; top < vsize; top += packetSize) {
+            for (int left = 0; left < hsize; left += packetSize) {
+                renderPacket(scene, image, 0, 0, left, top, Math.min(packetSize, hsize - left), Math.min(packetSize, vsize - top));
+            }
+
+            int progress = (int) (100.0 * Math.min(vsize, top + packetSize) / vsize);
+            if (progress > lastOutput) {
+                System.out.print("\rRendering: "+ progress +"%");
+                lastOutput = progress;
+            }
+        }
+    }
+
+    /**
+     * Traces the primary rays for a block of pixels as a single packet
+     * @param scene The scene we're rendering
+     * @param image The canvas to render into
+     * @param imageLeft The column of the image where the canvas starts
+     * @param imageTop The row of the image where the canvas starts
+     */
+    private void renderPacket(@NotNull RenderScene scene, @NotNull Canvas image, int imageLeft, int imageTop,
+                              int left, int top, int width, int height) {
+        Ray[] rays = new Ray[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rays[y * width + x] = rayForPixel(left + x, top + y);
+            }
+        }
+
+        Colour[] colours = scene.colourAt(new RayPacket(rays), maxRecursion, termination);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setPixel(left + x - imageLeft, top + y - imageTop, colours[y * width + x]);
+            }
+        }
+    }
+
+    /**
+     * Renders one rectangle of the image, using the camera's wavefront or
+     * packet settings if either is switched on.  Anti-aliasing needs the whole
+     * image, so isn't applied.  Used by RenderJob, which renders the tiles of
+     * an image on several threads at once.
+     * @param scene The scene we're rendering
+     * @param image The canvas to render into
+     * @param left The leftmost column of the rectangle
+     * @param top The top row of the rectangle
+     * @param width The width of the rectangle
+     * @param height The height of the rectangle
+     */
+    void renderTile(@NotNull RenderScene scene, @NotNull Canvas image, int left, int top, int width, int height) {
+        renderTile(scene, image, 0, 0, left, top, width, height);
+    }
+
+    /**
+     * Renders one rectangle of the image into a canvas covering only part of
+     * the image, whose top left pixel is the image's pixel (imageLeft,
+     * imageTop).  Pixels are placed by their image coordinates less those of
+     * the canvas, so the rectangle must lie within the canvas.
+     * @param scene The scene we're rendering
+     * @param image The canvas to render into
+     * @param imageLeft The column of the image where the canvas starts
+     * @param imageTop The row of the image where the canvas starts
+     * @param left The leftmost column of the rectangle
+     * @param top The top row of the rectangle
+     * @param width The width of the rectangle
+     * @param height The height of the rectangle
+     */
+    void renderTile(@NotNull RenderScene scene, @NotNull Canvas image, int imageLeft, int imageTop,
+                    int left, int top, int width, int height) {
+        if (wavefrontSize > 0) {
+            new WavefrontRenderer(scene, wavefrontSize, maxRecursion, termination)
+                .renderTile(this, image, imageLeft, imageTop, left, top, width, height);
+        } else if (packetSize > 0) {
+            for (int y = top; y < top + height; y += packetSize) {
+                for (int x = left; x < left + width; x += packetSize) {
+                    renderPacket(scene, image, imageLeft, imageTop, x, y,
+                        Math.min(packetSize, left + width - x), Math.min(packetSize, top + height - y));
+                }
+            }
+        } else {
+            for (int y = top; y < top + height; y++) {
+                for (int x = left; x < left + width; x++) {
+                    image.setPixel(x - imageLeft, y - imageTop, scene.colourAt(rayForPixel(x, y), maxRecursion, termination));
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts rendering a compiled scene in the background, a tile at a time
+     * on the common fork/join pool.  See RenderJob for more control.
+     * @param scene The scene we're rendering
+     * @return The future image, which can be cancelled
+     */
+    public CompletableFuture<Canvas> renderAsync(@NotNull RenderScene scene) {
+        return new RenderJob(this, scene).start();
+    }
 }
@@ -2,13 +2,16 @@ package features;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
  * Uses the Tuple class to encapsulate the RGBA nature of a pixel on the
  * canvas.
  */
-public class Colour {
+public class Colour implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Colour value is stored internally within a Tuple
     private final Tuple colour;
 
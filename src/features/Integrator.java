@@ -0,0 +1,217 @@
+package features;
+
+import objects.Shape;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Follows the reflected and refracted rays spawned by a hit without
+ * recursing.  Rather than shading each secondary ray inside the call that
+ * spawned it, every secondary ray is pushed onto a work stack along with its
+ * throughput: the weight (per colour channel) its colour contributes to the
+ * final pixel.  Rays are then popped and shaded one at a time, each adding
+ * its weighted direct lighting to the total and pushing any rays of its own.
+ *
+ * The sum is the same one the recursive shadeHit() computes, just gathered
+ * in a different order, but the call stack stays flat however deep the rays
+ * are followed.  Besides the depth limit, rays are cut short by a material's
+ * own depth limit and by a Termination once their throughput gets too small.
+ *
+ * Each thread has its own integrator (see get()), so scenes can be rendered
+ * from several threads at once.  The work stack is reused from ray to ray and
+ * only ever grows.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class Integrator {
+    private static final ThreadLocal<Integrator> local = ThreadLocal.withInitial(Integrator::new);
+
+    private Ray[] rays = new Ray[16];
+    private double[] weights = new double[16 * 3];
+    private int[] depths = new int[16];
+    private int size;
+    private Termination termination = Termination.EXACT;
+    private Shape primaryHit;
+    private final SplittableRandom random = new SplittableRandom();
+
+    private Integrator() {}
+
+    /**
+     * @return The calling thread's integrator
+     */
+    static Integrator get() {
+        return local.get();
+    }
+
+    /**
+     * Determines the colour seen by a ray.  The shape the ray itself hits is
+     * then available from primaryHit().
+     * @param scene The scene the ray is in
+     * @param r The ray
+     * @param remaining The number of reflections or refractions we can still follow
+     * @param t When to stop following rays with little throughput
+     * @return The colour seen along the ray
+     */
+    Colour trace(@NotNull RenderScene scene, @NotNull Ray r, int remaining, @NotNull Termination t) {
+        ArrayList<Intersection> xs = scene.intersect(r);
+        Intersection hit = Intersection.hit(xs);
+
+        if (hit == null) {
+            primaryHit = null;
+            return new Colour(0, 0, 0);
+        }
+        primaryHit = hit.getShape();
+        return shade(scene, new Precompute(hit, r, xs, scene), remaining, t);
+    }
+
+    /**
+     * @return The shape hit by the ray most recently passed to trace() on this
+     *         thread, or null if it hit nothing
+     */
+    Shape primaryHit() {
+        return primaryHit;
+    }
+
+    /**
+     * Determines the colour at a hit which has already been found
+     * @param scene The scene the hit is in
+     * @param comps The precomputed ray/intersection vectors for the hit
+     * @param remaining The number of reflections or refractions we can still follow
+     * @param t When to stop following rays with little throughput
+     * @return The colour at the hit
+     */
+    Colour shade(@NotNull RenderScene scene, @NotNull Precompute comps, int remaining, @NotNull Termination t) {
+        Termination outer = termination;
+        termination = t;
+        int base = size;
+        try {
+            Colour c = shade(scene, comps, 1, 1, 1, remaining);
+            return run(scene, base, c.getR(), c.getG(), c.getB());
+        } finally {
+            termination = outer;
+        }
+    }
+
+    /**
+     * Works through the stack until it is back down to a given size
+     * @param scene The scene the rays are in
+     * @param base The size of the stack when we started
+     * @param r Red total so far
+     * @param g Green total so far
+     * @param b Blue total so far
+     * @return The total colour
+     */
+    private Colour run(@NotNull RenderScene scene, int base, double r, double g, double b) {
+        try {
+            while (size > base) {
+                size--;
+                Ray ray = rays[size];
+                rays[size] = null;
+                double wr = weights[size*3];
+                double wg = weights[size*3 + 1];
+                double wb = weights[size*3 + 2];
+                int remaining = depths[size];
+
+                ArrayList<Intersection> xs = scene.intersect(ray);
+                Intersection hit = Intersection.hit(xs);
+                if (hit == null) {
+                    continue;
+                }
+
+                Colour c = shade(scene, new Precompute(hit, ray, xs, scene), wr, wg, wb, remaining);
+                r += c.getR();
+                g += c.getG();
+                b += c.getB();
+            }
+        } finally {
+            // Leave nothing behind if shading failed part way through
+            while (size > base) {
+                rays[--size] = null;
+            }
+        }
+        return new Colour(r, g, b);
+    }
+
+    /**
+     * Shades a single hit, pushing any reflected or refracted rays it spawns
+     * @param scene The scene the hit is in
+     * @param comps The precomputed ray/intersection vectors for the hit
+     * @param wr Red throughput of the ray
+     * @param wg Green throughput of the ray
+     * @param wb Blue throughput of the ray
+     * @param remaining The number of reflections or refractions we can still follow
+     * @return The weighted direct lighting at the hit
+     */
+    private Colour shade(@NotNull RenderScene scene, @NotNull Precompute comps, double wr, double wg, double wb, int remaining) {
+        Material m = scene.material(comps.object);
+        Colour direct = scene.directLight(comps, m);
+        remaining = Math.min(remaining, m.getMaxDepth());
+
+        if (remaining > 0) {
+            double reflectivity = m.getReflectivity();
+            double transparency = m.getTransparency();
+            // shadeHit() adds the reflected and refracted colours once per light
+            int lights = scene.lightCount();
+
+            // If we have a reflective and transparent surface, apply the fresnel effect to it.
+            double reflectWeight = reflectivity * lights;
+            double refractWeight = transparency * lights;
+            if (reflectivity > 0 && transparency > 0) {
+                double reflectance = comps.reflectance();
+                reflectWeight *= reflectance;
+                refractWeight *= 1 - reflectance;
+            }
+
+            if (reflectWeight != 0) {
+                push(new Ray(comps.over_point, comps.reflectv()),
+                    wr * reflectWeight, wg * reflectWeight, wb * reflectWeight, remaining - 1);
+            }
+            if (refractWeight != 0) {
+                Vector direction = comps.refractv();
+                if (direction != null) {
+                    push(new Ray(comps.under_point(), direction),
+                        wr * refractWeight, wg * refractWeight, wb * refractWeight, remaining - 1);
+                }
+            }
+        }
+
+        return new Colour(direct.getR() * wr, direct.getG() * wg, direct.getB() * wb);
+    }
+
+    /**
+     * Adds a ray to the work stack, unless the termination decides it isn't
+     * worth following
+     */
+    private void push(@NotNull Ray r, double wr, double wg, double wb, int remaining) {
+        double scale = termination.survive(Math.max(wr, Math.max(wg, wb)), random.nextDouble());
+        if (scale == 0) {
+            return;
+        }
+        wr *= scale;
+        wg *= scale;
+        wb *= scale;
+
+        if (size == rays.length) {
+            rays = Arrays.copyOf(rays, size * 2);
+            weights = Arrays.copyOf(weights, size * 2 * 3);
+            depths = Arrays.copyOf(depths, size * 2);
+        }
+        rays[size] = r;
+        weights[size*3] = wr;
+        weights[size*3 + 1] = wg;
+        weights[size*3 + 2] = wb;
+        depths[size] = remaining;
+        size++;
+    }
+
+    /**
+     * @return The number of rays waiting on the stack
+     */
+    int pending() {
+        return size;
+    }
+}
@@ -3,6 +3,7 @@ package features;
 import org.jetbrains.annotations.NotNull;
 import textures.*;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -11,7 +12,9 @@ import java.util.Objects;
  * @author Mark Edwards
  * @version July 14th, 2022
  */
-public class Material {
+public class Material implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // The basic attributes of a surface material
     private Pattern pattern;
     //private Colour colour;
@@ -22,6 +25,7 @@ public class Material {
     private double reflectivity;
     private double transparency;
     private double refIdx;
+    private int maxDepth;
 
     /**
      * Default constructor.  Produces a default material with the properties:
@@ -33,6 +37,7 @@ public class Material {
      *  Reflectivity:        0.0
      *  Transparency:        0.0
      *  Refractive Index:    1.0
+     *  Maximum depth:       Unlimited
      */
     public Material() {
         pattern = new ConstantColour(new Colour(1,1,1));
@@ -43,6 +48,7 @@ public class Material {
         reflectivity = 0.0;
         transparency = 0.0;
         refIdx = 1.0;
+        maxDepth = Integer.MAX_VALUE;
     }
 
     /**
@@ -60,6 +66,7 @@ public class Material {
         reflectivity = other.reflectivity;
         transparency = other.transparency;
         refIdx = other.refIdx;
+        maxDepth = other.maxDepth;
     }
 
     //
@@ -207,6 +214,28 @@ public class Material {
     public double getRefractiveIndex() {
         return refIdx;
     }
+
+    /**
+     * Limits how many further reflections or refractions are followed from a
+     * hit on this material, on top of the renderer's own limit.  Useful for
+     * keeping facing mirrors or dense glass from using up the whole depth.
+     * @param value The maximum depth (0 to follow no rays from this material)
+     * @throws RuntimeException if the depth is negative
+     */
+    public void setMaxDepth(int value) throws RuntimeException {
+        if (value < 0) {
+            throw new RuntimeException("Maximum depth can't be negative");
+        }
+        maxDepth = value;
+    }
+
+    /**
+     * @return The maximum number of reflections or refractions followed from
+     *         this material (Integer.MAX_VALUE if unlimited)
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
     //
     // Standard methods for equality and console output
     //
@@ -215,12 +244,14 @@ public class Material {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Material material = (Material) o;
-        return Double.compare(material.ambient, ambient) == 0 && Double.compare(material.diffuse, diffuse) == 0 && Double.compare(material.specular, specular) == 0 && Double.compare(material.shininess, shininess) == 0 && pattern.equals(material.pattern);
+        return Double.compare(material.ambient, ambient) == 0 && Double.compare(material.diffuse, diffuse) == 0 && Double.compare(material.specular, specular) == 0 && Double.compare(material.shininess, shininess) == 0
+            && Double.compare(material.reflectivity, reflectivity) == 0 && Double.compare(material.transparency, transparency) == 0 && Double.compare(material.refIdx, refIdx) == 0
+            && material.maxDepth == maxDepth && pattern.equals(material.pattern);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(pattern, ambient, diffuse, specular, shininess);
+        return Objects.hash(pattern, ambient, diffuse, specular, shininess, reflectivity, transparency, refIdx, maxDepth);
     }
 
     @Override
@@ -234,6 +265,7 @@ public class Material {
             ", reflectivity=" + reflectivity +
             ", transparency=" + transparency +
             ", refIdx=" + refIdx +
+            ", maxDepth=" + maxDepth +
             '}';
     }
 
@@ -0,0 +1,64 @@
+package features;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * A global table of the distinct materials in use.  Shapes don't keep their
+ * own copy of a material; instead setMaterial() looks the material up here by
+ * content, adding it if it's new, and the shape just keeps a reference to the
+ * table's entry.  A mesh of a million triangles sharing one material thus
+ * costs one material rather than a million.
+ *
+ * Entries are private copies which are never changed, so the materials handed
+ * out by intern() are shared and must not be modified.  Patterns aren't copied
+ * (just as with Material's copy constructor), so a pattern shouldn't be changed
+ * once a material using it has been assigned to a shape.
+ *
+ * The table only holds its entries weakly: an entry no shape (or compiled
+ * scene) refers to any more is dropped by the garbage collector, so a long
+ * running program that keeps making new materials (an animation changing a
+ * colour every frame, say) doesn't fill the table up.  Only the default
+ * material is kept for good.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public final class MaterialTable {
+    // Each entry maps to itself, weakly, so the map holds nothing strongly
+    private static final WeakHashMap<Material, WeakReference<Material>> entries = new WeakHashMap<>();
+
+    /**
+     * The default material, which every shape starts out with
+     */
+    public static final Material DEFAULT = intern(new Material());
+
+    private MaterialTable() {}
+
+    /**
+     * Finds the table's entry for a material, adding a copy of it to the
+     * table if no equal material is there yet
+     * @param m The material to look up
+     * @return The (shared) entry, equal to the material
+     */
+    public static synchronized Material intern(@NotNull Material m) {
+        WeakReference<Material> ref = entries.get(m);
+        Material entry = ref != null ? ref.get() : null;
+
+        if (entry == null) {
+            entry = new Material(m);
+            entries.put(entry, new WeakReference<>(entry));
+        }
+        return entry;
+    }
+
+    /**
+     * @return The number of distinct materials in the table which haven't
+     *         yet been collected
+     */
+    public static synchronized int size() {
+        return entries.size();
+    }
+}
@@ -2,6 +2,7 @@ package features;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Objects;
@@ -12,7 +13,9 @@ import java.util.Objects;
  * @author Mark Edwards
  * @version July 7th, 2022
  */
-public class Matrix {
+public class Matrix implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Matrix data is held internally in an array.
     private final double[] matrix;
     private Matrix inverse;
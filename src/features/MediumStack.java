@@ -0,0 +1,88 @@
+package features;
+
+import objects.Shape;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The stack of objects a ray is currently inside of, used to work out the
+ * refractive indices either side of a hit.  Walking along a ray, each
+ * intersection either enters an object (pushing it) or leaves one (removing
+ * it, wherever it is in the stack).
+ *
+ * Shapes are compared by identity rather than with equals(), which compares
+ * transforms and materials, and each entry keeps the refractive index of its
+ * material so the top of the stack can be read without a lookup.  Leaving an
+ * object searches down from the top, where the object most recently entered
+ * is found, so each step costs at most the current nesting depth.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class MediumStack {
+    /**
+     * Refractive index used when the stack is empty (a vacuum)
+     */
+    static final double VACUUM = 1.0;
+
+    private final RenderScene scene;
+    private Shape[] shapes = new Shape[8];
+    private double[] indices = new double[8];
+    private int size;
+
+    /**
+     * Creates an empty stack which reads the shapes' current materials
+     */
+    MediumStack() {
+        this(null);
+    }
+
+    /**
+     * Creates an empty stack
+     * @param scene The scene to read materials from (see RenderScene.material()),
+     *              or null to read the shapes' current materials
+     */
+    MediumStack(@Nullable RenderScene scene) {
+        this.scene = scene;
+    }
+
+    /**
+     * @return The refractive index of the medium the ray is currently in
+     */
+    double current() {
+        return size == 0 ? VACUUM : indices[size-1];
+    }
+
+    /**
+     * Passes a ray through the surface of a shape: enters it if the ray isn't
+     * already inside, otherwise leaves it
+     * @param s The shape
+     */
+    void cross(@NotNull Shape s) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (shapes[i] == s) {
+                System.arraycopy(shapes, i + 1, shapes, i, size - i - 1);
+                System.arraycopy(indices, i + 1, indices, i, size - i - 1);
+                shapes[--size] = null;
+                return;
+            }
+        }
+
+        if (size == shapes.length) {
+            shapes = Arrays.copyOf(shapes, size * 2);
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        shapes[size] = s;
+        indices[size] = (scene != null ? scene.material(s) : s.sharedMaterial()).getRefractiveIndex();
+        size++;
+    }
+
+    /**
+     * @return The number of shapes the ray is inside of
+     */
+    int depth() {
+        return size;
+    }
+}
@@ -2,7 +2,9 @@ package features;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -26,12 +28,29 @@ public class PPMWriter {
         ppm.add(c.getWidth() +" "+ c.getHeight());  // Image width and height
         ppm.add("255");                             // Maximum colour value for each pixel
 
-        // Then, iterate the pixels to generate the rest of the data
+        // Then the pixel data, a row at a time
+        Colour[] pixels = c.getAllPixels();
+        for (int y = 0; y < c.getHeight(); y++) {
+            rowToPPM(pixels, y * c.getWidth(), c.getWidth(), ppm);
+        }
+
+        return ppm;
+    }
+
+    /**
+     * Generates the PPM lines for one row of pixels.  Data lines should not
+     * exceed 70 characters, and each row of pixels begins on a new line, so
+     * rows can be generated independently of each other.
+     * @param pixels The pixels
+     * @param offset The index of the row's first pixel
+     * @param width The number of pixels in the row
+     * @param ppm The list to add the lines to
+     */
+    private static void rowToPPM(Colour @NotNull [] pixels, int offset, int width, @NotNull List<String> ppm) {
         StringBuilder pxDataLine = new StringBuilder(MAX_LINE_LENGTH); // Each line of the data will be buffered here.
-        // Data lines should not exceed 70 characters.
-        // Furthermore, each row of pixels should begin on a new line...
-        int xOffset = 0;
-        for (Colour colour: c.getAllPixels()) {
+
+        for (int x = 0; x < width; x++) {
+            Colour colour = pixels[offset + x];
             Double[] components = new Double[] { colour.getR(), colour.getG(), colour.getB() };
             for (double component: components) {
                 String intString = String.valueOf(Colour.getClampedComponent(component, 0, 255));
@@ -47,26 +66,46 @@ public class PPMWriter {
 
                 pxDataLine.append(intString);
             }
-
-            xOffset += 1;
-
-            // If we're at the end of a row of pixels, begin a new line (if we've anything to write)
-            if (xOffset >= c.getWidth()) {
-                xOffset = 0;
-
-                if (pxDataLine.length() > 0) {
-                    ppm.add(pxDataLine.toString());
-                    pxDataLine.setLength(0);
-                }
-            }
         }
 
-        // Add the final line if needed
         if (pxDataLine.length() > 0) {
             ppm.add(pxDataLine.toString());
         }
+    }
 
-        return ppm;
+    /**
+     * Writes the header of a PPM file, for an image whose rows will follow
+     * (see writeRows())
+     * @param out Where to write the header
+     * @param width The width of the image
+     * @param height The height of the image
+     * @throws IOException if writing fails
+     */
+    public static void writeHeader(@NotNull Writer out, int width, int height) throws IOException {
+        out.write("P3\n"+ width +" "+ height +"\n255\n");
+    }
+
+    /**
+     * Writes the pixel data of every row of a canvas, exactly as it would
+     * appear in the PPM for a whole image.  Writing the header and then each
+     * band of an image's rows in turn gives the same file as saving the
+     * image, without ever having it all in memory.
+     * @param out Where to write the rows
+     * @param band A canvas holding one or more rows of an image
+     * @throws IOException if writing fails
+     */
+    public static void writeRows(@NotNull Writer out, @NotNull Canvas band) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        Colour[] pixels = band.getAllPixels();
+
+        for (int y = 0; y < band.getHeight(); y++) {
+            lines.clear();
+            rowToPPM(pixels, y * band.getWidth(), band.getWidth(), lines);
+            for (String line: lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
     }
 
     /**
@@ -9,6 +9,8 @@ import org.jetbrains.annotations.NotNull;
  * @version July 8th, 2022
  */
 public class Point extends Tuple {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Generate a point at the given coordinates
      * @param x The x position
@@ -2,15 +2,22 @@ package features;
 
 import objects.Shape;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Data structure to allow for the storage and precomputation of certain structures
  * so that they can be reused in multiple areas.
  *
+ * Only the values every shader needs (the point, eye and normal vectors and the
+ * over point) are computed up front.  The rest are computed the first time they
+ * are asked for, so that a diffuse surface never pays for reflection vectors or
+ * for the scan of the intersection list needed to find the refractive indices.
+ * The intersection list must therefore not be changed until those values have
+ * been read.
+ *
  * @author Mark Edwards
  * @version July 14th, 2022
  */
@@ -22,16 +29,43 @@ public class Precompute {
     public Shape object;
     public Point point;
     public Point over_point;
-    public Point under_point;
     public Vector eye;
     public Vector normal;
-    public Vector reflectv;
     public boolean inside;
-    public double n1;
-    public double n2;
-    public double reflectance;
+
+    private final Intersection hit;
+    private final Ray r;
+    private final List<Intersection> intersections;
+    private final RenderScene scene;
+
+    // Computed on demand
+    private Point under_point;
+    private Vector reflectv;
+    private Vector refractv;
+    private boolean refractvKnown;
+    private double n1;
+    private double n2;
+    private double reflectance = Double.NaN;
+    private boolean refractiveIndicesKnown;
 
     public Precompute(@NotNull Intersection hit, @NotNull Ray r, ArrayList<Intersection> intersections) {
+        this(hit, r, intersections, null);
+    }
+
+    /**
+     * Precomputes a hit in a compiled scene, whose materials are used for the
+     * refractive indices
+     * @param hit The hit
+     * @param r The ray
+     * @param intersections Every intersection along the ray
+     * @param scene The scene, or null to use the shapes' current materials
+     */
+    public Precompute(@NotNull Intersection hit, @NotNull Ray r, ArrayList<Intersection> intersections, @Nullable RenderScene scene) {
+        this.hit = hit;
+        this.r = r;
+        this.intersections = intersections;
+        this.scene = scene;
+
         t = hit.getTime();
         object = hit.getShape();
         point = r.getPosition(t);
@@ -44,39 +78,98 @@ public class Precompute {
             inside = false;
         }
         over_point = point.add(normal.multiply(EPSILON));
-        under_point = point.subtract(normal.multiply(EPSILON));
-        reflectv = r.getDirection().reflect(normal);
 
-        // For transparency and refraction, calculate n1 and n2
-        ArrayList<Shape> containers = new ArrayList<>();
+        Statistics.precomputes++;
+    }
 
-        for (Intersection i: intersections) {
-            if (i.equals(hit)) {
-                if (containers.isEmpty()) {
-                    n1 = 1.0;
-                } else {
-                    n1 = containers.get(containers.size()-1).getMaterial().getRefractiveIndex();
-                }
-            }
+    /**
+     * @return The point just below the surface, where refracted rays start
+     */
+    public Point under_point() {
+        if (under_point == null) {
+            under_point = point.subtract(normal.multiply(EPSILON));
+        }
+        return under_point;
+    }
+
+    /**
+     * @return The direction of the reflected ray
+     */
+    public Vector reflectv() {
+        if (reflectv == null) {
+            reflectv = r.getDirection().reflect(normal);
+        }
+        return reflectv;
+    }
+
+    /**
+     * @return The direction of the refracted ray (found using Snell's law), or
+     *         null if the ray is totally internally reflected
+     */
+    public Vector refractv() {
+        if (!refractvKnown) {
+            refractvKnown = true;
+
+            double n_ratio = n1() / n2();
+            double cos_i = eye.dot(normal);
+            double sin2_t = (n_ratio*n_ratio) * (1 - (cos_i * cos_i));
 
-            if (containers.contains(i.getShape())) {
-                containers.remove(i.getShape());
-            } else {
-                containers.add(i.getShape());
+            if (sin2_t <= 1) {
+                double cos_t = Math.sqrt(1.0 - sin2_t);
+                refractv = normal.multiply((n_ratio * cos_i) - cos_t).subtract(eye.multiply(n_ratio));
             }
+        }
+        return refractv;
+    }
+
+    /**
+     * @return The refractive index of the material the ray is leaving
+     */
+    public double n1() {
+        findRefractiveIndices();
+        return n1;
+    }
+
+    /**
+     * @return The refractive index of the material the ray is entering
+     */
+    public double n2() {
+        findRefractiveIndices();
+        return n2;
+    }
+
+    /**
+     * @return The reflectance of the surface at the hit (the Schlick approximation)
+     */
+    public double reflectance() {
+        if (Double.isNaN(reflectance)) {
+            reflectance = schlick();
+        }
+        return reflectance;
+    }
+
+    /**
+     * For transparency and refraction, calculate n1 and n2 by tracking which
+     * objects the ray is inside of as far as the hit
+     */
+    private void findRefractiveIndices() {
+        if (refractiveIndicesKnown) {
+            return;
+        }
+        refractiveIndicesKnown = true;
+        Statistics.refractiveScans++;
+
+        MediumStack media = new MediumStack(scene);
 
-            if (i.equals(hit)) {
-                if (containers.isEmpty()) {
-                    n2 = 1.0;
-                } else {
-                    n2 = containers.get(containers.size()-1).getMaterial().getRefractiveIndex();
-                }
+        for (Intersection i: intersections) {
+            if (i == hit) {
+                n1 = media.current();
+                media.cross(i.getShape());
+                n2 = media.current();
                 break; // We can terminate processing at this point...
             }
+            media.cross(i.getShape());
         }
-        reflectance = schlick();
-
-        Statistics.precomputes++;
     }
 
     /**
@@ -84,6 +177,8 @@ public class Precompute {
      * of a surface when struck by a ray
      */
     private double schlick() {
+        findRefractiveIndices();
+
         // Determine the cosine of the angle between the eye and the normal vectors
         double cos = eye.dot(normal);
 
@@ -99,8 +194,11 @@ public class Precompute {
             cos = Math.sqrt(1.0 - sin2_t);
         }
 
-        double r0 = Math.pow((n1 - n2) / (n1 + n2), 2);
-        return r0 + (1-r0) * Math.pow(1-cos, 5);
+        double ratio = (n1 - n2) / (n1 + n2);
+        double r0 = ratio * ratio;
+        double x = 1 - cos;
+        double x2 = x * x;
+        return r0 + (1-r0) * (x2 * x2 * x);
     }
 
     /**
@@ -120,14 +218,14 @@ public class Precompute {
             ", object=" + object +
             ", point=" + point +
             ", over_point=" + over_point +
-            ", under_point=" + under_point +
+            ", under_point=" + under_point() +
             ", eye=" + eye +
             ", normal=" + normal +
-            ", reflectv=" + reflectv +
+            ", reflectv=" + reflectv() +
             ", inside=" + inside +
-            ", n1=" + n1 +
-            ", n2=" + n2 +
-            ", reflectance=" + reflectance +
+            ", n1=" + n1() +
+            ", n2=" + n2() +
+            ", reflectance=" + reflectance() +
             '}';
     }
 }
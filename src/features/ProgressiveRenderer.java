@@ -0,0 +1,258 @@
+package features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders an image in passes which each improve on the last, so that there is
+ * always a complete (if rough) image to show and the render can be stopped at
+ * any time.  The passes are:
+ *
+ *  - coarse passes: one ray per 16x16 block of pixels, then per 8x8 block and
+ *    so on down to a ray per pixel.  Each pass only traces the pixels the
+ *    passes before it haven't, and fills the rest of each block with their
+ *    colour.
+ *  - sample passes: one more ray per pixel, through a point in the pixel given
+ *    by the camera's sampler, averaged with the samples so far.
+ *
+ * Rendering stops when the time limit is reached (even part way through a
+ * pass, which still leaves a complete image), when a sample pass changes the
+ * image by less than the convergence threshold, or when every pixel has had
+ * the maximum number of samples.  The first pass is always finished, however
+ * short the time limit.
+ *
+ * Listeners are told after each pass, and are handed the image itself, which
+ * they mustn't modify and which only stays as it is until the next pass.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class ProgressiveRenderer {
+    private static final Logger log = LogManager.getLogger(ProgressiveRenderer.class);
+    private static final int COARSEST = 16;
+
+    /**
+     * Receives the image after each pass of a progressive render
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param pass The number of the pass just finished (from 1)
+         * @param samples The number of samples per pixel so far (0 before the
+         *                first full resolution pass)
+         * @param image The image so far
+         */
+        void passComplete(int pass, int samples, @NotNull Canvas image);
+    }
+
+    private final Camera camera;
+    private Duration timeLimit;
+    private double convergence;
+    private int maxSamples = 16;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * Creates a renderer for the view from a camera, with no time limit and no
+     * convergence threshold, taking up to 16 samples per pixel
+     * @param camera The camera
+     */
+    public ProgressiveRenderer(@NotNull Camera camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * @param limit How long a render may take, or null for no limit
+     */
+    public void setTimeLimit(Duration limit) {
+        timeLimit = limit;
+    }
+
+    /**
+     * @return How long a render may take, or null if there's no limit
+     */
+    public Duration getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets the convergence threshold.  A render stops once a sample pass
+     * changes the image by less than this (the root mean square change of a
+     * pixel, in its most changed colour channel).
+     * @param threshold The threshold, or 0 to take every sample
+     * @throws RuntimeException if the threshold is negative
+     */
+    public void setConvergenceThreshold(double threshold) throws RuntimeException {
+        if (threshold < 0) {
+            throw new RuntimeException("Convergence threshold can't be negative");
+        }
+        convergence = threshold;
+    }
+
+    /**
+     * @return The convergence threshold
+     */
+    public double getConvergenceThreshold() {
+        return convergence;
+    }
+
+    /**
+     * @param samples The most samples to take for any pixel (1 stops after the
+     *                first full resolution pass)
+     * @throws RuntimeException if samples is less than 1
+     */
+    public void setMaxSamples(int samples) throws RuntimeException {
+        if (samples < 1) {
+            throw new RuntimeException("Need at least one sample per pixel");
+        }
+        maxSamples = samples;
+    }
+
+    /**
+     * @return The most samples taken for any pixel
+     */
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    /**
+     * @param l A listener to tell after each pass
+     */
+    public void addListener(@NotNull Listener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * @param l The listener to stop telling
+     */
+    public void removeListener(@NotNull Listener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Renders a scene, progressively
+     * @param scene The scene we're rendering
+     * @return The best image rendered before stopping
+     */
+    public Canvas render(@NotNull RenderScene scene) {
+        int width = camera.getHSize();
+        int height = camera.getVSize();
+        Canvas image = new Canvas(width, height);
+        long deadline = timeLimit == null ? Long.MAX_VALUE : System.nanoTime() + timeLimit.toNanos();
+        int pass = 0;
+
+        // Coarse passes
+        for (int block = COARSEST; block >= 1; block /= 2) {
+            boolean finished = coarsePass(scene, image, block, pass == 0 ? Long.MAX_VALUE : deadline);
+            pass++;
+            notify(pass, block == 1 ? 1 : 0, image);
+            if (!finished || System.nanoTime() >= deadline) {
+                log.debug("Progressive render stopped by the time limit during pass "+ pass);
+                return image;
+            }
+        }
+
+        // Sample passes, starting from the pixel centre samples just taken
+        double[] sums = new double[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Colour c = image.getPixel(x, y);
+                int i = (y * width + x) * 3;
+                sums[i] = c.getR();
+                sums[i+1] = c.getG();
+                sums[i+2] = c.getB();
+            }
+        }
+
+        for (int samples = 2; samples <= maxSamples; samples++) {
+            double change = samplePass(scene, image, sums, samples, deadline);
+            pass++;
+            notify(pass, samples, image);
+
+            if (Double.isNaN(change)) {
+                log.debug("Progressive render stopped by the time limit at "+ samples +" samples");
+                break;
+            }
+            if (change < convergence) {
+                log.debug("Progressive render converged at "+ samples +" samples");
+                break;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Traces one ray per block of pixels, skipping pixels already traced for
+     * larger blocks, and fills each block with its colour
+     * @return False if the deadline was reached before the pass finished
+     */
+    private boolean coarsePass(@NotNull RenderScene scene, @NotNull Canvas image, int block, long deadline) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        for (int y = 0; y < height; y += block) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            for (int x = 0; x < width; x += block) {
+                boolean done = block < COARSEST && x % (block * 2) == 0 && y % (block * 2) == 0;
+                if (done) {
+                    continue;
+                }
+
+                Colour c = scene.colourAt(camera.rayForPixel(x, y), camera.getMaxRecursion(), camera.getTermination());
+                for (int by = y; by < Math.min(y + block, height); by++) {
+                    for (int bx = x; bx < Math.min(x + block, width); bx++) {
+                        image.setPixel(bx, by, c);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds one more sample to every pixel
+     * @param sums The running totals of each pixel's samples
+     * @param samples The number of samples per pixel once this pass is done
+     * @return The root mean square change of a pixel, or NaN if the deadline
+     *         was reached before the pass finished
+     */
+    private double samplePass(@NotNull RenderScene scene, @NotNull Canvas image, double @NotNull [] sums, int samples, long deadline) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double total = 0;
+
+        for (int y = 0; y < height; y++) {
+            if (System.nanoTime() >= deadline) {
+                return Double.NaN;
+            }
+            for (int x = 0; x < width; x++) {
+                // The sampler's sample 0 is the first after the centre sample
+                Colour c = scene.colourAt(camera.rayForSample(x, y, samples - 2), camera.getMaxRecursion(), camera.getTermination());
+                int i = (y * width + x) * 3;
+                sums[i] += c.getR();
+                sums[i+1] += c.getG();
+                sums[i+2] += c.getB();
+
+                Colour mean = new Colour(sums[i] / samples, sums[i+1] / samples, sums[i+2] / samples);
+                Colour old = image.getPixel(x, y);
+                double change = Math.max(Math.abs(mean.getR() - old.getR()),
+                    Math.max(Math.abs(mean.getG() - old.getG()), Math.abs(mean.getB() - old.getB())));
+                total += change * change;
+                image.setPixel(x, y, mean);
+            }
+        }
+        return Math.sqrt(total / (width * height));
+    }
+
+    private void notify(int pass, int samples, @NotNull Canvas image) {
+        for (Listener l: listeners) {
+            l.passComplete(pass, samples, image);
+        }
+    }
+}
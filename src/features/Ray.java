@@ -19,6 +19,7 @@ public class Ray {
     private static final Logger log = LogManager.getLogger(Ray.class);
     private final Point origin;
     private final Vector direction;
+    private FastRay fast;
 
     /**
      * Creates a new Ray with the given origin and direction
@@ -58,6 +59,21 @@ public class Ray {
         return direction;
     }
 
+    /**
+     * Gets the flattened form of this ray used by bounding box and BVH tests.
+     * It's only built the first time it's asked for and then kept, since the
+     * ray itself never changes.
+     * @return The ray with its reciprocal direction and sign bits precomputed
+     */
+    public FastRay fast() {
+        FastRay f = fast;
+        if (f == null) {
+            f = new FastRay(this);
+            fast = f;
+        }
+        return f;
+    }
+
     /**
      * Gets the point intersected by the Ray at a given point in time.
      * Computation is:
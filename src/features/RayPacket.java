@@ -0,0 +1,123 @@
+package features;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A small bundle of rays (typically the primary rays for a 4x4 or 8x8 block of
+ * pixels) which are traced together.  Origins and reciprocal directions are
+ * held in parallel arrays so that a bounds test can be run for the whole packet
+ * in one tight loop, and each ray has its own list into which intersections are
+ * collected.
+ *
+ * Membership of a packet is tracked with a bit mask (bit i set means ray i is
+ * still active), which limits a packet to 64 rays.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class RayPacket {
+    public static final int MAX_SIZE = 64;
+    // The ray arrays are padded to a multiple of this, so that vector code can
+    // always load whole registers (eight doubles being the widest, on AVX-512)
+    private static final int PADDING = 8;
+
+    private final Ray[] rays;
+    private final ArrayList<ArrayList<Intersection>> hits;
+
+    // Structure of arrays copy of the rays, used for the packet bounds tests.
+    // Padding slots have NaN origins, so they never hit anything.
+    public final double[] ox, oy, oz;
+    public final double[] invDx, invDy, invDz;
+
+    /**
+     * Creates a packet from the given rays, each with an empty intersection list
+     * @param rays The rays in the packet (at most MAX_SIZE)
+     */
+    public RayPacket(@NotNull Ray[] rays) {
+        this(rays, new ArrayList<>());
+        for (int i = 0; i < rays.length; i++) {
+            hits.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Creates a packet which shares its intersection lists with another
+     */
+    private RayPacket(@NotNull Ray[] rays, @NotNull ArrayList<ArrayList<Intersection>> hits) {
+        if (rays.length == 0 || rays.length > MAX_SIZE) {
+            throw new RuntimeException("A ray packet must hold between 1 and "+ MAX_SIZE +" rays");
+        }
+
+        this.rays = rays;
+        this.hits = hits;
+
+        int length = (rays.length + PADDING - 1) / PADDING * PADDING;
+        ox = new double[length];
+        oy = new double[length];
+        oz = new double[length];
+        invDx = new double[length];
+        invDy = new double[length];
+        invDz = new double[length];
+        Arrays.fill(ox, rays.length, length, Double.NaN);
+        Arrays.fill(oy, rays.length, length, Double.NaN);
+        Arrays.fill(oz, rays.length, length, Double.NaN);
+
+        for (int i = 0; i < rays.length; i++) {
+            FastRay f = rays[i].fast();
+            ox[i] = f.ox;
+            oy[i] = f.oy;
+            oz[i] = f.oz;
+            invDx[i] = f.invDx;
+            invDy[i] = f.invDy;
+            invDz[i] = f.invDz;
+        }
+    }
+
+    /**
+     * @return The number of rays in the packet
+     */
+    public int size() {
+        return rays.length;
+    }
+
+    /**
+     * @return A mask with a bit set for every ray in the packet
+     */
+    public long allRays() {
+        return rays.length == MAX_SIZE ? -1L : (1L << rays.length) - 1;
+    }
+
+    /**
+     * @param i The index of the ray
+     * @return The ray at the given index
+     */
+    public Ray ray(int i) {
+        return rays[i];
+    }
+
+    /**
+     * @param i The index of the ray
+     * @return The (unsorted) list of intersections found so far for that ray
+     */
+    public ArrayList<Intersection> hits(int i) {
+        return hits.get(i);
+    }
+
+    /**
+     * Applies a transformation to every ray in the packet.  The new packet
+     * shares its intersection lists with this one, so intersections found with
+     * the transformed rays are recorded against the original rays.
+     * @param t The transformation matrix to apply
+     * @return The transformed packet
+     */
+    public RayPacket transform(@NotNull Matrix t) {
+        Ray[] transformed = new Ray[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            transformed[i] = rays[i].transform(t);
+        }
+        return new RayPacket(transformed, hits);
+    }
+}
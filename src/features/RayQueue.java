@@ -0,0 +1,202 @@
+package features;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A queue of rays waiting for the next stage of a wavefront render (see
+ * WavefrontRenderer), held as parallel arrays.  Alongside each ray it keeps
+ * the pixel the ray contributes to, its throughput (the weight of its colour
+ * in that pixel, per colour channel) and the number of reflections or
+ * refractions which may still follow it.
+ *
+ * Reflected and refracted rays leave their surfaces in every direction, so
+ * a queue of them is sorted (see sortByCoherence()) before being traced, to
+ * bring rays starting close together and heading the same way next to each
+ * other.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class RayQueue {
+    // Number of Morton cells along each axis when sorting (a power of two, at
+    // most 1 << 10 since morton() takes 10 bits per axis)
+    private static final int MORTON_CELLS = 1 << 9;
+
+    // Sort keys hold the direction's octant (3 bits) above the Morton code,
+    // above the ray's index (32 bits), so all three must fit in 63 bits
+    private static final int MORTON_BITS = 3 * Integer.numberOfTrailingZeros(MORTON_CELLS);
+    private static final int OCTANT_SHIFT = 32 + MORTON_BITS;
+
+    static {
+        if (Integer.bitCount(MORTON_CELLS) != 1 || MORTON_CELLS > 1 << 10 || OCTANT_SHIFT + 3 > 63) {
+            throw new RuntimeException("Sort keys can't hold " + MORTON_CELLS + " Morton cells per axis");
+        }
+    }
+
+    private Ray[] rays;
+    private int[] pixels;
+    private double[] weights;
+    private int[] depths;
+    private int size;
+
+    /**
+     * @param capacity The number of rays to make room for to begin with
+     */
+    RayQueue(int capacity) {
+        capacity = Math.max(capacity, 1);
+        rays = new Ray[capacity];
+        pixels = new int[capacity];
+        weights = new double[capacity * 3];
+        depths = new int[capacity];
+    }
+
+    /**
+     * Adds a ray to the end of the queue
+     * @param r The ray
+     * @param pixel Index of the pixel the ray contributes to
+     * @param wr Red throughput
+     * @param wg Green throughput
+     * @param wb Blue throughput
+     * @param depth The number of reflections or refractions which may still follow
+     */
+    void add(@NotNull Ray r, int pixel, double wr, double wg, double wb, int depth) {
+        if (size == rays.length) {
+            int capacity = size * 2;
+            rays = Arrays.copyOf(rays, capacity);
+            pixels = Arrays.copyOf(pixels, capacity);
+            weights = Arrays.copyOf(weights, capacity * 3);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+        rays[size] = r;
+        pixels[size] = pixel;
+        weights[size*3] = wr;
+        weights[size*3 + 1] = wg;
+        weights[size*3 + 2] = wb;
+        depths[size] = depth;
+        size++;
+    }
+
+    /**
+     * @return The number of rays in the queue
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties the queue, keeping its storage
+     */
+    void clear() {
+        Arrays.fill(rays, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Reorders the queue so that rays which start near each other and point
+     * the same way are next to each other.  Rays are binned by the octant of
+     * their direction, and within an octant ordered along a Morton (Z-order)
+     * curve through the bounds of the queue's origins, which keeps runs of
+     * rays that share a packet travelling through the same parts of the scene.
+     */
+    void sortByCoherence() {
+        if (size < 2) {
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            FastRay f = rays[i].fast();
+            minX = Math.min(minX, f.ox);
+            minY = Math.min(minY, f.oy);
+            minZ = Math.min(minZ, f.oz);
+            maxX = Math.max(maxX, f.ox);
+            maxY = Math.max(maxY, f.oy);
+            maxZ = Math.max(maxZ, f.oz);
+        }
+        double scaleX = cells(minX, maxX);
+        double scaleY = cells(minY, maxY);
+        double scaleZ = cells(minZ, maxZ);
+
+        // The index of each ray sits in the low bits of its key, so the keys
+        // sort as plain longs and give the new order directly
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            FastRay f = rays[i].fast();
+            int octant = (f.invDx < 0 ? 4 : 0) | (f.invDy < 0 ? 2 : 0) | (f.invDz < 0 ? 1 : 0);
+            long code = morton((int) ((f.ox - minX) * scaleX), (int) ((f.oy - minY) * scaleY), (int) ((f.oz - minZ) * scaleZ));
+            keys[i] = ((long) octant << OCTANT_SHIFT) | (code << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        Ray[] sortedRays = new Ray[rays.length];
+        int[] sortedPixels = new int[pixels.length];
+        double[] sortedWeights = new double[weights.length];
+        int[] sortedDepths = new int[depths.length];
+        for (int i = 0; i < size; i++) {
+            int from = (int) keys[i];
+            sortedRays[i] = rays[from];
+            sortedPixels[i] = pixels[from];
+            System.arraycopy(weights, from * 3, sortedWeights, i * 3, 3);
+            sortedDepths[i] = depths[from];
+        }
+        rays = sortedRays;
+        pixels = sortedPixels;
+        weights = sortedWeights;
+        depths = sortedDepths;
+    }
+
+    /**
+     * @return The factor which maps a coordinate in [min, max] to a Morton cell
+     */
+    private static double cells(double min, double max) {
+        double extent = max - min;
+        return extent > 0 && extent < Double.POSITIVE_INFINITY ? (MORTON_CELLS - 1) / extent : 0;
+    }
+
+    /**
+     * Interleaves the bits of three cell coordinates, each of up to 10 bits
+     * @return The Morton code of the cell, three bits per bit of the
+     *         coordinates (27 bits for sortByCoherence()'s 9-bit coordinates,
+     *         at most 30)
+     */
+    static long morton(int x, int y, int z) {
+        return (spread(x) << 2) | (spread(y) << 1) | spread(z);
+    }
+
+    /**
+     * Spaces out the lower 10 bits of a value so that there are two zero bits
+     * between each of them
+     */
+    private static long spread(int v) {
+        long x = v & 0x3ff;
+        x = (x | (x << 16)) & 0x030000ffL;
+        x = (x | (x << 8)) & 0x0300f00fL;
+        x = (x | (x << 4)) & 0x030c30c3L;
+        x = (x | (x << 2)) & 0x09249249L;
+        return x;
+    }
+
+    Ray ray(int i) {
+        return rays[i];
+    }
+
+    int pixel(int i) {
+        return pixels[i];
+    }
+
+    /**
+     * @param i Index of the ray
+     * @param channel 0, 1 or 2 for red, green or blue
+     * @return The ray's throughput in the channel
+     */
+    double weight(int i, int channel) {
+        return weights[i*3 + channel];
+    }
+
+    int depth(int i) {
+        return depths[i];
+    }
+}
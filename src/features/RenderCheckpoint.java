@@ -0,0 +1,185 @@
+package features;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The saved state of a RenderJob: how many samples of each tile are done, and
+ * the running totals of those samples, so that a render can carry on where it
+ * left off after its JVM is killed.
+ *
+ * The file is gzipped binary (written with DataOutputStream):
+ *
+ *   MAGIC, VERSION, scene hash, the region rendered (left, top, width and
+ *   height), tile size, samples per pixel, tile count, then per tile: samples
+ *   done, and if any, the tile's pixel sums (3 doubles per pixel, row by row)
+ *
+ * The scene hash identifies the world and camera the render is of, so a
+ * checkpoint is never resumed into a different render.  Files are written to
+ * a temporary file and then moved into place, so a crash mid-write leaves the
+ * previous checkpoint intact.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class RenderCheckpoint {
+    static final int MAGIC = 0x52544350;  // "RTCP"
+    static final int VERSION = 2;
+
+    /**
+     * The state of one tile: the number of samples per pixel done, and their
+     * sums.  Never changed once made, so can be read by any thread.
+     */
+    record Tile(int samples, double[] sums) {
+        static final Tile EMPTY = new Tile(0, null);
+    }
+
+    final long sceneHash;
+    final int left;
+    final int top;
+    final int width;
+    final int height;
+    final int tileSize;
+    final int samples;
+    final Tile[] tiles;
+
+    RenderCheckpoint(long sceneHash, int left, int top, int width, int height, int tileSize, int samples, Tile @NotNull [] tiles) {
+        this.sceneHash = sceneHash;
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.samples = samples;
+        this.tiles = tiles;
+    }
+
+    /**
+     * @return True if this checkpoint is of the render described
+     */
+    boolean matches(long sceneHash, int left, int top, int width, int height, int tileSize, int samples) {
+        return this.sceneHash == sceneHash && this.left == left && this.top == top
+            && this.width == width && this.height == height
+            && this.tileSize == tileSize && this.samples == samples;
+    }
+
+    /**
+     * Works out the hash identifying a render: the first 8 bytes of the
+     * SHA-256 digest of the serialised world and camera
+     * @param world The world rendered
+     * @param camera The camera it's seen from
+     * @return The hash
+     */
+    static long sceneHash(@NotNull World world, @NotNull Camera camera) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+                out.writeObject(world);
+                out.writeObject(camera);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new RuntimeException("Couldn't hash the scene", e);
+        }
+    }
+
+    /**
+     * Saves the checkpoint, replacing any earlier one
+     * @param file The file to write
+     * @throws IOException if it can't be written
+     */
+    void write(@NotNull Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() +".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sceneHash);
+            out.writeInt(left);
+            out.writeInt(top);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(tileSize);
+            out.writeInt(samples);
+            out.writeInt(tiles.length);
+            for (Tile t: tiles) {
+                out.writeInt(t.samples);
+                if (t.samples > 0) {
+                    for (double d: t.sums) {
+                        out.writeDouble(d);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a checkpoint
+     * @param file The file to read
+     * @return The checkpoint, or null if there's no such file
+     * @throws IOException if the file can't be read, or isn't a checkpoint
+     */
+    static RenderCheckpoint read(@NotNull Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file +" isn't a render checkpoint");
+            }
+            long hash = in.readLong();
+            int left = in.readInt();
+            int top = in.readInt();
+            int width = in.readInt();
+            int height = in.readInt();
+            int tileSize = in.readInt();
+            int samples = in.readInt();
+            if (width < 1 || height < 1 || tileSize < 1) {
+                throw new IOException(file +" is corrupt");
+            }
+
+            int across = (width + tileSize - 1) / tileSize;
+            int down = (height + tileSize - 1) / tileSize;
+            if (in.readInt() != across * down) {
+                throw new IOException(file +" is corrupt");
+            }
+
+            Tile[] tiles = new Tile[across * down];
+            for (int t = 0; t < tiles.length; t++) {
+                int done = in.readInt();
+                if (done < 0 || done > samples) {
+                    throw new IOException(file +" is corrupt");
+                }
+                if (done == 0) {
+                    tiles[t] = Tile.EMPTY;
+                    continue;
+                }
+                int x = (t % across) * tileSize;
+                int y = (t / across) * tileSize;
+                double[] sums = new double[Math.min(tileSize, width - x) * Math.min(tileSize, height - y) * 3];
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] = in.readDouble();
+                }
+                tiles[t] = new Tile(done, sums);
+            }
+            return new RenderCheckpoint(hash, left, top, width, height, tileSize, samples, tiles);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders an image on worker JVMs (see RenderWorker), on this machine or
+ * others, which connect to the coordinator over TCP.
+ *
+ * The world and camera are serialised once, when the coordinator is made, and
+ * sent to each worker as it connects.  Each worker says how many threads it
+ * renders with, and then pulls tiles from a shared queue, holding one per
+ * thread plus one more so that it never sits idle waiting for the network.
+ * Finished pixels are streamed back, in whatever order the worker finishes
+ * them, into the coordinator's canvas.  Faster workers simply take more tiles.
+ *
+ * If a worker's connection fails, or it sends nothing for longer than the
+ * worker timeout, its unfinished tiles go back on the queue for the others.
+ * The render only fails if it's cancelled, or the coordinator is closed,
+ * before every tile is back; with no workers left it just waits for more.
+ *
+ * The protocol (all big-endian, as written by DataOutputStream):
+ *
+ *   coordinator: MAGIC, scene length, serialised World and Camera
+ *   worker:      number of threads
+ *   coordinator: tile index, left, top, width, height    (repeated)
+ *   worker:      tile index, width x height x 3 doubles  (one per tile sent,
+ *                                                         in any order)
+ *   coordinator: -1 once every tile is done
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class RenderCoordinator implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(RenderCoordinator.class);
+    static final int MAGIC = 0x52545731;  // "RTW1"
+    static final int FINISHED = -1;
+    /**
+     * The most threads a worker may render with
+     */
+    public static final int MAX_THREADS = 1024;
+    // Tiles a worker holds beyond one per thread
+    private static final int SPARE_TILES = 1;
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * A tile of the image
+     */
+    private record Tile(int index, int left, int top, int width, int height) {}
+
+    private final byte[] scene;
+    private final int width;
+    private final int height;
+    private int tileSize = 32;
+    private Duration workerTimeout = Duration.ofMinutes(5);
+
+    private final Canvas image;
+    private final CompletableFuture<Canvas> result = new CompletableFuture<>();
+    private final LinkedBlockingDeque<Tile> pending = new LinkedBlockingDeque<>();
+    private final AtomicInteger tilesLeft = new AtomicInteger();
+    private final AtomicInteger reassigned = new AtomicInteger();
+    private final Set<Socket> workers = ConcurrentHashMap.newKeySet();
+    private ServerSocket server;
+
+    /**
+     * Creates a coordinator for the view of a world from a camera, serialising
+     * both straight away.  Changes made to either afterwards aren't seen.
+     * @param world The world
+     * @param camera The camera
+     * @throws RuntimeException if the world or camera can't be serialised
+     */
+    public RenderCoordinator(@NotNull World world, @NotNull Camera camera) throws RuntimeException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(world);
+            out.writeObject(camera);
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't serialise the scene", e);
+        }
+        scene = bytes.toByteArray();
+        width = camera.getHSize();
+        height = camera.getVSize();
+        image = new Canvas(width, height);
+        log.debug("Serialised scene in {} bytes", scene.length);
+    }
+
+    /**
+     * @param size The width (and height) of the tiles handed to workers
+     * @throws RuntimeException if the size is less than 1, or the coordinator
+     *                          has already started
+     */
+    public synchronized void setTileSize(int size) throws RuntimeException {
+        if (size < 1) {
+            throw new RuntimeException("Tile size must be at least 1");
+        }
+        if (server != null) {
+            throw new RuntimeException("Can't change the tile size once started");
+        }
+        tileSize = size;
+    }
+
+    /**
+     * @return The width (and height) of the tiles handed to workers
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param timeout How long a worker may go without sending anything before
+     *                it's given up on and its tiles handed to others
+     * @throws RuntimeException if the timeout isn't positive
+     */
+    public void setWorkerTimeout(@NotNull Duration timeout) throws RuntimeException {
+        // A timeout of zero would have workers' sockets wait forever
+        if (timeout.isNegative() || timeout.toMillis() == 0) {
+            throw new RuntimeException("Worker timeout must be at least a millisecond");
+        }
+        workerTimeout = timeout;
+    }
+
+    /**
+     * @return How long a worker may go without sending anything
+     */
+    public Duration getWorkerTimeout() {
+        return workerTimeout;
+    }
+
+    /**
+     * Queues the tiles and starts listening for workers, on every interface
+     * @param port The port to listen on, or 0 for any free port
+     * @return The port listened on
+     * @throws IOException if the socket can't be opened
+     */
+    public synchronized int listen(int port) throws IOException {
+        if (server != null) {
+            throw new RuntimeException("Coordinator is already listening on port "+ server.getLocalPort());
+        }
+        ServerSocket socket = new ServerSocket(port);
+        server = socket;
+
+        int across = (width + tileSize - 1) / tileSize;
+        int down = (height + tileSize - 1) / tileSize;
+        tilesLeft.set(across * down);
+        for (int t = 0; t < across * down; t++) {
+            int left = (t % across) * tileSize;
+            int top = (t / across) * tileSize;
+            pending.add(new Tile(t, left, top, Math.min(tileSize, width - left), Math.min(tileSize, height - top)));
+        }
+
+        Thread acceptor = new Thread(() -> accept(socket), "render-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        result.whenComplete((c, e) -> {
+            stopListening();
+            if (e != null) {
+                dropWorkers();
+            }
+        });
+        log.info("Render coordinator listening on port {} with {} tiles", socket.getLocalPort(), across * down);
+        return socket.getLocalPort();
+    }
+
+    /**
+     * @return The future image, complete once workers have rendered every
+     *         tile.  Cancelling it stops the render.
+     */
+    public CompletableFuture<Canvas> result() {
+        return result;
+    }
+
+    /**
+     * @return The number of workers connected now
+     */
+    public int connectedWorkers() {
+        return workers.size();
+    }
+
+    /**
+     * @return The number of tiles taken back from failed workers
+     */
+    public int reassignedTiles() {
+        return reassigned.get();
+    }
+
+    private void accept(@NotNull ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket worker = socket.accept();
+                Thread t = new Thread(() -> serve(worker), "render-coordinator-"+ worker.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.error("Accepting a render worker failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds one worker tiles until the render's done or the worker fails
+     */
+    private void serve(@NotNull Socket worker) {
+        // Tiles sent to the worker but not yet back, in the order they were sent
+        Map<Integer, Tile> held = new LinkedHashMap<>();
+        workers.add(worker);
+
+        try (worker) {
+            worker.setSoTimeout((int) Math.min(Integer.MAX_VALUE, workerTimeout.toMillis()));
+            worker.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(worker.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(worker.getOutputStream()));
+
+            out.writeInt(MAGIC);
+            out.writeInt(scene.length);
+            out.write(scene);
+            out.flush();
+
+            int threads = in.readInt();
+            if (threads < 1 || threads > MAX_THREADS) {
+                throw new IOException("Worker asked to render with "+ threads +" threads");
+            }
+            int capacity = threads + SPARE_TILES;
+
+            while (true) {
+                // Top the worker up, waiting for a tile only if it has none
+                while (held.size() < capacity) {
+                    Tile t = held.isEmpty() ? nextTile() : pending.poll();
+                    if (t == null) {
+                        break;
+                    }
+                    held.put(t.index, t);
+                    out.writeInt(t.index);
+                    out.writeInt(t.left);
+                    out.writeInt(t.top);
+                    out.writeInt(t.width);
+                    out.writeInt(t.height);
+                }
+                if (held.isEmpty()) {
+                    out.writeInt(FINISHED);
+                    out.flush();
+                    return;
+                }
+                out.flush();
+
+                int index = in.readInt();
+                Tile t = held.get(index);
+                if (t == null) {
+                    throw new IOException("Worker sent tile "+ index +", which it wasn't given");
+                }
+                receive(in, t);
+                held.remove(index);
+                if (tilesLeft.decrementAndGet() == 0) {
+                    result.complete(image);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!result.isDone()) {
+                log.warn("Lost render worker {}, reassigning {} tiles", worker.getRemoteSocketAddress(), held.size(), e);
+            }
+        } finally {
+            workers.remove(worker);
+            reassigned.addAndGet(held.size());
+            // Back at the front of the queue, in their original order
+            List<Tile> lost = new ArrayList<>(held.values());
+            for (int i = lost.size() - 1; i >= 0; i--) {
+                pending.addFirst(lost.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return The next tile to render, or null once the render is over
+     */
+    private Tile nextTile() {
+        try {
+            while (!result.isDone()) {
+                Tile t = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (t != null) {
+                    return t;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the pixels of a tile into the image
+     */
+    private void receive(@NotNull DataInputStream in, @NotNull Tile t) throws IOException {
+        // Read the whole tile before touching the image, so a worker failing
+        // part way through leaves nothing half written
+        Colour[] pixels = new Colour[t.width * t.height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = new Colour(in.readDouble(), in.readDouble(), in.readDouble());
+        }
+        for (int y = 0; y < t.height; y++) {
+            for (int x = 0; x < t.width; x++) {
+                image.setPixel(t.left + x, t.top + y, pixels[y * t.width + x]);
+            }
+        }
+    }
+
+    /**
+     * Stops listening and drops every worker.  If the image isn't finished,
+     * its future is cancelled.
+     */
+    @Override
+    public void close() {
+        result.cancel(false);
+        stopListening();
+        dropWorkers();
+    }
+
+    private synchronized void stopListening() {
+        if (server != null && !server.isClosed()) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                log.warn("Closing the coordinator socket failed", e);
+            }
+        }
+    }
+
+    private void dropWorkers() {
+        for (Socket s: workers) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                log.debug("Closing a worker connection failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A render running in the background.  The image is split into square tiles,
+ * each rendered as a separate task on the job's executor (so tiles render in
+ * parallel on a multi-threaded executor), and the job's future completes with
+ * the image once every tile is done.
+ *
+ * Each pixel gets the set number of samples: the first through the pixel's
+ * centre, and the rest through points in the pixel given by the camera's
+ * sampler, averaged.
+ *
+ * A job can render just a region of the camera's image, in which case only
+ * the tiles covering the region are rendered, and either a canvas the size of
+ * the region is made for it or it's rendered into the same region of a target
+ * image, leaving the rest of the target as it was.
+ *
+ * Cancelling the future (with Future.cancel()) stops the job: tiles not yet
+ * started are skipped, and tiles being rendered give up within a few rows.
+ * If a tile fails, the future completes with its exception and the remaining
+ * tiles are skipped in the same way.
+ *
+ * A job can also save checkpoints: the samples done so far for every tile,
+ * written every so often on a thread of its own (so rendering never waits
+ * for the disk), and once more if the job is cancelled or fails.  A job
+ * started with a checkpoint of the same render on disk skips the tiles it
+ * finished and carries on sampling the rest where they left off, giving
+ * exactly the image an uninterrupted render would.  The checkpoint is deleted
+ * when the job finishes.
+ *
+ * Listeners are called on the threads rendering the tiles (or saving the
+ * checkpoints), possibly several at once, so must be thread safe.  The camera
+ * and scene must not be changed while the job is running.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class RenderJob {
+    private static final Logger log = LogManager.getLogger(RenderJob.class);
+    // Rows rendered between checks for cancellation (the height of a packet)
+    private static final int BAND = (int) Math.sqrt(RayPacket.MAX_SIZE);
+
+    /**
+     * Receives news of a job's progress
+     */
+    public interface Listener {
+        /**
+         * Called after each tile is finished
+         * @param tilesDone The number of tiles finished so far
+         * @param tiles The total number of tiles
+         */
+        default void progress(int tilesDone, int tiles) {}
+
+        /**
+         * Called when a tile is finished, with the image it was rendered into.
+         * Only the tile's own pixels are sure to be complete.  The tile's
+         * position is in the image's coordinates (so is relative to the
+         * region, if the job renders a region into a canvas of its own).
+         * @param left The leftmost column of the tile
+         * @param top The top row of the tile
+         * @param width The width of the tile
+         * @param height The height of the tile
+         * @param image The image being rendered
+         */
+        default void tileComplete(int left, int top, int width, int height, @NotNull Canvas image) {}
+
+        /**
+         * Called after each checkpoint is saved
+         * @param tilesDone The number of tiles finished in the checkpoint
+         */
+        default void checkpointSaved(int tilesDone) {}
+    }
+
+    private final Camera camera;
+    private final RenderScene scene;
+    private int tileSize = 32;
+    private int samples = 1;
+    private Executor executor = ForkJoinPool.commonPool();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int regionLeft;
+    private int regionTop;
+    private int regionWidth;    // 0 for the whole image
+    private int regionHeight;
+    private Canvas target;
+    private Path checkpointFile;
+    private World checkpointWorld;
+    private Duration checkpointInterval;
+
+    /**
+     * Creates a job to render the view of a scene from a camera, in 32x32
+     * tiles on the common fork/join pool, with one sample per pixel
+     * @param camera The camera
+     * @param scene The scene
+     */
+    public RenderJob(@NotNull Camera camera, @NotNull RenderScene scene) {
+        this.camera = camera;
+        this.scene = scene;
+    }
+
+    /**
+     * @param size The width (and height) of the tiles the image is split into
+     * @throws RuntimeException if the size is less than 1
+     */
+    public void setTileSize(int size) throws RuntimeException {
+        if (size < 1) {
+            throw new RuntimeException("Tile size must be at least 1");
+        }
+        tileSize = size;
+    }
+
+    /**
+     * @return The width (and height) of the tiles the image is split into
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param samples The number of samples per pixel
+     * @throws RuntimeException if samples is less than 1
+     */
+    public void setSamplesPerPixel(int samples) throws RuntimeException {
+        if (samples < 1) {
+            throw new RuntimeException("Need at least one sample per pixel");
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * @return The number of samples per pixel
+     */
+    public int getSamplesPerPixel() {
+        return samples;
+    }
+
+    /**
+     * @param e The executor to render the tiles on
+     */
+    public void setExecutor(@NotNull Executor e) {
+        executor = e;
+    }
+
+    /**
+     * @return The executor the tiles are rendered on
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Renders only a region of the camera's image from now on
+     * @param left The leftmost column of the region
+     * @param top The top row of the region
+     * @param width The width of the region
+     * @param height The height of the region
+     * @throws RuntimeException if the region isn't within the image
+     */
+    public void setRegion(int left, int top, int width, int height) throws RuntimeException {
+        camera.checkRegion(left, top, width, height);
+        regionLeft = left;
+        regionTop = top;
+        regionWidth = width;
+        regionHeight = height;
+    }
+
+    /**
+     * Renders the whole of the camera's image from now on
+     */
+    public void clearRegion() {
+        regionWidth = 0;
+        regionHeight = 0;
+    }
+
+    /**
+     * Sets the image to render into.  Only the region rendered (if the job
+     * has one) is changed.
+     * @param image The image, the size of the camera's, or null to render
+     *              into a new canvas each time the job starts
+     * @throws RuntimeException if the image is the wrong size
+     */
+    public void setTarget(Canvas image) throws RuntimeException {
+        if (image != null && (image.getWidth() != camera.getHSize() || image.getHeight() != camera.getVSize())) {
+            throw new RuntimeException("Target must be "+ camera.getHSize() +"x"+ camera.getVSize());
+        }
+        target = image;
+    }
+
+    /**
+     * @return The image rendered into, or null if a new canvas is made each
+     *         time the job starts
+     */
+    public Canvas getTarget() {
+        return target;
+    }
+
+    /**
+     * Switches checkpointing on.  The world the scene was compiled from
+     * identifies the render (along with the camera), so that a checkpoint is
+     * only resumed by a job rendering the same image.
+     * @param filename The file to save checkpoints in, and resume from
+     * @param world The world the scene was compiled from
+     * @param interval How often to save a checkpoint
+     * @throws RuntimeException if the interval isn't positive
+     */
+    public void setCheckpoint(@NotNull String filename, @NotNull World world, @NotNull Duration interval) throws RuntimeException {
+        if (interval.toMillis() < 1) {
+            throw new RuntimeException("Checkpoint interval must be at least a millisecond");
+        }
+        checkpointFile = Paths.get(filename);
+        checkpointWorld = world;
+        checkpointInterval = interval;
+    }
+
+    /**
+     * Switches checkpointing off
+     */
+    public void clearCheckpoint() {
+        checkpointFile = null;
+        checkpointWorld = null;
+        checkpointInterval = null;
+    }
+
+    /**
+     * @param l A listener to tell about the job's progress
+     */
+    public void addListener(@NotNull Listener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * @param l The listener to stop telling
+     */
+    public void removeListener(@NotNull Listener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Starts the job (resuming from its checkpoint, if it has one).  A job
+     * may be started more than once, each time rendering a new image (or
+     * rendering into its target again).
+     * @return The future image
+     */
+    public CompletableFuture<Canvas> start() {
+        return new Render().start();
+    }
+
+    /**
+     * One run of the job, from start() until its future completes
+     */
+    private final class Render {
+        // The region rendered, in the camera's image
+        final int originX = regionWidth > 0 ? regionLeft : 0;
+        final int originY = regionWidth > 0 ? regionTop : 0;
+        final int width = regionWidth > 0 ? regionWidth : camera.getHSize();
+        final int height = regionWidth > 0 ? regionHeight : camera.getVSize();
+        final int size = tileSize;
+        final int samples = RenderJob.this.samples;
+        final int across = (width + size - 1) / size;
+        final int tiles = across * ((height + size - 1) / size);
+
+        // The canvas rendered into, and the pixel of the camera's image at
+        // its top left
+        final Canvas image = target != null ? target : new Canvas(width, height);
+        final int imageLeft = target != null ? 0 : originX;
+        final int imageTop = target != null ? 0 : originY;
+        final CompletableFuture<Canvas> result = new CompletableFuture<>();
+        final AtomicInteger done = new AtomicInteger();
+
+        // The progress of each tile as of its last finished sample, kept for
+        // the checkpoints (if they're on)
+        final Path file = checkpointFile;
+        final AtomicReferenceArray<RenderCheckpoint.Tile> states = new AtomicReferenceArray<>(tiles);
+        long hash;
+
+        CompletableFuture<Canvas> start() {
+            for (int t = 0; t < tiles; t++) {
+                states.set(t, RenderCheckpoint.Tile.EMPTY);
+            }
+            if (file != null) {
+                hash = RenderCheckpoint.sceneHash(checkpointWorld, camera);
+                restore();
+
+                ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "render-checkpoint");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long interval = checkpointInterval.toMillis();
+                writer.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.MILLISECONDS);
+                result.whenComplete((image, e) -> {
+                    writer.execute(e == null ? this::discard : this::save);
+                    writer.shutdown();
+                });
+            }
+
+            for (int t = 0; t < tiles; t++) {
+                int tile = t;
+                try {
+                    executor.execute(() -> renderTile(tile));
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
+                    break;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Fills in the tiles saved in the checkpoint, if there's one of this
+         * render
+         */
+        private void restore() {
+            RenderCheckpoint saved;
+            try {
+                saved = RenderCheckpoint.read(file);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable checkpoint "+ file, e);
+                return;
+            }
+            if (saved == null) {
+                return;
+            }
+            if (!saved.matches(hash, originX, originY, width, height, size, samples)) {
+                log.warn("Ignoring checkpoint {}, which is of a different render", file);
+                return;
+            }
+
+            int finished = 0;
+            for (int t = 0; t < tiles; t++) {
+                RenderCheckpoint.Tile state = saved.tiles[t];
+                states.set(t, state);
+                if (state.samples() > 0) {
+                    int left = originX + (t % across) * size;
+                    int top = originY + (t / across) * size;
+                    setMeans(left, top, Math.min(size, originX + width - left), Math.min(size, originY + height - top),
+                        state.sums(), state.samples());
+                }
+                if (state.samples() == samples) {
+                    finished++;
+                }
+            }
+            log.info("Resuming from checkpoint {} with {} of {} tiles finished", file, finished, tiles);
+        }
+
+        /**
+         * Renders the samples of a tile not done yet, giving up if the job
+         * has finished (been cancelled, or failed) in the meantime
+         */
+        private void renderTile(int t) {
+            int left = originX + (t % across) * size;
+            int top = originY + (t / across) * size;
+            int w = Math.min(size, originX + width - left);
+            int h = Math.min(size, originY + height - top);
+
+            try {
+                RenderCheckpoint.Tile state = states.get(t);
+                int n = state.samples();
+                double[] sums = n > 0 ? state.sums().clone() : null;
+
+                // The first sample, through the centre of each pixel
+                if (n == 0) {
+                    for (int y = top; y < top + h; y += BAND) {
+                        if (result.isDone()) {
+                            return;
+                        }
+                        camera.renderTile(scene, image, imageLeft, imageTop, left, y, w, Math.min(BAND, top + h - y));
+                    }
+                    n = 1;
+                    if (file != null || samples > 1) {
+                        sums = new double[w * h * 3];
+                        for (int y = 0; y < h; y++) {
+                            for (int x = 0; x < w; x++) {
+                                Colour c = image.getPixel(left + x - imageLeft, top + y - imageTop);
+                                int i = (y * w + x) * 3;
+                                sums[i] = c.getR();
+                                sums[i+1] = c.getG();
+                                sums[i+2] = c.getB();
+                            }
+                        }
+                        publish(t, n, sums);
+                    }
+                }
+
+                // The rest, a pass over the tile at a time.  A pass given up
+                // part way is never published, so it's simply dropped.
+                while (n < samples) {
+                    n++;
+                    for (int y = 0; y < h; y++) {
+                        if (y % BAND == 0 && result.isDone()) {
+                            return;
+                        }
+                        for (int x = 0; x < w; x++) {
+                            // The sampler's sample 0 is the first after the centre sample
+                            Ray r = camera.rayForSample(left + x, top + y, n - 2);
+                            Colour c = scene.colourAt(r, camera.getMaxRecursion(), camera.getTermination());
+                            int i = (y * w + x) * 3;
+                            sums[i] += c.getR();
+                            sums[i+1] += c.getG();
+                            sums[i+2] += c.getB();
+                        }
+                    }
+                    setMeans(left, top, w, h, sums, n);
+                    publish(t, n, sums);
+                }
+
+                int count = done.incrementAndGet();
+                for (Listener l: listeners) {
+                    l.tileComplete(left - imageLeft, top - imageTop, w, h, image);
+                    l.progress(count, tiles);
+                }
+                if (count == tiles) {
+                    result.complete(image);
+                }
+            } catch (RuntimeException | Error e) {
+                log.error("Rendering tile at "+ left +","+ top +" failed", e);
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Sets the pixels of a tile (given in the camera's image) to the means
+         * of their samples
+         */
+        private void setMeans(int left, int top, int w, int h, double @NotNull [] sums, int n) {
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int i = (y * w + x) * 3;
+                    image.setPixel(left + x - imageLeft, top + y - imageTop, new Colour(sums[i] / n, sums[i+1] / n, sums[i+2] / n));
+                }
+            }
+        }
+
+        /**
+         * Records a copy of a tile's progress for the next checkpoint
+         */
+        private void publish(int t, int n, double @NotNull [] sums) {
+            if (file != null) {
+                states.set(t, new RenderCheckpoint.Tile(n, sums.clone()));
+            }
+        }
+
+        /**
+         * Saves a checkpoint of every tile's progress (on the writer thread)
+         */
+        private void save() {
+            RenderCheckpoint.Tile[] snapshot = new RenderCheckpoint.Tile[tiles];
+            int finished = 0;
+            for (int t = 0; t < tiles; t++) {
+                snapshot[t] = states.get(t);
+                if (snapshot[t].samples() == samples) {
+                    finished++;
+                }
+            }
+
+            try {
+                new RenderCheckpoint(hash, originX, originY, width, height, size, samples, snapshot).write(file);
+            } catch (IOException | RuntimeException e) {
+                log.error("Saving checkpoint "+ file +" failed", e);
+                return;
+            }
+            log.debug("Saved checkpoint {} with {} of {} tiles finished", file, finished, tiles);
+            for (Listener l: listeners) {
+                l.checkpointSaved(finished);
+            }
+        }
+
+        /**
+         * Deletes the checkpoint of a finished render (on the writer thread)
+         */
+        private void discard() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Deleting checkpoint "+ file +" failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package features;
+
+import features.lights.Light;
+import objects.BVHBuilder;
+import objects.Group;
+import objects.LinearBVH;
+import objects.Shape;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A World compiled ready for rendering (see World.compile()).  Compiling takes
+ * a snapshot of the world's objects and lights and then:
+ *
+ *  - records the material of every shape, numbering the scene's distinct
+ *    materials from 0, so shading reads the materials the shapes had when
+ *    the scene was compiled
+ *  - bakes the world transforms of every shape
+ *  - builds flattened bounding volume hierarchies for the top level objects
+ *    and for every group large enough to benefit from one
+ *
+ * The materials recorded are the MaterialTable's shared entries, so nothing
+ * is copied, and giving a shape a new material afterwards doesn't affect the
+ * scene.  Holding them also keeps them in the table for as long as the scene.
+ *
+ * The scene's own arrays are never changed once it's built, so a single scene
+ * can be read by any number of rendering threads at once.  It isn't a copy of
+ * the world, though: its hierarchies refer to the world's shapes, and baking
+ * leaves the cached transforms and group hierarchies on those shapes.  Adding
+ * objects or lights to the world afterwards doesn't affect the scene, but
+ * moving or reshaping a shape does, and leaves the scene's bounds for it
+ * stale, so hits on it can be missed.  Shapes must not be changed while the
+ * scene is in use; compile the world again after editing it.  Comparing
+ * worldModificationCount() with the world's World.modificationCount() tells
+ * whether it has been edited since.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public final class RenderScene {
+    private static final Logger log = LogManager.getLogger(RenderScene.class);
+
+    private final Light[] lights;
+    private final LinearBVH bvh;
+    private final Shape[] unbounded;
+    // The scene's own number for the material of every shape in it
+    private final IdentityHashMap<Shape, Integer> materialIds = new IdentityHashMap<>();
+    private final Material[] materials;
+    private final long worldModifications;
+
+    /**
+     * Compiles a world.  Use World.compile() rather than calling this directly.
+     * @param world The world to compile
+     * @param builder The builder to use for the hierarchies
+     */
+    RenderScene(@NotNull World world, @NotNull BVHBuilder builder) {
+        long start = System.nanoTime();
+
+        worldModifications = world.modificationCount();
+        lights = world.getLights().toArray(new Light[0]);
+
+        ArrayList<Shape> bounded = new ArrayList<>();
+        ArrayList<Shape> outside = new ArrayList<>();
+        for (Shape s: world.getObjects()) {
+            if (s instanceof Group g) {
+                g.bake(builder);
+            } else {
+                s.bake();
+            }
+            (s.isBounded() ? bounded : outside).add(s);
+        }
+        bvh = bounded.isEmpty() ? null : new LinearBVH(builder.build(bounded));
+        unbounded = outside.toArray(new Shape[0]);
+
+        IdentityHashMap<Material, Integer> ids = new IdentityHashMap<>();
+        ArrayList<Material> distinct = new ArrayList<>();
+        for (Shape s: world.getObjects()) {
+            recordMaterials(s, ids, distinct);
+        }
+        materials = distinct.toArray(new Material[0]);
+
+        log.debug("Compiled scene with "+ materialIds.size() +" shapes and "+ materials.length +" materials in "
+            + String.format("%.3f", (System.nanoTime() - start) / 1.0e6) +"ms");
+    }
+
+    /**
+     * Records the material of a shape and of everything inside it.  Equal
+     * materials are the same MaterialTable entry, so are numbered by identity.
+     */
+    private void recordMaterials(@NotNull Shape s, @NotNull Map<Material, Integer> ids, @NotNull List<Material> distinct) {
+        materialIds.put(s, ids.computeIfAbsent(s.sharedMaterial(), m -> {
+            distinct.add(m);
+            return distinct.size() - 1;
+        }));
+
+        if (s instanceof Group g) {
+            for (Shape child: g.contents()) {
+                recordMaterials(child, ids, distinct);
+            }
+        }
+    }
+
+    /**
+     * @return The world's modification count when the scene was compiled
+     */
+    public long worldModificationCount() {
+        return worldModifications;
+    }
+
+    /**
+     * @return Number of distinct materials in the scene
+     */
+    public int materialCount() {
+        return materials.length;
+    }
+
+    /**
+     * @return The lights in the scene
+     */
+    public List<Light> getLights() {
+        return List.of(lights);
+    }
+
+    /**
+     * Gets the material a shape had when the scene was compiled.  The
+     * material returned is shared by every shape using it and must not be
+     * modified.
+     * @param s The shape
+     * @return The shape's material
+     */
+    public Material material(@NotNull Shape s) {
+        Integer id = materialIds.get(s);
+        // Shapes from outside the scene get their current material
+        return id != null ? materials[id] : s.sharedMaterial();
+    }
+
+    /**
+     * @param s A shape
+     * @return The scene's number for the shape's material, from 0 up to
+     *         materialCount(), or materialCount() for a shape from outside
+     *         the scene
+     */
+    int materialIndex(@NotNull Shape s) {
+        Integer id = materialIds.get(s);
+        return id != null ? id : materials.length;
+    }
+
+    /**
+     * Intersects a ray with the scene
+     * @param r The ray (in world space)
+     * @return The intersections, sorted into increasing values of t
+     */
+    public ArrayList<Intersection> intersect(@NotNull Ray r) {
+        ArrayList<Intersection> xs = bvh != null ? bvh.intersect(r) : new ArrayList<>();
+
+        for (Shape s: unbounded) {
+            xs.addAll(s.intersect(r));
+        }
+        Collections.sort(xs);
+        return xs;
+    }
+
+    /**
+     * Intersects a packet of rays with the scene.  Each ray's intersections are
+     * added to its list in the packet, sorted into increasing values of t.
+     * @param packet The rays (in world space)
+     */
+    public void intersect(@NotNull RayPacket packet) {
+        if (bvh != null) {
+            bvh.intersect(packet);
+        }
+        for (Shape s: unbounded) {
+            s.intersect(packet);
+        }
+        for (int i = 0; i < packet.size(); i++) {
+            Collections.sort(packet.hits(i));
+        }
+    }
+
+    /**
+     * Determine the colour at the point where a ray intersect the scene.  Any
+     * reflected and refracted rays are followed iteratively (see Integrator)
+     * rather than by recursion, giving the same colour as shadeHit() would.
+     * @param r The ray we are shooting into the scene
+     * @param remaining The number of reflections or refractions we can still follow
+     * @return The colour at the point the ray intersects something
+     */
+    public Colour colourAt(@NotNull Ray r, int remaining) {
+        return colourAt(r, remaining, Termination.EXACT);
+    }
+
+    /**
+     * Determine the colour at the point where a ray intersect the scene,
+     * dropping reflected and refracted rays which contribute too little
+     * @param r The ray we are shooting into the scene
+     * @param remaining The number of reflections or refractions we can still follow
+     * @param t When to stop following rays with little throughput
+     * @return The colour at the point the ray intersects something
+     */
+    public Colour colourAt(@NotNull Ray r, int remaining, @NotNull Termination t) {
+        return Integrator.get().trace(this, r, remaining, t);
+    }
+
+    /**
+     * Determine the colours seen by a packet of rays.  The rays are intersected
+     * with the scene together, after which each ray is shaded on its own (any
+     * reflected or refracted rays are traced singly).
+     * @param packet The rays we are shooting into the scene
+     * @param remaining The number of reflections or refractions we can still follow
+     * @return The colour seen by each ray in the packet, in packet order
+     */
+    public Colour[] colourAt(@NotNull RayPacket packet, int remaining) {
+        return colourAt(packet, remaining, Termination.EXACT);
+    }
+
+    /**
+     * Determine the colours seen by a packet of rays, dropping reflected and
+     * refracted rays which contribute too little
+     * @param packet The rays we are shooting into the scene
+     * @param remaining The number of reflections or refractions we can still follow
+     * @param t When to stop following rays with little throughput
+     * @return The colour seen by each ray in the packet, in packet order
+     */
+    public Colour[] colourAt(@NotNull RayPacket packet, int remaining, @NotNull Termination t) {
+        intersect(packet);
+        Integrator integrator = Integrator.get();
+        Colour[] colours = new Colour[packet.size()];
+
+        for (int i = 0; i < packet.size(); i++) {
+            ArrayList<Intersection> xs = packet.hits(i);
+            Intersection hit = Intersection.hit(xs);
+
+            if (hit == null) {
+                colours[i] = new Colour(0, 0, 0);
+            } else {
+                colours[i] = integrator.shade(this, new Precompute(hit, packet.ray(i), xs, this), remaining, t);
+            }
+        }
+        return colours;
+    }
+
+    /**
+     * Compute the shading for a given point in the scene.  See World.shadeHit().
+     * @param comps The precomputed ray/intersection vectors
+     * @param remaining The number of recursion calls we can still make
+     * @return The colour of the canvas at the current point.
+     */
+    public Colour shadeHit(@NotNull Precompute comps, int remaining) {
+        Material m = material(comps.object);
+        remaining = Math.min(remaining, m.getMaxDepth());
+        Colour c = new Colour(0,0,0);
+        Colour reflect = new Colour(0,0,0);
+        Colour refract = new Colour(0,0,0);
+
+        for (Light light: lights) {
+            c = c.add(Light.lighting(m,
+                comps.object,
+                light,
+                comps.over_point,
+                comps.eye,
+                comps.normal,
+                isShadowed(comps.over_point)));
+
+            reflect = reflect.add(reflectedColour(comps, remaining));
+            refract = refract.add(refractedColour(comps, remaining));
+        }
+
+        // If we have a reflective and transparent surface, apply the fresnel effect to it.
+        if (m.getReflectivity() > 0 && m.getTransparency() > 0) {
+            return c.add(reflect.multiply(comps.reflectance())).add(refract.multiply(1-comps.reflectance()));
+        } else {
+            return c.add(reflect).add(refract);
+        }
+    }
+
+    /**
+     * The light arriving directly from the scene's light sources at a hit
+     * @param comps The precomputed ray/intersection vectors
+     * @param m The material at the hit
+     * @return The sum of the light from every light source
+     */
+    Colour directLight(@NotNull Precompute comps, @NotNull Material m) {
+        return directLight(comps, m, isShadowed(comps.over_point));
+    }
+
+    /**
+     * The light arriving directly from the scene's light sources at a hit
+     * whose shadowing is already known
+     * @param comps The precomputed ray/intersection vectors
+     * @param m The material at the hit
+     * @param shadowed True if the hit is in shadow
+     * @return The sum of the light from every light source
+     */
+    Colour directLight(@NotNull Precompute comps, @NotNull Material m, boolean shadowed) {
+        Colour c = new Colour(0,0,0);
+
+        for (Light light: lights) {
+            c = c.add(Light.lighting(m, comps.object, light, comps.over_point, comps.eye, comps.normal, shadowed));
+        }
+        return c;
+    }
+
+    /**
+     * @return The number of lights in the scene
+     */
+    int lightCount() {
+        return lights.length;
+    }
+
+    /**
+     * @param i Index of a light
+     * @return The light, which must not be modified
+     */
+    Light light(int i) {
+        return lights[i];
+    }
+
+    /**
+     * Determines whether a point in the scene is in shadow.  See World.isShadowed().
+     * Rather than finding every intersection along the way to the light, the
+     * hierarchy is searched for any shadow casting shape short of the light.
+     * @param p The point we wish to test
+     * @return True if the point is in shadow, false otherwise.
+     */
+    public boolean isShadowed(@NotNull Point p) {
+        Vector v = lights[0].getPosition().subtract(p);
+        double distance = v.magnitude();
+        Ray r = new Ray(p, v.normalize());
+
+        if (bvh != null && bvh.occluded(r, distance)) {
+            return true;
+        }
+        for (Shape s: unbounded) {
+            for (Intersection x: s.intersect(r)) {
+                if (x.getTime() >= 0 && x.getTime() < distance && x.getShape().castsShadow()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the colour returned by a reflection ray
+     * @param comps The precomputed vectors and objects
+     * @param remaining The number of recursion calls we can make
+     * @return The colour reflected
+     */
+    public Colour reflectedColour(@NotNull Precompute comps, int remaining) {
+        double reflectivity = material(comps.object).getReflectivity();
+
+        if (reflectivity == 0 || remaining == 0) {
+            return new Colour(0,0,0);
+        }
+
+        Ray reflectRay = new Ray(comps.over_point, comps.reflectv());
+        return colourAt(reflectRay, remaining-1).multiply(reflectivity);
+    }
+
+    /**
+     * Determines the colour returned by a refracted ray
+     * @param comps The precomputed vectors and objects
+     * @param remaining The number of recursion calls we can make
+     * @return The colour refracted
+     */
+    public Colour refractedColour(@NotNull Precompute comps, int remaining) {
+        double transparency = material(comps.object).getTransparency();
+
+        if (transparency == 0 || remaining == 0) {
+            return new Colour(0,0,0);
+        }
+
+        // Nothing is refracted under total internal reflection
+        Vector direction = comps.refractv();
+        if (direction == null) {
+            return new Colour(0,0,0);
+        }
+
+        Ray refract_ray = new Ray(comps.under_point(), direction);
+
+        return colourAt(refract_ray, remaining-1).multiply(transparency);
+    }
+}
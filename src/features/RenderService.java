@@ -0,0 +1,541 @@
+package features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived service which renders many scenes at once on a shared pool of
+ * worker threads.
+ *
+ * Each job's image is split into tiles, and the workers take tiles from one
+ * queue for every job: tiles of higher priority jobs come first, and jobs of
+ * the same priority take turns, a tile each, so a large job can't hold up a
+ * small one submitted after it.
+ *
+ * A job only starts once the memory its image needs fits within the service's
+ * memory limit (a job needing more than the whole limit starts once nothing
+ * else is running).  Jobs waiting for memory start in order of priority, then
+ * of submission.
+ *
+ * Scenes are compiled once and the compiled scene kept for as long as the
+ * world is, so jobs rendering the same world share it.  A world changed after
+ * being rendered (as told by its modification count) is compiled again for
+ * its next job; changes the count can't see, such as ones made straight to the
+ * world's lists, need the world to be invalidated.  A world must not be
+ * changed while jobs rendering it are running.
+ *
+ * The service can also listen on a local socket, where clients render scenes
+ * registered by name with a line based protocol.  A request is the line
+ *
+ *   RENDER name width height fov fromX fromY fromZ toX toY toZ upX upY upZ [priority]
+ *
+ * and the reply is either "OK n" followed by the n lines of the image in PPM
+ * format, or "ERROR message".  A connection can make any number of requests,
+ * and QUIT closes it.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class RenderService implements AutoCloseable {
+    private static final Logger log = LogManager.getLogger(RenderService.class);
+    // Roughly the heap a canvas takes per pixel (a reference and a Colour)
+    static final long BYTES_PER_PIXEL = 48;
+    private static final int BAND = (int) Math.sqrt(RayPacket.MAX_SIZE);
+
+    /**
+     * A job, from submission until its future completes
+     */
+    private static final class Job {
+        final long sequence;
+        final int priority;
+        final Camera camera;
+        final RenderScene scene;
+        final int tileSize;
+        final long bytes;
+        final CompletableFuture<Canvas> result = new CompletableFuture<>();
+        final AtomicInteger done = new AtomicInteger();
+        Canvas image;
+        int tiles;
+        boolean admitted;
+
+        Job(long sequence, int priority, @NotNull Camera camera, @NotNull RenderScene scene, int tileSize) {
+            this.sequence = sequence;
+            this.priority = priority;
+            this.camera = camera;
+            this.scene = scene;
+            this.tileSize = tileSize;
+            this.bytes = (long) camera.getHSize() * camera.getVSize() * BYTES_PER_PIXEL;
+        }
+
+        int compareTo(@NotNull Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * One tile of a job.  Tiles are ordered by their job's priority, then by
+     * their place in the job (so that jobs take turns), then by job.
+     */
+    private record Tile(Job job, int index, int left, int top, int width, int height) implements Comparable<Tile> {
+        @Override
+        public int compareTo(@NotNull Tile other) {
+            if (job.priority != other.job.priority) {
+                return Integer.compare(other.job.priority, job.priority);
+            }
+            if (index != other.index) {
+                return Integer.compare(index, other.index);
+            }
+            return Long.compare(job.sequence, other.job.sequence);
+        }
+    }
+
+    private final long memoryLimit;
+    private int tileSize = 32;
+    private final PriorityBlockingQueue<Tile> queue = new PriorityBlockingQueue<>();
+    private final Thread[] workers;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Guarded by this
+    private final PriorityQueue<Job> waiting = new PriorityQueue<>(Job::compareTo);
+    private final Set<Job> running = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private long memoryInUse;
+    private boolean closed;
+
+    private final Map<World, RenderScene> scenes = new WeakHashMap<>();  // Guarded by itself
+    private final Map<String, World> named = new ConcurrentHashMap<>();
+
+    private ServerSocket server;
+
+    /**
+     * Creates a service with a worker thread per processor, allowed half of
+     * the heap for images
+     */
+    public RenderService() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Creates a service
+     * @param threads The number of worker threads
+     * @param memoryLimit The most memory (in bytes) the images of running
+     *                    jobs may take between them
+     * @throws RuntimeException if there are no threads or no memory
+     */
+    public RenderService(int threads, long memoryLimit) throws RuntimeException {
+        if (threads < 1) {
+            throw new RuntimeException("Need at least one worker thread");
+        }
+        if (memoryLimit < 1) {
+            throw new RuntimeException("Memory limit must be positive");
+        }
+        this.memoryLimit = memoryLimit;
+
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "render-worker-"+ i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * @param size The width (and height) of the tiles of jobs submitted from
+     *             now on
+     * @throws RuntimeException if the size is less than 1
+     */
+    public void setTileSize(int size) throws RuntimeException {
+        if (size < 1) {
+            throw new RuntimeException("Tile size must be at least 1");
+        }
+        tileSize = size;
+    }
+
+    /**
+     * @return The width (and height) of the tiles jobs are split into
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return The most memory (in bytes) the images of running jobs may take
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * @return The memory (in bytes) the images of running jobs take now
+     */
+    public synchronized long getMemoryInUse() {
+        return memoryInUse;
+    }
+
+    /**
+     * @return The number of jobs waiting for memory to start
+     */
+    public synchronized int waitingJobs() {
+        return waiting.size();
+    }
+
+    /**
+     * Finds the compiled form of a world, compiling it if it hasn't been
+     * compiled, or has changed or been invalidated since
+     * @param world The world
+     * @return The compiled scene
+     */
+    public RenderScene scene(@NotNull World world) {
+        synchronized (scenes) {
+            RenderScene scene = scenes.get(world);
+            if (scene == null || scene.worldModificationCount() != world.modificationCount()) {
+                scene = world.compile();
+                scenes.put(world, scene);
+            }
+            return scene;
+        }
+    }
+
+    /**
+     * Forgets the compiled form of a world, so that changes made to it since
+     * are seen by the jobs submitted after
+     * @param world The world
+     */
+    public void invalidate(@NotNull World world) {
+        synchronized (scenes) {
+            scenes.remove(world);
+        }
+    }
+
+    /**
+     * @return The number of compiled scenes being kept
+     */
+    public int cachedScenes() {
+        synchronized (scenes) {
+            return scenes.size();
+        }
+    }
+
+    /**
+     * Makes a world available to socket clients
+     * @param name The name clients will know it by
+     * @param world The world
+     */
+    public void registerScene(@NotNull String name, @NotNull World world) {
+        named.put(name, world);
+    }
+
+    /**
+     * @param name The name of a world to stop making available to clients
+     */
+    public void unregisterScene(@NotNull String name) {
+        World world = named.remove(name);
+        if (world != null && !named.containsValue(world)) {
+            invalidate(world);
+        }
+    }
+
+    /**
+     * Submits a job, with priority 0
+     * @param world The world to render
+     * @param camera The camera to render it from
+     * @return The future image
+     */
+    public CompletableFuture<Canvas> submit(@NotNull World world, @NotNull Camera camera) {
+        return submit(scene(world), camera, 0);
+    }
+
+    /**
+     * Submits a job
+     * @param world The world to render
+     * @param camera The camera to render it from
+     * @param priority The job's priority (higher goes first)
+     * @return The future image
+     */
+    public CompletableFuture<Canvas> submit(@NotNull World world, @NotNull Camera camera, int priority) {
+        return submit(scene(world), camera, priority);
+    }
+
+    /**
+     * Submits a job.  The camera and scene must not be changed until it's
+     * finished, and cancelling the future stops it.
+     * @param scene The scene to render
+     * @param camera The camera to render it from
+     * @param priority The job's priority (higher goes first)
+     * @return The future image
+     */
+    public CompletableFuture<Canvas> submit(@NotNull RenderScene scene, @NotNull Camera camera, int priority) {
+        Job job = new Job(sequence.getAndIncrement(), priority, camera, scene, tileSize);
+        job.result.whenComplete((image, e) -> finished(job));
+
+        synchronized (this) {
+            if (closed) {
+                job.result.completeExceptionally(new RuntimeException("Render service is closed"));
+                return job.result;
+            }
+            waiting.add(job);
+            admit();
+        }
+        return job.result;
+    }
+
+    /**
+     * Starts as many waiting jobs as there's memory for
+     */
+    private synchronized void admit() {
+        while (!waiting.isEmpty()) {
+            Job job = waiting.peek();
+            if (memoryInUse > 0 && memoryInUse + job.bytes > memoryLimit) {
+                return;
+            }
+            waiting.poll();
+            if (job.result.isDone()) {
+                continue;
+            }
+
+            job.admitted = true;
+            memoryInUse += job.bytes;
+            running.add(job);
+            try {
+                start(job);
+            } catch (RuntimeException e) {
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Queues the tiles of a job which has just been given its memory
+     */
+    private void start(@NotNull Job job) {
+        int width = job.camera.getHSize();
+        int height = job.camera.getVSize();
+        int size = job.tileSize;
+        int across = (width + size - 1) / size;
+        int down = (height + size - 1) / size;
+
+        job.image = new Canvas(width, height);
+        job.tiles = across * down;
+        for (int t = 0; t < job.tiles; t++) {
+            int left = (t % across) * size;
+            int top = (t / across) * size;
+            queue.add(new Tile(job, t, left, top, Math.min(size, width - left), Math.min(size, height - top)));
+        }
+        log.debug("Started job {} ({}x{}, priority {})", job.sequence, width, height, job.priority);
+    }
+
+    /**
+     * Frees a job's memory once its future completes, for whatever reason
+     */
+    private synchronized void finished(@NotNull Job job) {
+        waiting.remove(job);
+        if (job.admitted) {
+            job.admitted = false;
+            memoryInUse -= job.bytes;
+            running.remove(job);
+            admit();
+        }
+    }
+
+    /**
+     * The work of each worker thread: render tiles until the service closes
+     */
+    private void work() {
+        while (true) {
+            Tile tile;
+            try {
+                tile = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Job job = tile.job;
+            try {
+                for (int y = tile.top; y < tile.top + tile.height; y += BAND) {
+                    if (job.result.isDone()) {
+                        break;
+                    }
+                    job.camera.renderTile(job.scene, job.image, tile.left, y, tile.width, Math.min(BAND, tile.top + tile.height - y));
+                }
+                if (!job.result.isDone() && job.done.incrementAndGet() == job.tiles) {
+                    job.result.complete(job.image);
+                }
+            } catch (RuntimeException | Error e) {
+                log.error("Rendering tile at "+ tile.left +","+ tile.top +" of job "+ job.sequence +" failed", e);
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Listens for clients on a local (loopback) socket
+     * @param port The port to listen on, or 0 for any free port
+     * @return The port listened on
+     * @throws IOException if the socket can't be opened
+     */
+    public synchronized int listen(int port) throws IOException {
+        if (closed) {
+            throw new RuntimeException("Render service is closed");
+        }
+        if (server != null) {
+            throw new RuntimeException("Render service is already listening on port "+ server.getLocalPort());
+        }
+
+        ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        server = socket;
+        Thread acceptor = new Thread(() -> accept(socket), "render-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Render service listening on port {}", socket.getLocalPort());
+        return socket.getLocalPort();
+    }
+
+    private void accept(@NotNull ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                Thread t = new Thread(() -> serve(client), "render-client-"+ client.getPort());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.error("Accepting a render client failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers one client's requests until it quits or hangs up
+     */
+    private void serve(@NotNull Socket client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("QUIT")) {
+                    return;
+                }
+
+                List<String> reply = answer(line);
+                for (String l: reply) {
+                    out.write(l);
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            log.debug("Render client connection failed", e);
+        }
+    }
+
+    /**
+     * @return The lines replying to one request
+     */
+    private List<String> answer(@NotNull String request) {
+        String[] words = request.split("\\s+");
+        if (!words[0].equals("RENDER")) {
+            return List.of("ERROR Unknown command "+ words[0]);
+        }
+        if (words.length != 14 && words.length != 15) {
+            return List.of("ERROR Expected RENDER name width height fov fromX fromY fromZ toX toY toZ upX upY upZ [priority]");
+        }
+
+        World world = named.get(words[1]);
+        if (world == null) {
+            return List.of("ERROR Unknown scene "+ words[1]);
+        }
+
+        Canvas image;
+        try {
+            Camera camera = new Camera(Integer.parseInt(words[2]), Integer.parseInt(words[3]), Double.parseDouble(words[4]));
+            double[] v = new double[9];
+            for (int i = 0; i < 9; i++) {
+                v[i] = Double.parseDouble(words[5 + i]);
+            }
+            camera.setTransform(World.view_transform(new Point(v[0], v[1], v[2]), new Point(v[3], v[4], v[5]), new Vector(v[6], v[7], v[8])));
+            int priority = words.length == 15 ? Integer.parseInt(words[14]) : 0;
+
+            image = submit(world, camera, priority).get();
+        } catch (NumberFormatException e) {
+            return List.of("ERROR Bad number "+ e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of("ERROR Interrupted");
+        } catch (ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            return List.of("ERROR "+ cause.getMessage());
+        }
+
+        ArrayList<String> ppm = PPMWriter.canvas_to_ppm(image);
+        List<String> reply = new ArrayList<>(ppm.size() + 1);
+        reply.add("OK "+ ppm.size());
+        reply.addAll(ppm);
+        return reply;
+    }
+
+    /**
+     * Stops the service: it stops listening, waiting and running jobs are
+     * cancelled and the worker threads finish
+     */
+    @Override
+    public void close() {
+        List<Job> jobs;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            jobs = new ArrayList<>(waiting);
+            jobs.addAll(running);
+
+            if (server != null) {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    log.warn("Closing the render server socket failed", e);
+                }
+            }
+        }
+
+        for (Job job: jobs) {
+            job.result.cancel(false);
+        }
+        queue.clear();
+        for (Thread t: workers) {
+            t.interrupt();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package features;
+
+import objects.BVHBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders tiles for a RenderCoordinator, usually in a JVM of its own:
+ *
+ *   java features.RenderWorker host port [threads] [repeat]
+ *
+ * A worker connects to the coordinator, receives the scene, and renders the
+ * tiles it's handed until the coordinator says the image is done.  Tiles are
+ * rendered on a pool of threads (one per processor unless told otherwise),
+ * and the worker asks the coordinator for about one tile per thread, so a
+ * single worker process keeps a multi-core machine busy with one copy of
+ * the scene.  Finished tiles are sent back as soon as they're done.  With
+ * "repeat" it then goes back for the next image, waiting for a coordinator
+ * to be listening if there isn't one yet, and only stops when killed.
+ *
+ * Only classes from the renderer (and the standard collections they use) are
+ * accepted from the coordinator, so a worker can't be fed arbitrary objects.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class RenderWorker {
+    private static final Logger log = LogManager.getLogger(RenderWorker.class);
+    private static final ObjectInputFilter SCENE_CLASSES = ObjectInputFilter.Config.createFilter(
+        "features.**;objects.**;textures.**;java.util.ArrayList;java.lang.Object;java.lang.Number;java.lang.Double;java.lang.Integer;!*");
+    private static final long RETRY_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final int threads;
+
+    /**
+     * Creates a worker for the coordinator at a given address, with a thread
+     * per processor
+     * @param host The coordinator's host
+     * @param port The coordinator's port
+     */
+    public RenderWorker(@NotNull String host, int port) {
+        this(host, port, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a worker for the coordinator at a given address
+     * @param host The coordinator's host
+     * @param port The coordinator's port
+     * @param threads The number of threads to render with
+     * @throws RuntimeException if threads is less than 1 or more than
+     *                          RenderCoordinator.MAX_THREADS
+     */
+    public RenderWorker(@NotNull String host, int port, int threads) throws RuntimeException {
+        if (threads < 1 || threads > RenderCoordinator.MAX_THREADS) {
+            throw new RuntimeException("A worker needs between 1 and "+ RenderCoordinator.MAX_THREADS +" threads");
+        }
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    /**
+     * @return The number of threads tiles are rendered with
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Renders tiles for one image
+     * @return The number of tiles rendered
+     * @throws IOException if the connection fails, or a tile can't be rendered
+     */
+    public int run() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if (in.readInt() != RenderCoordinator.MAGIC) {
+                throw new IOException("Not a render coordinator");
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+
+            World world;
+            Camera camera;
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                objects.setObjectInputFilter(SCENE_CLASSES);
+                world = (World) objects.readObject();
+                camera = (Camera) objects.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Couldn't read the scene", e);
+            }
+            RenderScene scene = world.compile(new BVHBuilder(pool));
+
+            out.writeInt(threads);
+            out.flush();
+
+            // Tiles are rendered on the pool while this thread reads the next
+            // ones.  The coordinator only says it's finished once every tile
+            // has come back, so by then no task is left running.
+            AtomicInteger tiles = new AtomicInteger();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            try {
+                while (true) {
+                    int index = in.readInt();
+                    if (index == RenderCoordinator.FINISHED) {
+                        log.debug("Rendered {} tiles for {}:{}", tiles.get(), host, port);
+                        return tiles.get();
+                    }
+                    int left = in.readInt();
+                    int top = in.readInt();
+                    int width = in.readInt();
+                    int height = in.readInt();
+
+                    pool.execute(() -> {
+                        try {
+                            Canvas tile = new Canvas(width, height);
+                            camera.renderTile(scene, tile, left, top, left, top, width, height);
+                            // Counted first, as the coordinator may finish
+                            // as soon as it has the last tile
+                            tiles.incrementAndGet();
+                            send(out, index, tile);
+                        } catch (IOException | RuntimeException | Error e) {
+                            // Closing the socket stops the reading thread too
+                            if (failure.compareAndSet(null, e)) {
+                                close(socket);
+                            }
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                Throwable cause = failure.get();
+                throw cause != null ? new IOException("Rendering a tile failed", cause) : e;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a finished tile back to the coordinator
+     */
+    private static void send(@NotNull DataOutputStream out, int index, @NotNull Canvas tile) throws IOException {
+        synchronized (out) {
+            out.writeInt(index);
+            for (Colour c: tile.getAllPixels()) {
+                out.writeDouble(c.getR());
+                out.writeDouble(c.getG());
+                out.writeDouble(c.getB());
+            }
+            out.flush();
+        }
+    }
+
+    private static void close(@NotNull Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("Closing the coordinator connection failed", e);
+        }
+    }
+
+    /**
+     * Runs a worker
+     * @param args The coordinator's host and port, then optionally the number
+     *             of threads and "repeat"
+     */
+    public static void main(String[] args) {
+        boolean repeat = args.length > 2 && args[args.length - 1].equals("repeat");
+        int optional = args.length - 2 - (repeat ? 1 : 0);
+        if (args.length < 2 || optional < 0 || optional > 1) {
+            System.err.println("Usage: RenderWorker host port [threads] [repeat]");
+            System.err.println("  threads defaults to one per processor; one worker per machine is enough");
+            System.exit(1);
+        }
+        RenderWorker worker = optional == 1
+            ? new RenderWorker(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]))
+            : new RenderWorker(args[0], Integer.parseInt(args[1]));
+
+        do {
+            try {
+                worker.run();
+            } catch (ConnectException e) {
+                if (!repeat) {
+                    log.error("No coordinator at {}:{}", args[0], args[1]);
+                    System.exit(1);
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.error("Lost the connection to the coordinator", e);
+                if (!repeat) {
+                    System.exit(1);
+                }
+            }
+        } while (repeat);
+    }
+}
@@ -13,7 +13,11 @@ public class Statistics {
     public static long vectors;
     public static long tuples;
     public static long precomputes;
+    public static long refractiveScans;
     public static long rays;
+    public static long bvhBuilds;
+    public static long bvhNodes;
+    public static long bvhBuildTime;    // Nanoseconds
 
     @Contract(pure = true)
     public static String show() {
@@ -24,6 +28,10 @@ public class Statistics {
             "Matrices: "+ matrices +"\n"+
             "Rays: "+ rays +"\n"+
             "Intersections: "+ intersections +"\n"+
-            "Precomputes: "+ precomputes;
+            "Precomputes: "+ precomputes +"\n"+
+            "Refractive index scans: "+ refractiveScans +"\n"+
+            "BVH builds: "+ bvhBuilds +"\n"+
+            "BVH nodes: "+ bvhNodes +"\n"+
+            "BVH build time: "+ String.format("%.3f", bvhBuildTime / 1.0e6) +"ms";
     }
 }
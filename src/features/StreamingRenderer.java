@@ -0,0 +1,242 @@
+package features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders an image a band of rows at a time, handing each band on (to be
+ * written to a file, say) as soon as it and every band above it are done, so
+ * that the whole image never has to be held in memory.
+ *
+ * Bands are rendered in parallel on the renderer's executor and may finish in
+ * any order.  Finished bands wait in a small reorder buffer until their turn,
+ * and no more than a fixed number of bands (rendering or waiting) exist at
+ * once, so memory stays bounded by that number times the band height times
+ * the image width, however tall the image.
+ *
+ * Bands are rendered with the camera's wavefront and packet settings, but not
+ * anti-aliased, as that needs the whole image.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class StreamingRenderer {
+    private static final Logger log = LogManager.getLogger(StreamingRenderer.class);
+
+    /**
+     * Receives the bands of an image, top to bottom
+     */
+    @FunctionalInterface
+    public interface BandConsumer {
+        /**
+         * @param top The row of the image where the band starts
+         * @param band The band's pixels, which may be reused once this returns
+         * @throws IOException if the band can't be written
+         */
+        void accept(int top, @NotNull Canvas band) throws IOException;
+    }
+
+    private final Camera camera;
+    private int bandHeight = 16;
+    private int maxBands = Runtime.getRuntime().availableProcessors() * 2;
+    private Executor executor = ForkJoinPool.commonPool();
+
+    // The reorder buffer of the render in progress: band i is in slot
+    // i % maxBands.  Guarded by this.
+    private Canvas[] slots;
+    private Throwable failure;
+
+    /**
+     * Creates a renderer for the view from a camera, in bands of 16 rows on
+     * the common fork/join pool, with up to two bands per processor at once
+     * @param camera The camera
+     */
+    public StreamingRenderer(@NotNull Camera camera) {
+        this.camera = camera;
+    }
+
+    /**
+     * @param rows The height of each band
+     * @throws RuntimeException if rows is less than 1
+     */
+    public void setBandHeight(int rows) throws RuntimeException {
+        if (rows < 1) {
+            throw new RuntimeException("Bands must be at least one row high");
+        }
+        bandHeight = rows;
+    }
+
+    /**
+     * @return The height of each band
+     */
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    /**
+     * @param bands The most bands in memory at once, being rendered or waiting
+     *              to be handed on.  More than the executor has threads keeps
+     *              them all busy while an early band holds up the rest.
+     * @throws RuntimeException if bands is less than 1
+     */
+    public void setMaxBands(int bands) throws RuntimeException {
+        if (bands < 1) {
+            throw new RuntimeException("Need room for at least one band");
+        }
+        maxBands = bands;
+    }
+
+    /**
+     * @return The most bands in memory at once
+     */
+    public int getMaxBands() {
+        return maxBands;
+    }
+
+    /**
+     * @param e The executor to render the bands on
+     */
+    public void setExecutor(@NotNull Executor e) {
+        executor = e;
+    }
+
+    /**
+     * @return The executor the bands are rendered on
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Renders a scene to a PPM file
+     * @param scene The scene we're rendering
+     * @param filename The file to write
+     * @throws IOException if the file can't be written
+     */
+    public void renderToFile(@NotNull RenderScene scene, @NotNull String filename) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(filename))) {
+            renderPPM(scene, out);
+        }
+    }
+
+    /**
+     * Renders a scene in PPM format, giving exactly what PPMWriter would for
+     * the whole image
+     * @param scene The scene we're rendering
+     * @param out Where to write the image
+     * @throws IOException if writing fails
+     */
+    public void renderPPM(@NotNull RenderScene scene, @NotNull Writer out) throws IOException {
+        PPMWriter.writeHeader(out, camera.getHSize(), camera.getVSize());
+        render(scene, (top, band) -> PPMWriter.writeRows(out, band));
+        out.flush();
+    }
+
+    /**
+     * Renders a scene, handing each band to the consumer in order, on the
+     * calling thread.  If the consumer fails, the bands already being
+     * rendered are finished but the rest are skipped.
+     * @param scene The scene we're rendering
+     * @param consumer Where to send the bands
+     * @throws IOException if the consumer fails
+     * @throws RuntimeException if rendering a band fails
+     */
+    public void render(@NotNull RenderScene scene, @NotNull BandConsumer consumer) throws IOException {
+        int width = camera.getHSize();
+        int height = camera.getVSize();
+        int rows = bandHeight;
+        int window = maxBands;
+        int bands = (height + rows - 1) / rows;
+        long start = System.nanoTime();
+
+        synchronized (this) {
+            if (slots != null) {
+                throw new RuntimeException("A streaming renderer can only render one image at a time");
+            }
+            slots = new Canvas[window];
+            failure = null;
+        }
+
+        try {
+            int submitted = 0;
+            for (int next = 0; next < bands; next++) {
+                while (submitted < bands && submitted < next + window) {
+                    int top = submitted * rows;
+                    Canvas[] buffer = slots;
+                    int slot = submitted % window;
+                    executor.execute(() -> renderBand(scene, buffer, slot, width, top, Math.min(rows, height - top)));
+                    submitted++;
+                }
+
+                Canvas band = take(next % window);
+                consumer.accept(next * rows, band);
+            }
+        } finally {
+            synchronized (this) {
+                slots = null;
+            }
+        }
+
+        log.debug("Streamed {} bands of {} rows in {}ms", bands, rows, String.format("%.1f", (System.nanoTime() - start) / 1.0e6));
+    }
+
+    /**
+     * Renders one band into its slot of the reorder buffer
+     */
+    private void renderBand(@NotNull RenderScene scene, Canvas @NotNull [] buffer, int slot, int width, int top, int height) {
+        synchronized (this) {
+            // The render this band belongs to has been given up
+            if (slots != buffer) {
+                return;
+            }
+        }
+
+        Canvas band = null;
+        Throwable error = null;
+        try {
+            band = new Canvas(width, height);
+            camera.renderTile(scene, band, 0, top, 0, top, width, height);
+        } catch (RuntimeException | Error e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            if (slots == buffer) {
+                buffer[slot] = band;
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the band in a slot of the reorder buffer, and empties the slot
+     */
+    private synchronized Canvas take(int slot) {
+        try {
+            while (slots[slot] == null && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while streaming an image", e);
+        }
+        if (failure != null) {
+            throw new RuntimeException("Rendering a band failed", failure);
+        }
+
+        Canvas band = slots[slot];
+        slots[slot] = null;
+        return band;
+    }
+}
@@ -0,0 +1,94 @@
+package features;
+
+import java.io.Serializable;
+
+/**
+ * Decides when reflected and refracted rays stop being followed, beyond the
+ * fixed depth limit.  Each secondary ray carries a throughput: the fraction of
+ * its colour which reaches the pixel.  A ray whose throughput (in its
+ * strongest colour channel) falls below the threshold can barely change the
+ * image, so it is either dropped, or, with Russian roulette, kept with a
+ * probability in proportion to its throughput and reweighted so that the
+ * image stays correct on average.
+ *
+ * Dropping rays darkens the image very slightly (by at most the threshold
+ * times the brightness of whatever the ray would have seen), which is
+ * invisible for small thresholds.  Russian roulette has no such bias, but
+ * adds noise instead.
+ *
+ * Terminations are immutable, so one can be shared by any number of threads.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public final class Termination implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Follows every ray to the full depth
+     */
+    public static final Termination EXACT = new Termination(0, false);
+
+    /**
+     * Drops rays contributing less than half of one 8-bit colour step
+     */
+    public static final Termination DEFAULT = new Termination(1.0 / 512, false);
+
+    private final double minThroughput;
+    private final boolean russianRoulette;
+
+    /**
+     * @param minThroughput Throughput below which rays are terminated (0 to follow every ray)
+     * @param russianRoulette True to terminate rays at random, reweighting the survivors,
+     *                        rather than dropping them all
+     * @throws RuntimeException if the threshold is negative or not less than one
+     */
+    public Termination(double minThroughput, boolean russianRoulette) throws RuntimeException {
+        if (!(minThroughput >= 0 && minThroughput < 1)) {
+            throw new RuntimeException("Minimum throughput must be between 0 and 1");
+        }
+        this.minThroughput = minThroughput;
+        this.russianRoulette = russianRoulette;
+    }
+
+    /**
+     * @return Throughput below which rays are terminated
+     */
+    public double getMinThroughput() {
+        return minThroughput;
+    }
+
+    /**
+     * @return True if rays below the threshold are terminated at random
+     */
+    public boolean isRussianRoulette() {
+        return russianRoulette;
+    }
+
+    /**
+     * Decides whether to follow a ray
+     * @param throughput The throughput of the ray
+     * @param random A uniformly distributed random number in [0, 1)
+     * @return The factor to scale the ray's throughput by if it is followed, or 0
+     *         to terminate it
+     */
+    double survive(double throughput, double random) {
+        if (throughput >= minThroughput) {
+            return 1;
+        }
+        if (!russianRoulette) {
+            return 0;
+        }
+
+        double p = throughput / minThroughput;
+        return random < p ? 1 / p : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Termination{" +
+            "minThroughput=" + minThroughput +
+            ", russianRoulette=" + russianRoulette +
+            '}';
+    }
+}
@@ -2,6 +2,7 @@ package features;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -11,7 +12,9 @@ import java.util.Objects;
  * @author Mark Edwards
  * @version July 8th, 2022
  */
-public class Tuple {
+public class Tuple implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private double x;
     private double y;
     private double z;
@@ -9,6 +9,8 @@ import org.jetbrains.annotations.NotNull;
  * @version July 8th, 2022
  */
 public class Vector extends Tuple {
+    private static final long serialVersionUID = 1L;
+
     public Vector(double x, double y, double z) {
         super(x, y, z, 0.0);
         Statistics.vectors++;
@@ -0,0 +1,329 @@
+package features;
+
+import objects.Shape;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.SplittableRandom;
+
+/**
+ * Renders a scene a wavefront at a time.  Rather than following each ray from
+ * start to finish, the image is split into square tiles, and every ray for a
+ * tile goes through each stage of the work together:
+ *
+ *  - generate: the primary rays for every pixel in the tile
+ *  - extend: find the closest hit of every ray in the queue
+ *  - connect: trace a shadow ray for every hit
+ *  - shade: add the direct light at every hit to its pixel
+ *  - spawn: queue the reflected and refracted rays of every hit
+ *
+ * after which extend, connect, shade and spawn repeat over the spawned rays
+ * until none are left.  Rays are intersected in packets (see RayPacket), and
+ * hits are sorted by material and shape type before they are shaded, so each
+ * stage runs the same code over long runs of similar work.  Spawned rays are
+ * first sorted by where they start and which way they point (see
+ * RayQueue.sortByCoherence()), so that the rays sharing a packet take similar
+ * paths through the scene.
+ *
+ * The image is the same as the one the Integrator would render; only the
+ * order of the work changes.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class WavefrontRenderer {
+    private static final Logger log = LogManager.getLogger(WavefrontRenderer.class);
+    // Primary rays are generated in square blocks which fill a packet
+    private static final int BLOCK = (int) Math.sqrt(RayPacket.MAX_SIZE);
+
+    private final RenderScene scene;
+    private final int tileSize;
+    private final int maxDepth;
+    private final Termination termination;
+    private final SplittableRandom random = new SplittableRandom();
+
+    // Small numbers for each shape class seen, used in the sort keys
+    private final IdentityHashMap<Class<?>, Integer> shapeTypes = new IdentityHashMap<>();
+
+    // The hits found by the extend stage, in the order the rays were queued
+    private Precompute[] hits = new Precompute[0];
+    private int[] sources = new int[0];
+    private long[] keys = new long[0];
+    private boolean[] shadowed = new boolean[0];
+    private int hitCount;
+
+    // Time spent in each stage, in nanoseconds
+    private long generateTime, extendTime, connectTime, shadeTime, sortTime;
+
+    /**
+     * @param scene The scene to render
+     * @param tileSize The width (and height) of the tiles rendered as one wavefront
+     * @param maxDepth The most reflections or refractions followed from a primary ray
+     * @param termination When to stop following rays with little throughput
+     */
+    WavefrontRenderer(@NotNull RenderScene scene, int tileSize, int maxDepth, @NotNull Termination termination) {
+        this.scene = scene;
+        this.tileSize = tileSize;
+        this.maxDepth = maxDepth;
+        this.termination = termination;
+    }
+
+    /**
+     * Renders the scene as seen by a camera
+     * @param camera The camera
+     * @param image The canvas to render into
+     */
+    void render(@NotNull Camera camera, @NotNull Canvas image) {
+        int hsize = camera.getHSize();
+        int vsize = camera.getVSize();
+        int lastOutput = 0;
+
+        for (int top = 0; top < vsize; top += tileSize) {
+            for (int left = 0; left < hsize; left += tileSize) {
+                renderTile(camera, image, 0, 0, left, top, Math.min(tileSize, hsize - left), Math.min(tileSize, vsize - top));
+            }
+
+            int progress = (int) (100.0 * Math.min(vsize, top + tileSize) / vsize);
+            if (progress > lastOutput) {
+                System.out.print("\rRendering: "+ progress +"%");
+                lastOutput = progress;
+            }
+        }
+
+        log.debug(String.format("Wavefront stages: generate %.1fms, extend %.1fms, connect %.1fms, shade %.1fms, ray sorting %.1fms",
+            generateTime / 1.0e6, extendTime / 1.0e6, connectTime / 1.0e6, shadeTime / 1.0e6, sortTime / 1.0e6));
+    }
+
+    /**
+     * Renders one tile of the image into a canvas whose top left pixel is the
+     * image's pixel (imageLeft, imageTop)
+     */
+    void renderTile(@NotNull Camera camera, @NotNull Canvas image, int imageLeft, int imageTop,
+                    int left, int top, int width, int height) {
+        double[] colours = new double[width * height * 3];
+        RayQueue queue = new RayQueue(width * height);
+        RayQueue next = new RayQueue(width * height);
+
+        long start = System.nanoTime();
+        generate(camera, queue, left, top, width, height);
+        generateTime += System.nanoTime() - start;
+
+        while (queue.size() > 0) {
+            start = System.nanoTime();
+            extend(queue);
+            sortHits();
+            long extended = System.nanoTime();
+            connect();
+            long connected = System.nanoTime();
+            shade(queue, next, colours);
+            long shaded = System.nanoTime();
+
+            extendTime += extended - start;
+            connectTime += connected - extended;
+            shadeTime += shaded - connected;
+
+            RayQueue done = queue;
+            queue = next;
+            next = done;
+            next.clear();
+            Arrays.fill(hits, 0, hitCount, null);
+
+            // Secondary rays head off in all directions, so gather similar
+            // ones together before they're packed into packets
+            start = System.nanoTime();
+            queue.sortByCoherence();
+            sortTime += System.nanoTime() - start;
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 3;
+                image.setPixel(left + x - imageLeft, top + y - imageTop, new Colour(colours[i], colours[i+1], colours[i+2]));
+            }
+        }
+    }
+
+    /**
+     * Generate stage: queues the primary ray for every pixel in a tile, a
+     * packet sized block of pixels at a time so that neighbouring rays are
+     * intersected together
+     */
+    private void generate(@NotNull Camera camera, @NotNull RayQueue queue, int left, int top, int width, int height) {
+        for (int by = 0; by < height; by += BLOCK) {
+            for (int bx = 0; bx < width; bx += BLOCK) {
+                for (int y = by; y < Math.min(by + BLOCK, height); y++) {
+                    for (int x = bx; x < Math.min(bx + BLOCK, width); x++) {
+                        queue.add(camera.rayForPixel(left + x, top + y), y * width + x, 1, 1, 1, maxDepth);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Extend stage: finds the closest hit of every ray in the queue, a packet
+     * of rays at a time
+     */
+    private void extend(@NotNull RayQueue queue) {
+        hitCount = 0;
+        ensureHitCapacity(queue.size());
+
+        for (int first = 0; first < queue.size(); first += RayPacket.MAX_SIZE) {
+            int count = Math.min(RayPacket.MAX_SIZE, queue.size() - first);
+            Ray[] rays = new Ray[count];
+            for (int i = 0; i < count; i++) {
+                rays[i] = queue.ray(first + i);
+            }
+
+            RayPacket packet = new RayPacket(rays);
+            scene.intersect(packet);
+
+            for (int i = 0; i < count; i++) {
+                ArrayList<Intersection> xs = packet.hits(i);
+                Intersection hit = Intersection.hit(xs);
+
+                if (hit != null) {
+                    hits[hitCount] = new Precompute(hit, rays[i], xs, scene);
+                    sources[hitCount] = first + i;
+                    hitCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the hits by material and then by shape type, so the later stages
+     * work through runs of identical surfaces.  The hit's index sits in the
+     * low bits of each key, so the keys sort as plain longs and ties keep
+     * queue order.
+     */
+    private void sortHits() {
+        for (int i = 0; i < hitCount; i++) {
+            Shape s = hits[i].object;
+            long type = shapeTypes.computeIfAbsent(s.getClass(), c -> shapeTypes.size());
+            keys[i] = ((long) scene.materialIndex(s) << 40) | (type << 32) | i;
+        }
+        Arrays.sort(keys, 0, hitCount);
+    }
+
+    /**
+     * Connect stage: traces a shadow ray from every hit towards the light
+     * (which, as in RenderScene.isShadowed(), is the first light), a packet
+     * of rays at a time
+     */
+    private void connect() {
+        if (scene.lightCount() == 0) {
+            return;
+        }
+        Point light = scene.light(0).getPosition();
+
+        for (int first = 0; first < hitCount; first += RayPacket.MAX_SIZE) {
+            int count = Math.min(RayPacket.MAX_SIZE, hitCount - first);
+            Ray[] rays = new Ray[count];
+            double[] distances = new double[count];
+
+            for (int i = 0; i < count; i++) {
+                Precompute comps = hits[(int) keys[first + i]];
+                Vector v = light.subtract(comps.over_point);
+                distances[i] = v.magnitude();
+                rays[i] = new Ray(comps.over_point, v.normalize());
+            }
+
+            RayPacket packet = new RayPacket(rays);
+            scene.intersect(packet);
+
+            for (int i = 0; i < count; i++) {
+                shadowed[(int) keys[first + i]] = blocked(packet.hits(i), distances[i]);
+            }
+        }
+    }
+
+    /**
+     * @param xs The sorted intersections of a shadow ray
+     * @param distance The distance to the light
+     * @return True if something casting shadows lies between the point and the light
+     */
+    private static boolean blocked(@NotNull ArrayList<Intersection> xs, double distance) {
+        for (Intersection i: xs) {
+            if (i.getTime() >= 0 && i.getShape().castsShadow()) {
+                return i.getTime() < distance;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shade and spawn stages: adds the weighted direct light at every hit to
+     * its pixel, then queues any reflected and refracted rays
+     */
+    private void shade(@NotNull RayQueue queue, @NotNull RayQueue next, double @NotNull [] colours) {
+        int lights = scene.lightCount();
+
+        for (int k = 0; k < hitCount; k++) {
+            int h = (int) keys[k];
+            Precompute comps = hits[h];
+            int q = sources[h];
+            int pixel = queue.pixel(q) * 3;
+            double wr = queue.weight(q, 0);
+            double wg = queue.weight(q, 1);
+            double wb = queue.weight(q, 2);
+            Material m = scene.material(comps.object);
+
+            Colour direct = scene.directLight(comps, m, shadowed[h]);
+            colours[pixel] += direct.getR() * wr;
+            colours[pixel+1] += direct.getG() * wg;
+            colours[pixel+2] += direct.getB() * wb;
+
+            int remaining = Math.min(queue.depth(q), m.getMaxDepth());
+            if (remaining == 0) {
+                continue;
+            }
+
+            // As in shadeHit(), reflected and refracted colours are added once per light
+            double reflectivity = m.getReflectivity();
+            double transparency = m.getTransparency();
+            double reflectWeight = reflectivity * lights;
+            double refractWeight = transparency * lights;
+            if (reflectivity > 0 && transparency > 0) {
+                double reflectance = comps.reflectance();
+                reflectWeight *= reflectance;
+                refractWeight *= 1 - reflectance;
+            }
+
+            if (reflectWeight != 0) {
+                spawn(next, new Ray(comps.over_point, comps.reflectv()), queue.pixel(q),
+                    wr * reflectWeight, wg * reflectWeight, wb * reflectWeight, remaining - 1);
+            }
+            if (refractWeight != 0) {
+                Vector direction = comps.refractv();
+                if (direction != null) {
+                    spawn(next, new Ray(comps.under_point(), direction), queue.pixel(q),
+                        wr * refractWeight, wg * refractWeight, wb * refractWeight, remaining - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a secondary ray, unless the termination decides it isn't worth following
+     */
+    private void spawn(@NotNull RayQueue next, @NotNull Ray r, int pixel, double wr, double wg, double wb, int depth) {
+        double scale = termination.survive(Math.max(wr, Math.max(wg, wb)), random.nextDouble());
+        if (scale != 0) {
+            next.add(r, pixel, wr * scale, wg * scale, wb * scale, depth);
+        }
+    }
+
+    private void ensureHitCapacity(int capacity) {
+        if (hits.length < capacity) {
+            hits = new Precompute[capacity];
+            sources = new int[capacity];
+            keys = new long[capacity];
+            shadowed = new boolean[capacity];
+        }
+    }
+}
@@ -3,6 +3,7 @@ package features;
 
 import features.lights.Light;
 import features.lights.PointLight;
+import objects.BVHBuilder;
 import objects.Shape;
 import objects.Sphere;
 import org.jetbrains.annotations.NotNull;
@@ -10,6 +11,7 @@ import org.jetbrains.annotations.NotNull;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
@@ -18,11 +20,16 @@ import java.util.ArrayList;
  * @author Mark Edwards
  * @version July 14th, 2022
  */
-public class World {
+public class World implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Make use of the logger for output
     private static final Logger log = LogManager.getLogger(World.class);
     private ArrayList<Shape> objects;
     private ArrayList<Light> lights;
+    // Changes made through this class, including the counts of any objects
+    // removed, so that modificationCount() never goes down
+    private transient long modifications;
 
     /**
      * Default constructor.  Initialises an empty World
@@ -56,6 +63,7 @@ public class World {
     public void clearLights() {
         log.debug("Clearing all lights from the world.");
         lights.clear();
+        modifications++;
     }
 
     /**
@@ -63,7 +71,11 @@ public class World {
      */
     public void clearObjects() {
         log.debug("Clearing all objects from the world.");
+        for (Shape s: objects) {
+            modifications += s.modificationCount();
+        }
         objects.clear();
+        modifications++;
     }
 
     /**
@@ -73,6 +85,7 @@ public class World {
     public void addLight(@NotNull Light light) {
         log.debug("Adding light "+ light +" to the world.");
         lights.add(light);
+        modifications++;
     }
 
     /**
@@ -82,6 +95,24 @@ public class World {
     public void addObject(@NotNull Shape object) {
         log.debug("Adding object "+ object +" to the world.");
         objects.add(object);
+        modifications++;
+    }
+
+    /**
+     * Gets a count which goes up whenever the world changes: objects or
+     * lights being added or removed, or any shape in the world (or inside one
+     * of its groups) being changed.  A scene compiled from the world is out of
+     * date once the count has moved on from its RenderScene.worldModificationCount().
+     * Changes made directly to the lists from getObjects() and getLights()
+     * aren't counted.
+     * @return The modification count
+     */
+    public long modificationCount() {
+        long count = modifications;
+        for (Shape s: objects) {
+            count += s.modificationCount();
+        }
+        return count;
     }
 
     //TODO: Probably should look at having the below two methods return
@@ -140,17 +171,19 @@ public class World {
      */
     public Colour shadeHit(@NotNull Precompute comps, int remaining) {
         log.debug("Calculating ShadeHit in World.");
-        log.debug("Computations:\n" + comps);
+        log.debug("Computations:\n{}", comps);
         log.debug("Remaining recursion limit: "+ remaining);
 
         Colour c = new Colour(0,0,0);
         Colour reflect = new Colour(0,0,0);
         Colour refract = new Colour(0,0,0);
+        Material m = comps.object.sharedMaterial();
+        remaining = Math.min(remaining, m.getMaxDepth());
 
         for (Light light: lights) {
             log.debug("Computing colour for light "+ light);
 
-            Colour colourAtPoint = Light.lighting(comps.object.getMaterial(),
+            Colour colourAtPoint = Light.lighting(m,
                 comps.object,
                 light,
                 comps.over_point,
@@ -174,11 +207,9 @@ public class World {
         log.debug("  -- Refract: "+ reflect);
         log.debug("  -- Combined: "+ c.add(reflect).add(refract));
 
-        Material m = comps.object.getMaterial();
-
         // If we have a reflective and transparent surface, apply the fresnel effect to it.
         if (m.getReflectivity() > 0 && m.getTransparency() >0) {
-            return c.add(reflect.multiply(comps.reflectance)).add(refract.multiply(1-comps.reflectance));
+            return c.add(reflect.multiply(comps.reflectance())).add(refract.multiply(1-comps.reflectance()));
         } else {
             return c.add(reflect).add(refract);
         }
@@ -205,12 +236,36 @@ public class World {
             // For transparency and refraction, we need to send the list of intersections
             // into precompute...
             Precompute comps = new Precompute(hit, r, xs);
-            log.debug("Generating new precompute: "+ comps);
+            log.debug("Generating new precompute: {}", comps);
 
             return shadeHit(comps, remaining);
         }
     }
 
+    /**
+     * Compiles the world into a scene ready for rendering, building the
+     * hierarchies on the calling thread.  See compile(BVHBuilder).
+     * @return The compiled scene
+     */
+    public RenderScene compile() {
+        return compile(new BVHBuilder());
+    }
+
+    /**
+     * Compiles the world into a scene ready for rendering.  The shading
+     * methods on this class work directly from the (mutable) objects and are
+     * handy for testing, but a render should compile the world once and shade
+     * from the scene, which can be shared between threads.  The scene still
+     * refers to the world's shapes, so must be compiled again once they're
+     * edited (see RenderScene).
+     * @param builder The builder to use for the bounding volume hierarchies
+     * @return The compiled scene
+     */
+    public RenderScene compile(@NotNull BVHBuilder builder) {
+        log.debug("Compiling World with "+ objects.size() +" objects.");
+        return new RenderScene(this, builder);
+    }
+
     /**
      * Compute the view transformation matrix for the world
      * @param from Originating point
@@ -273,21 +328,23 @@ public class World {
      */
     public Colour reflectedColour(@NotNull Precompute comps, int remaining) {
         log.debug("Computing reflectedColour.");
-        log.debug("Computations: "+ comps);
+        log.debug("Computations: {}", comps);
         log.debug("Recursion depth remaining: "+ remaining);
 
-        if (comps.object.getMaterial().getReflectivity() == 0 || remaining == 0) {
+        double reflectivity = comps.object.sharedMaterial().getReflectivity();
+
+        if (reflectivity == 0 || remaining == 0) {
             log.debug("Material is non-reflective or we have no recursions remaining, returning black");
             return new Colour(0,0,0);
         }
 
-        Ray reflectRay = new Ray(comps.over_point, comps.reflectv);
+        Ray reflectRay = new Ray(comps.over_point, comps.reflectv());
         Colour c = this.colourAt(reflectRay, remaining-1);
         log.debug("Base reflected colour: "+ c);
-        log.debug(" -- material reflectivity is "+ comps.object.getMaterial().getReflectivity());
-        log.debug(" -- Returning colour: "+ c.multiply(comps.object.getMaterial().getReflectivity()));
+        log.debug(" -- material reflectivity is "+ reflectivity);
+        log.debug(" -- Returning colour: "+ c.multiply(reflectivity));
 
-        return c.multiply(comps.object.getMaterial().getReflectivity());
+        return c.multiply(reflectivity);
     }
 
     /**
@@ -298,17 +355,19 @@ public class World {
      */
     public Colour refractedColour(@NotNull Precompute comps, int remaining) {
         log.debug("Computing refractedColour.");
-        log.debug("Computations: "+ comps);
+        log.debug("Computations: {}", comps);
         log.debug("Recursion depth remaining: "+ remaining);
 
-        if (comps.object.getMaterial().getTransparency() == 0 || remaining == 0) {
+        double transparency = comps.object.sharedMaterial().getTransparency();
+
+        if (transparency == 0 || remaining == 0) {
             log.debug("Material is opaque, or no recursion left.  Returning black");
             return new Colour(0,0,0);
         }
 
         // Check for total internal reflection using Snell's Law.
         // Get the ratio of first IoR to second:
-        double n_ratio = comps.n1 / comps.n2;
+        double n_ratio = comps.n1() / comps.n2();
         double cos_i = comps.eye.dot(comps.normal);
         double sin2_t = (n_ratio*n_ratio) * (1 - (cos_i * cos_i));
 
@@ -331,13 +390,13 @@ public class World {
         log.debug(" -- direction vector: "+ direction);
 
         // Create the refracted ray
-        Ray refract_ray = new Ray(comps.under_point, direction);
+        Ray refract_ray = new Ray(comps.under_point(), direction);
         log.debug(" -- Refracted ray: "+ refract_ray);
 
         // Find the colour of the refracted ray, multiplying by transparency to account
         // for any opacity
         log.debug(" -- Determining colour of the refracted ray.");
-        Colour c = colourAt(refract_ray, remaining-1).multiply(comps.object.getMaterial().getTransparency());
+        Colour c = colourAt(refract_ray, remaining-1).multiply(transparency);
         log.debug(" -- Refracted colour: "+ c);
         return c;
     }
@@ -7,6 +7,7 @@ import features.Vector;
 import objects.Shape;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -15,7 +16,9 @@ import java.util.Objects;
  * @author Mark Edwards
  * @version July 14th, 2022
  */
-public abstract class Light {
+public abstract class Light implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Point position;
     private final Colour intensity;
 
@@ -79,7 +82,7 @@ public abstract class Light {
         Colour black = new Colour(0,0,0);
 
         // Combine the surface colour with the light colour
-        Colour effectiveColour = object.colourAt(pointPosition).multiply(light.getIntensity());
+        Colour effectiveColour = m.colourAt(object.worldToObject(pointPosition)).multiply(light.getIntensity());
 
         // Find the direction to the light source
         Vector lightVector = light.getPosition().subtract(pointPosition).normalize();
@@ -13,6 +13,7 @@ import org.jetbrains.annotations.NotNull;
  * @version July 14th, 2022
  */
 public class PointLight extends Light {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Creates a new light at the specified position with the specified intensity (colour)
@@ -0,0 +1,66 @@
+package features.sampling;
+
+/**
+ * The Halton sequence: dimension d of sample i is the radical inverse of i in
+ * the d'th prime base (the digits of i written backwards after the decimal
+ * point).  Every dimension fills [0, 1) evenly however many samples are
+ * taken, so there's no need to know the count in advance.
+ *
+ * Every pixel would otherwise see exactly the same points, so each pixel and
+ * dimension shifts the sequence by its own random offset (wrapping around at
+ * 1), which keeps the even spacing.  Dimensions beyond the prime table, whose
+ * points would be poorly spread anyway, are simply random.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class HaltonSampler implements Sampler {
+    private static final long serialVersionUID = 1L;
+
+    private static final int[] PRIMES = {
+        2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53,
+        59, 61, 67, 71, 73, 79, 83, 89, 97, 101, 103, 107, 109, 113, 127, 131
+    };
+
+    /**
+     * @return The number of dimensions with a Halton sequence of their own
+     */
+    public static int dimensions() {
+        return PRIMES.length;
+    }
+
+    /**
+     * Computes the radical inverse of an index
+     * @param index The index
+     * @param base The base to write it in
+     * @return The digits of the index reflected about the decimal point
+     */
+    static double radicalInverse(int index, int base) {
+        double inverseBase = 1.0 / base;
+        double scale = inverseBase;
+        double result = 0;
+
+        for (long i = index & 0xffffffffL; i > 0; i /= base) {
+            result += (i % base) * scale;
+            scale *= inverseBase;
+        }
+        return result;
+    }
+
+    @Override
+    public double get(int px, int py, int index, int dimension) {
+        if (dimension >= PRIMES.length) {
+            return Hashing.toUnit(Hashing.hash(px, py, dimension, index));
+        }
+
+        double v = radicalInverse(index, PRIMES[dimension]) + Hashing.toUnit(Hashing.hash(px, py, dimension, 0));
+        v -= Math.floor(v);
+        // Rounding can leave exactly 1 after the wrap
+        return v < 1 ? v : Math.nextDown(1.0);
+    }
+
+    @Override
+    public String toString() {
+        return "HaltonSampler{}";
+    }
+}
@@ -0,0 +1,38 @@
+package features.sampling;
+
+/**
+ * Hash functions shared by the samplers, used to give every pixel and
+ * dimension its own (but repeatable) randomisation
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class Hashing {
+    private Hashing() {}
+
+    /**
+     * Hashes a pixel, dimension and extra value together (the splitmix64 finaliser)
+     * @return A well mixed 64-bit hash
+     */
+    static long hash(int px, int py, int dimension, int extra) {
+        long z = ((long) px << 32 | (py & 0xffffffffL)) * 0x9e3779b97f4a7c15L
+            ^ ((long) dimension << 32 | (extra & 0xffffffffL));
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return A value in [0, 1) taken from the top 53 bits of a hash
+     */
+    static double toUnit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @return A 32-bit fixed point fraction converted to a double in [0, 1)
+     */
+    static double toUnit(int bits) {
+        return (bits & 0xffffffffL) * 0x1.0p-32;
+    }
+}
@@ -0,0 +1,31 @@
+package features.sampling;
+
+import java.io.Serializable;
+
+/**
+ * Source of the sample values used when a pixel is sampled more than once
+ * (positions within the pixel, points on a lens or an area light, and so on).
+ * Each sample of a pixel is a point in a space of as many dimensions as the
+ * renderer needs, with each coordinate in [0, 1).
+ *
+ * Values depend only on the pixel, the sample's index and the dimension, never
+ * on the order samples are asked for or on which thread asks, so an image
+ * comes out the same however its pixels are shared out.  Dimensions are used
+ * in pairs for two dimensional samples (0 and 1 for the position within the
+ * pixel, 2 and 3 for the next, and so on).
+ *
+ * Samplers are serialisable, as part of a camera sent to another machine.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public interface Sampler extends Serializable {
+    /**
+     * @param px The x coordinate of the pixel
+     * @param py The y coordinate of the pixel
+     * @param index The index of the sample within the pixel (from 0)
+     * @param dimension The dimension of the sample
+     * @return The sample's value in that dimension, in [0, 1)
+     */
+    double get(int px, int py, int index, int dimension);
+}
@@ -0,0 +1,130 @@
+package features.sampling;
+
+/**
+ * The Sobol sequence, with Owen scrambling.  Each dimension is built from a
+ * table of direction numbers such that, for any power of two 2^m, the first
+ * 2^m samples put exactly one point in each of the 2^m equal slices of every
+ * dimension, and (for the first two dimensions) one point in each cell of
+ * any 2^a x 2^b grid with a + b = m.  Taking sample counts in powers of two
+ * gets the most from it.
+ *
+ * Each pixel and dimension scrambles the sequence with its own nested uniform
+ * (Owen) scramble, computed with a hash rather than stored, so pixels don't
+ * share points but every property above is kept.  Dimensions beyond the
+ * direction number table are simply random.
+ *
+ * Direction numbers are those of S. Joe and F. Y. Kuo (new-joe-kuo-6.21201).
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class SobolSampler implements Sampler {
+    private static final long serialVersionUID = 1L;
+
+    // Degree s, coefficients a and initial direction numbers m of the
+    // primitive polynomial for each dimension after the first
+    private static final int[] DEGREE = {1, 2, 3, 3, 4, 4, 5, 5, 5};
+    private static final int[] COEFFICIENTS = {0, 1, 1, 2, 1, 4, 2, 4, 7};
+    private static final int[][] INITIAL = {
+        {1},
+        {1, 3},
+        {1, 3, 1},
+        {1, 1, 1},
+        {1, 1, 3, 3},
+        {1, 3, 5, 13},
+        {1, 1, 5, 5, 17},
+        {1, 1, 5, 5, 5},
+        {1, 1, 7, 11, 19}
+    };
+
+    // DIRECTIONS[d][k] is the direction number for bit k of the index in dimension d
+    private static final int[][] DIRECTIONS = directions();
+
+    /**
+     * @return The number of dimensions with a Sobol sequence of their own
+     */
+    public static int dimensions() {
+        return DIRECTIONS.length;
+    }
+
+    /**
+     * Builds the direction numbers for every dimension
+     */
+    private static int[][] directions() {
+        int[][] v = new int[DEGREE.length + 1][32];
+
+        // The first dimension is the van der Corput sequence in base 2
+        for (int k = 0; k < 32; k++) {
+            v[0][k] = 1 << (31 - k);
+        }
+
+        for (int d = 1; d <= DEGREE.length; d++) {
+            int s = DEGREE[d-1];
+            int a = COEFFICIENTS[d-1];
+            int[] m = INITIAL[d-1];
+
+            for (int k = 0; k < 32; k++) {
+                if (k < s) {
+                    v[d][k] = m[k] << (31 - k);
+                } else {
+                    int value = v[d][k-s] ^ (v[d][k-s] >>> s);
+                    for (int j = 1; j < s; j++) {
+                        if (((a >>> (s - 1 - j)) & 1) != 0) {
+                            value ^= v[d][k-j];
+                        }
+                    }
+                    v[d][k] = value;
+                }
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Computes one dimension of a Sobol point, without scrambling
+     * @param index The index of the point
+     * @param dimension The dimension (less than dimensions())
+     * @return The value as a 32-bit fixed point fraction
+     */
+    static int sobol(int index, int dimension) {
+        int[] v = DIRECTIONS[dimension];
+        int result = 0;
+        for (int k = 0; index != 0; k++, index >>>= 1) {
+            if ((index & 1) != 0) {
+                result ^= v[k];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Nested uniform scramble of a 32-bit fraction.  Each bit is flipped or
+     * not depending only on the seed and the bits above it, which is what
+     * keeps the stratification of the sequence.  (The Laine-Karras hash, as
+     * improved by Burley, applied to the bit reversed value.)
+     */
+    static int scramble(int x, int seed) {
+        x = Integer.reverse(x);
+        x ^= x * 0x3d20adea;
+        x += seed;
+        x *= (seed >>> 16) | 1;
+        x ^= x * 0x05526c56;
+        x ^= x * 0x53a22864;
+        return Integer.reverse(x);
+    }
+
+    @Override
+    public double get(int px, int py, int index, int dimension) {
+        if (dimension >= DIRECTIONS.length) {
+            return Hashing.toUnit(Hashing.hash(px, py, dimension, index));
+        }
+
+        int seed = (int) Hashing.hash(px, py, dimension, 0);
+        return Hashing.toUnit(scramble(sobol(index, dimension), seed));
+    }
+
+    @Override
+    public String toString() {
+        return "SobolSampler{}";
+    }
+}
@@ -0,0 +1,86 @@
+package features.sampling;
+
+/**
+ * Jittered stratified sampling.  Each pair of dimensions is divided into an
+ * n x n grid, where n*n is the number of samples per pixel, and each sample
+ * lands at a random point within its own cell.  So that pairs of dimensions
+ * don't line up with each other, every pixel and pair shuffles which sample
+ * gets which cell.
+ *
+ * Samples past the expected count have no cell left, and are simply random.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class StratifiedSampler implements Sampler {
+    private static final long serialVersionUID = 1L;
+
+    private final int strata;
+    private final int count;
+
+    /**
+     * @param samplesPerPixel The number of samples expected per pixel.  Rounded
+     *                        down to a square number.
+     * @throws RuntimeException if there isn't at least one sample per pixel
+     */
+    public StratifiedSampler(int samplesPerPixel) throws RuntimeException {
+        if (samplesPerPixel < 1) {
+            throw new RuntimeException("Need at least one sample per pixel");
+        }
+        strata = (int) Math.sqrt(samplesPerPixel);
+        count = strata * strata;
+    }
+
+    /**
+     * @return The number of samples per pixel which are stratified
+     */
+    public int getSamplesPerPixel() {
+        return count;
+    }
+
+    @Override
+    public double get(int px, int py, int index, int dimension) {
+        double jitter = Hashing.toUnit(Hashing.hash(px, py, dimension, index));
+        if (index >= count) {
+            return jitter;
+        }
+
+        int cell = shuffle(index, Hashing.hash(px, py, dimension / 2, -1));
+        int stratum = (dimension % 2 == 0) ? cell % strata : cell / strata;
+        return (stratum + jitter) / strata;
+    }
+
+    /**
+     * Maps an index to its shuffled position, with a different permutation of
+     * 0..count-1 for every seed.  Uses a small Feistel network over the
+     * smallest power of two range holding count values, stepping again
+     * whenever a value lands outside the range (cycle walking).
+     */
+    private int shuffle(int index, long seed) {
+        int bits = Math.max(2, 32 - Integer.numberOfLeadingZeros(count - 1));
+        bits += bits % 2;
+        int half = bits / 2;
+        int mask = (1 << half) - 1;
+
+        int v = index;
+        do {
+            int left = v >>> half;
+            int right = v & mask;
+            for (int round = 0; round < 4; round++) {
+                int f = (int) (Hashing.hash(right, round, (int) seed, (int) (seed >>> 32)) & mask);
+                int next = left ^ f;
+                left = right;
+                right = next;
+            }
+            v = (left << half) | right;
+        } while (v >= count);
+        return v;
+    }
+
+    @Override
+    public String toString() {
+        return "StratifiedSampler{" +
+            "samplesPerPixel=" + count +
+            '}';
+    }
+}
@@ -0,0 +1,488 @@
+package objects;
+
+import features.Point;
+import features.Statistics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a bounding volume hierarchy over a list of shapes using a binned
+ * surface area heuristic.  At each node the shape centroids are dropped into a
+ * fixed number of bins along each axis and the split with the lowest SAH cost
+ * is chosen.
+ *
+ * A builder can either run on the calling thread or be handed a ForkJoinPool,
+ * in which case large subtrees are built concurrently and the centroid binning
+ * of large nodes is split across the pool.  Bin merging only uses counts and
+ * min/max operations, so both modes produce exactly the same tree.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class BVHBuilder {
+    public static final int BINS = 16;
+    public static final int MAX_LEAF_SIZE = 4;
+
+    // Nodes smaller than these are handled on the current thread, since the
+    // overhead of forking would outweigh any gain
+    private static final int SUBTREE_THRESHOLD = 4096;
+    private static final int BINNING_THRESHOLD = 65536;
+
+    private final ForkJoinPool pool;
+    private final int subtreeThreshold;
+    private final int binningThreshold;
+
+    /**
+     * Creates a builder which builds trees on the calling thread
+     */
+    public BVHBuilder() {
+        this(null);
+    }
+
+    /**
+     * Creates a builder that distributes its work across the given pool.
+     * @param pool The pool to build in, or null to build on the calling thread
+     */
+    public BVHBuilder(@Nullable ForkJoinPool pool) {
+        this(pool, SUBTREE_THRESHOLD, BINNING_THRESHOLD);
+    }
+
+    /**
+     * Creates a builder with explicit parallel thresholds.  Only intended for
+     * testing, so that small inputs still exercise the parallel paths.
+     * @param pool The pool to build in, or null to build on the calling thread
+     * @param subtreeThreshold Minimum shape count for a subtree to be forked
+     * @param binningThreshold Minimum shape count for a node to be binned in parallel
+     */
+    BVHBuilder(@Nullable ForkJoinPool pool, int subtreeThreshold, int binningThreshold) {
+        this.pool = pool;
+        this.subtreeThreshold = Math.max(2, subtreeThreshold);
+        this.binningThreshold = Math.max(2, binningThreshold);
+    }
+
+    /**
+     * @return A builder that runs on the common ForkJoinPool
+     */
+    public static BVHBuilder parallel() {
+        return new BVHBuilder(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return True if this builder distributes its work over a thread pool
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Builds the hierarchy for the given shapes.  Bounds are taken in the
+     * space of the shapes' parent (ie: with each shape's own transform applied)
+     * so the result can be placed directly into the shapes' current group.
+     * @param shapes The shapes to build the tree over.  Must not be empty.
+     * @return The root node of the tree
+     */
+    public BVHNode build(@NotNull List<Shape> shapes) {
+        if (shapes.isEmpty()) {
+            throw new RuntimeException("Cannot build a BVH over an empty list of shapes!");
+        }
+
+        long start = System.nanoTime();
+
+        Build b = new Build(shapes);
+        BVHNode root;
+        if (pool == null) {
+            b.prepare(false);
+            root = b.node(0, shapes.size());
+        } else {
+            root = pool.invoke(new RecursiveTask<>() {
+                @Override
+                protected BVHNode compute() {
+                    b.prepare(true);
+                    return b.node(0, shapes.size());
+                }
+            });
+        }
+
+        Statistics.bvhBuilds++;
+        Statistics.bvhNodes += root.nodeCount();
+        Statistics.bvhBuildTime += System.nanoTime() - start;
+
+        return root;
+    }
+
+    /**
+     * Holds the per-shape data for a single build.  Shape bounds and centroids
+     * are stored in flat arrays (six and three entries per shape respectively)
+     * and are reached through the order array, which gets partitioned in place
+     * as the tree is built.
+     */
+    private class Build {
+        private final Shape[] shapes;
+        private final double[] boxes;
+        private final double[] centroids;
+        private final int[] order;
+
+        Build(List<Shape> list) {
+            shapes = list.toArray(new Shape[0]);
+            boxes = new double[shapes.length * 6];
+            centroids = new double[shapes.length * 3];
+            order = new int[shapes.length];
+        }
+
+        /**
+         * Fills in the bounds and centroid of every shape
+         * @param parallel Whether to compute them across the current pool
+         */
+        void prepare(boolean parallel) {
+            IntStream range = IntStream.range(0, shapes.length);
+            if (parallel) {
+                range = range.parallel();
+            }
+            range.forEach(i -> {
+                BoundingBox box = shapes[i].parentSpaceBounds();
+                Point min = box.min();
+                Point max = box.max();
+                boxes[i*6] = min.getX();
+                boxes[i*6+1] = min.getY();
+                boxes[i*6+2] = min.getZ();
+                boxes[i*6+3] = max.getX();
+                boxes[i*6+4] = max.getY();
+                boxes[i*6+5] = max.getZ();
+                for (int axis = 0; axis < 3; axis++) {
+                    centroids[i*3+axis] = (boxes[i*6+axis] + boxes[i*6+3+axis]) / 2;
+                }
+                order[i] = i;
+            });
+        }
+
+        /**
+         * Recursively builds the node covering order[start..end)
+         */
+        BVHNode node(int start, int end) {
+            int count = end - start;
+            Extents ext = extents(start, end);
+            BoundingBox bounds = new BoundingBox(
+                new Point(ext.box[0], ext.box[1], ext.box[2]),
+                new Point(ext.box[3], ext.box[4], ext.box[5]));
+
+            if (count == 1) {
+                return leaf(bounds, start, end);
+            }
+
+            Split split = bestSplit(start, end, ext);
+            int mid;
+            if (split == null) {
+                // Every centroid is in the same place, so there's nothing the
+                // heuristic can do.  Either stop here or just halve the list.
+                if (count <= MAX_LEAF_SIZE) {
+                    return leaf(bounds, start, end);
+                }
+                mid = start + count / 2;
+            } else {
+                if (count <= MAX_LEAF_SIZE && split.cost >= count * BVHNode.INTERSECTION_COST) {
+                    return leaf(bounds, start, end);
+                }
+                mid = partition(start, end, split, ext);
+                if (mid == start || mid == end) {
+                    mid = start + count / 2;
+                }
+            }
+
+            BVHNode left, right;
+            if (pool != null && count >= subtreeThreshold) {
+                final int m = mid;
+                RecursiveTask<BVHNode> task = new RecursiveTask<>() {
+                    @Override
+                    protected BVHNode compute() {
+                        return node(start, m);
+                    }
+                };
+                task.fork();
+                right = node(mid, end);
+                left = task.join();
+            } else {
+                left = node(start, mid);
+                right = node(mid, end);
+            }
+
+            return new BVHNode(bounds, left, right);
+        }
+
+        private BVHNode leaf(BoundingBox bounds, int start, int end) {
+            Shape[] leafShapes = new Shape[end - start];
+            for (int i = start; i < end; i++) {
+                leafShapes[i - start] = shapes[order[i]];
+            }
+            return new BVHNode(bounds, List.of(leafShapes));
+        }
+
+        /**
+         * Computes the bounds of the shapes, and of their centroids, over a range
+         */
+        private Extents extents(int start, int end) {
+            if (pool != null && end - start >= binningThreshold) {
+                return new ExtentsTask(start, end).invoke();
+            }
+
+            Extents e = new Extents();
+            for (int i = start; i < end; i++) {
+                e.add(order[i]);
+            }
+            return e;
+        }
+
+        /**
+         * Evaluates every bin boundary on every axis and returns the cheapest
+         * @return The best split found, or null if the centroids cannot be separated
+         */
+        private Split bestSplit(int start, int end, Extents ext) {
+            Bins bins;
+            if (pool != null && end - start >= binningThreshold) {
+                bins = new BinTask(start, end, ext).invoke();
+            } else {
+                bins = new Bins();
+                for (int i = start; i < end; i++) {
+                    bins.add(order[i], ext);
+                }
+            }
+
+            double nodeArea = area(ext.box, 0);
+            // Flat or unbounded nodes can't be weighed by area, so balance the counts instead
+            boolean degenerate = !(nodeArea > 0) || Double.isInfinite(nodeArea);
+            Split best = null;
+            double[] rightArea = new double[BINS];
+            int[] rightCount = new int[BINS];
+
+            for (int axis = 0; axis < 3; axis++) {
+                if (!(ext.centroidMax[axis] > ext.centroidMin[axis])) {
+                    continue;
+                }
+
+                // Sweep from the right to get the area/count for each right hand side
+                double[] acc = emptyBox();
+                int n = 0;
+                for (int bin = BINS - 1; bin > 0; bin--) {
+                    n += bins.counts[axis*BINS + bin];
+                    grow(acc, bins.boxes, (axis*BINS + bin) * 6);
+                    rightArea[bin] = area(acc, 0);
+                    rightCount[bin] = n;
+                }
+
+                // Then sweep from the left evaluating each boundary
+                acc = emptyBox();
+                n = 0;
+                for (int bin = 1; bin < BINS; bin++) {
+                    n += bins.counts[axis*BINS + bin - 1];
+                    grow(acc, bins.boxes, (axis*BINS + bin - 1) * 6);
+                    if (n == 0 || rightCount[bin] == 0) {
+                        continue;
+                    }
+
+                    double cost;
+                    if (degenerate) {
+                        cost = BVHNode.TRAVERSAL_COST + BVHNode.INTERSECTION_COST * Math.max(n, rightCount[bin]);
+                    } else {
+                        cost = BVHNode.TRAVERSAL_COST + BVHNode.INTERSECTION_COST
+                            * (area(acc, 0) * n + rightArea[bin] * rightCount[bin]) / nodeArea;
+                    }
+
+                    if (best == null || cost < best.cost) {
+                        best = new Split(axis, bin, cost);
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Partitions order[start..end) so that shapes on the left of the split
+         * come first
+         * @return The index of the first shape on the right of the split
+         */
+        private int partition(int start, int end, Split split, Extents ext) {
+            int i = start;
+            int j = end - 1;
+            while (i <= j) {
+                if (binIndex(order[i], split.axis, ext) < split.bin) {
+                    i++;
+                } else {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    j--;
+                }
+            }
+            return i;
+        }
+
+        /**
+         * @return The bin that the centroid of shape idx falls into along the given axis
+         */
+        private int binIndex(int idx, int axis, Extents ext) {
+            double extent = ext.centroidMax[axis] - ext.centroidMin[axis];
+            int bin = (int) (BINS * ((centroids[idx*3 + axis] - ext.centroidMin[axis]) / extent));
+            return Math.max(0, Math.min(BINS - 1, bin));
+        }
+
+        /**
+         * Bounds of a range of shapes and of their centroids
+         */
+        private class Extents {
+            final double[] box = emptyBox();
+            final double[] centroidMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+            final double[] centroidMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+            void add(int idx) {
+                grow(box, boxes, idx * 6);
+                for (int axis = 0; axis < 3; axis++) {
+                    double c = centroids[idx*3 + axis];
+                    // Written as comparisons so that unbounded shapes (NaN centroids) are skipped
+                    if (c < centroidMin[axis]) centroidMin[axis] = c;
+                    if (c > centroidMax[axis]) centroidMax[axis] = c;
+                }
+            }
+
+            void add(Extents other) {
+                grow(box, other.box, 0);
+                for (int axis = 0; axis < 3; axis++) {
+                    if (other.centroidMin[axis] < centroidMin[axis]) centroidMin[axis] = other.centroidMin[axis];
+                    if (other.centroidMax[axis] > centroidMax[axis]) centroidMax[axis] = other.centroidMax[axis];
+                }
+            }
+        }
+
+        /**
+         * Shape counts and bounds for each bin on each of the three axes
+         */
+        private class Bins {
+            final int[] counts = new int[3 * BINS];
+            final double[] boxes = new double[3 * BINS * 6];
+
+            Bins() {
+                for (int i = 0; i < 3 * BINS; i++) {
+                    System.arraycopy(emptyBox(), 0, boxes, i * 6, 6);
+                }
+            }
+
+            void add(int idx, Extents ext) {
+                for (int axis = 0; axis < 3; axis++) {
+                    if (!(ext.centroidMax[axis] > ext.centroidMin[axis])) {
+                        continue;
+                    }
+                    int bin = axis * BINS + binIndex(idx, axis, ext);
+                    counts[bin]++;
+                    grow(boxes, bin * 6, Build.this.boxes, idx * 6);
+                }
+            }
+
+            void add(Bins other) {
+                for (int i = 0; i < 3 * BINS; i++) {
+                    counts[i] += other.counts[i];
+                    grow(boxes, i * 6, other.boxes, i * 6);
+                }
+            }
+        }
+
+        /**
+         * Computes the extents of a large range by splitting it across the pool
+         */
+        private class ExtentsTask extends RecursiveTask<Extents> {
+            private static final long serialVersionUID = 1L;
+
+            private final int start, end;
+
+            ExtentsTask(int start, int end) {
+                this.start = start;
+                this.end = end;
+            }
+
+            @Override
+            protected Extents compute() {
+                if (end - start < binningThreshold) {
+                    Extents e = new Extents();
+                    for (int i = start; i < end; i++) {
+                        e.add(order[i]);
+                    }
+                    return e;
+                }
+                int mid = (start + end) >>> 1;
+                ExtentsTask left = new ExtentsTask(start, mid);
+                left.fork();
+                Extents e = new ExtentsTask(mid, end).compute();
+                e.add(left.join());
+                return e;
+            }
+        }
+
+        /**
+         * Bins the centroids of a large range by splitting it across the pool
+         */
+        private class BinTask extends RecursiveTask<Bins> {
+            private static final long serialVersionUID = 1L;
+
+            private final int start, end;
+            private final Extents ext;
+
+            BinTask(int start, int end, Extents ext) {
+                this.start = start;
+                this.end = end;
+                this.ext = ext;
+            }
+
+            @Override
+            protected Bins compute() {
+                if (end - start < binningThreshold) {
+                    Bins b = new Bins();
+                    for (int i = start; i < end; i++) {
+                        b.add(order[i], ext);
+                    }
+                    return b;
+                }
+                int mid = (start + end) >>> 1;
+                BinTask left = new BinTask(start, mid, ext);
+                left.fork();
+                Bins b = new BinTask(mid, end, ext).compute();
+                b.add(left.join());
+                return b;
+            }
+        }
+    }
+
+    /**
+     * A candidate split: shapes in bins below 'bin' on 'axis' go to the left
+     */
+    private record Split(int axis, int bin, double cost) {}
+
+    private static double[] emptyBox() {
+        return new double[] {
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+        };
+    }
+
+    private static void grow(double[] box, double[] src, int offset) {
+        grow(box, 0, src, offset);
+    }
+
+    private static void grow(double[] box, int boxOffset, double[] src, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            box[boxOffset + axis] = Math.min(box[boxOffset + axis], src[offset + axis]);
+            box[boxOffset + 3 + axis] = Math.max(box[boxOffset + 3 + axis], src[offset + 3 + axis]);
+        }
+    }
+
+    private static double area(double[] box, int offset) {
+        double dx = box[offset + 3] - box[offset];
+        double dy = box[offset + 4] - box[offset + 1];
+        double dz = box[offset + 5] - box[offset + 2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+        return 2 * (dx*dy + dy*dz + dz*dx);
+    }
+}
@@ -0,0 +1,158 @@
+package objects;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single node of a bounding volume hierarchy as produced by the BVHBuilder.
+ * Interior nodes have exactly two children, leaf nodes hold a short list of
+ * the shapes that fall within their bounds.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class BVHNode {
+    // Relative costs used when evaluating the surface area heuristic.  These
+    // are shared with the builder so that reported cost and build decisions agree
+    static final double TRAVERSAL_COST = 1.0;
+    static final double INTERSECTION_COST = 1.0;
+
+    private final BoundingBox bounds;
+    private final BVHNode left;
+    private final BVHNode right;
+    private final List<Shape> shapes;
+
+    /**
+     * Construct an interior node
+     * @param bounds The box enclosing both children
+     * @param left The first child node
+     * @param right The second child node
+     */
+    BVHNode(@NotNull BoundingBox bounds, @NotNull BVHNode left, @NotNull BVHNode right) {
+        this.bounds = bounds;
+        this.left = left;
+        this.right = right;
+        this.shapes = List.of();
+    }
+
+    /**
+     * Construct a leaf node
+     * @param bounds The box enclosing all the shapes in the leaf
+     * @param shapes The shapes held by this leaf
+     */
+    BVHNode(@NotNull BoundingBox bounds, @NotNull List<Shape> shapes) {
+        this.bounds = bounds;
+        this.left = null;
+        this.right = null;
+        this.shapes = shapes;
+    }
+
+    /**
+     * @return True if this node holds shapes rather than child nodes
+     */
+    public boolean isLeaf() {
+        return left == null;
+    }
+
+    /**
+     * @return The bounding box that encloses this node
+     */
+    public BoundingBox bounds() {
+        return bounds;
+    }
+
+    /**
+     * @return The first child of an interior node (null for leaves)
+     */
+    public BVHNode left() {
+        return left;
+    }
+
+    /**
+     * @return The second child of an interior node (null for leaves)
+     */
+    public BVHNode right() {
+        return right;
+    }
+
+    /**
+     * @return The shapes held in a leaf node (empty for interior nodes)
+     */
+    public List<Shape> shapes() {
+        return shapes;
+    }
+
+    /**
+     * @return The total number of nodes in the tree rooted at this node
+     */
+    public int nodeCount() {
+        return isLeaf() ? 1 : 1 + left.nodeCount() + right.nodeCount();
+    }
+
+    /**
+     * @return The number of shapes held beneath this node
+     */
+    public int shapeCount() {
+        return isLeaf() ? shapes.size() : left.shapeCount() + right.shapeCount();
+    }
+
+    /**
+     * @return The depth of the deepest leaf below this node (a lone leaf has depth 1)
+     */
+    public int depth() {
+        return isLeaf() ? 1 : 1 + Math.max(left.depth(), right.depth());
+    }
+
+    /**
+     * Computes the expected cost of tracing a ray through this tree according
+     * to the surface area heuristic.  Used to compare the quality of trees.
+     * @return The SAH cost of the tree rooted at this node
+     */
+    public double cost() {
+        if (isLeaf()) {
+            return shapes.size() * INTERSECTION_COST;
+        }
+
+        double area = bounds.surfaceArea();
+        if (!(area > 0) || Double.isInfinite(area)) {
+            return TRAVERSAL_COST + left.cost() + right.cost();
+        }
+        return TRAVERSAL_COST
+            + (left.bounds.surfaceArea() / area) * left.cost()
+            + (right.bounds.surfaceArea() / area) * right.cost();
+    }
+
+    /**
+     * Converts the tree below this node into a hierarchy of groups so it can
+     * be rendered by the existing Group intersection code.  Single shape leaves
+     * are returned as the shape itself rather than being wrapped in a group.
+     * @return The shape (or group) equivalent to this node
+     */
+    Shape toShape() {
+        if (isLeaf() && shapes.size() == 1) {
+            return shapes.get(0);
+        }
+
+        Group g = new Group();
+        for (Shape s: children()) {
+            g.addObject(s);
+        }
+        return g;
+    }
+
+    /**
+     * @return The direct children of this node converted to shapes
+     */
+    List<Shape> children() {
+        ArrayList<Shape> children = new ArrayList<>();
+        if (isLeaf()) {
+            children.addAll(shapes);
+        } else {
+            children.add(left.toShape());
+            children.add(right.toShape());
+        }
+        return children;
+    }
+}
@@ -1,17 +1,17 @@
 package objects;
 
-import features.Intersection;
+import features.FastRay;
 import features.Matrix;
 import features.Point;
 import features.Ray;
+import features.Tuple;
+import features.Vector;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import static features.Precompute.EPSILON;
-
 /**
  * Simple class which defines an Axis Aligned Bounding Box.  Used to provide
  * a simple intersection text for rays intersecting groups of objects.  Helps
@@ -103,6 +103,15 @@ public class BoundingBox {
         return contains(b.min()) && contains(b.max());
     }
 
+    /**
+     * @return true if the box has a finite extent on every axis.  Empty boxes
+     * and the boxes of unbounded shapes such as planes are not finite.
+     */
+    public boolean isFinite() {
+        return Double.isFinite(min.getX()) && Double.isFinite(min.getY()) && Double.isFinite(min.getZ())
+            && Double.isFinite(max.getX()) && Double.isFinite(max.getY()) && Double.isFinite(max.getZ());
+    }
+
     /**
      * Returns the new bounding box formed by applying the given matrix
      * transformation to this current bounding box.  Note that this method
@@ -113,6 +122,13 @@ public class BoundingBox {
      */
     @Contract(pure = true)
     public BoundingBox transform(@NotNull Matrix m) {
+        if (min.getX() > max.getX() || min.getY() > max.getY() || min.getZ() > max.getZ()) {
+            return new BoundingBox();
+        }
+        if (!isFinite()) {
+            return transformUnbounded(m);
+        }
+
         // Get all the eight points of the cube encompassed by the current box
         Point[] points = {
             new Point(min),
@@ -134,6 +150,42 @@ public class BoundingBox {
         return box;
     }
 
+    /**
+     * Transforms a box with one or more infinite sides.  Transforming the
+     * corners would multiply infinities by the zeros in the matrix and give
+     * NaNs, so instead each output axis is built up from the contribution of
+     * each input axis, skipping those the matrix doesn't mix in at all.
+     * @param m The transformation matrix we want to apply
+     * @return The transformed box
+     */
+    private BoundingBox transformUnbounded(@NotNull Matrix m) {
+        Tuple[] axes = {
+            m.multiply(new Vector(1, 0, 0)),
+            m.multiply(new Vector(0, 1, 0)),
+            m.multiply(new Vector(0, 0, 1))
+        };
+        double[] lo = {min.getX(), min.getY(), min.getZ()};
+        double[] hi = {max.getX(), max.getY(), max.getZ()};
+        Tuple origin = m.multiply(new Point(0, 0, 0));
+
+        double[] newMin = {origin.getX(), origin.getY(), origin.getZ()};
+        double[] newMax = {origin.getX(), origin.getY(), origin.getZ()};
+
+        for (int j = 0; j < 3; j++) {
+            double[] column = {axes[j].getX(), axes[j].getY(), axes[j].getZ()};
+            for (int i = 0; i < 3; i++) {
+                if (column[i] != 0) {
+                    double a = column[i] * lo[j];
+                    double b = column[i] * hi[j];
+                    newMin[i] += Math.min(a, b);
+                    newMax[i] += Math.max(a, b);
+                }
+            }
+        }
+
+        return new BoundingBox(new Point(newMin[0], newMin[1], newMin[2]), new Point(newMax[0], newMax[1], newMax[2]));
+    }
+
     /**
      * Determines whether the given ray will intersect this bounding box or not
      * @param r The ray to test
@@ -141,47 +193,57 @@ public class BoundingBox {
      */
     @Contract(pure = true)
     public boolean intersects(@NotNull Ray r) {
-        double[] xt, yt, zt;
+        return intersects(r.fast());
+    }
 
-        xt = checkAxis(r.getOrigin().getX(), r.getDirection().getX(), min.getX(), max.getX());
-        yt = checkAxis(r.getOrigin().getY(), r.getDirection().getY(), min.getY(), max.getY());
-        zt = checkAxis(r.getOrigin().getZ(), r.getDirection().getZ(), min.getZ(), max.getZ());
+    /**
+     * Determines whether the given ray will intersect this bounding box or not
+     * @param r The ray to test
+     * @return true if the ray intersects the box at any point, false otherwise
+     */
+    @Contract(pure = true)
+    public boolean intersects(@NotNull FastRay r) {
+        return entry(r, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY) != Double.POSITIVE_INFINITY;
+    }
 
-        double tmin = Math.max(xt[0], Math.max(yt[0], zt[0]));
-        double tmax = Math.min(xt[1], Math.min(yt[1], zt[1]));
+    /**
+     * Slab test using the ray's precomputed reciprocal direction.  The sign bits
+     * pick the near and far planes for each axis directly, so there's no
+     * division, no swapping and nothing allocated.
+     * @param r The ray to test
+     * @param tMin The nearest distance along the ray we are interested in
+     * @param tMax The furthest distance along the ray we are interested in
+     * @return The entry distance (clamped to tMin) or positive infinity on a miss
+     */
+    @Contract(pure = true)
+    private double entry(@NotNull FastRay r, double tMin, double tMax) {
+        Point nearX = r.signX == 0 ? min : max, farX = r.signX == 0 ? max : min;
+        Point nearY = r.signY == 0 ? min : max, farY = r.signY == 0 ? max : min;
+        Point nearZ = r.signZ == 0 ? min : max, farZ = r.signZ == 0 ? max : min;
 
-        return tmin <= tmax;
+        double enter = Math.max(
+            Math.max((nearX.getX() - r.ox) * r.invDx, (nearY.getY() - r.oy) * r.invDy),
+            Math.max((nearZ.getZ() - r.oz) * r.invDz, tMin));
+        double exit = Math.min(
+            Math.min((farX.getX() - r.ox) * r.invDx, (farY.getY() - r.oy) * r.invDy),
+            Math.min((farZ.getZ() - r.oz) * r.invDz, tMax));
+
+        return enter <= exit ? enter : Double.POSITIVE_INFINITY;
     }
 
     /**
-     * Determines the min/max values for intersect on an axis
-     * @param origin ray origin in the affected plane
-     * @param direction ray direction in the affected plane
-     * @param pmin The minimum extent of the bounding box
-     * @param pmax The maximum extent of the bounding box
-     * @return Array of two doubles representing tmin and tmax in the affected plane
+     * @return The surface area of the box (zero for an empty box).  Used by the
+     * BVH builder to evaluate the surface area heuristic.
      */
-    @Contract(pure = true)
-    private double[] checkAxis(double origin, double direction, double pmin, double pmax) {
-        double[] retVals = new double[2];
-        double tmin_numerator = (pmin - origin);
-        double tmax_numerator = (pmax - origin);
-
-        if (Math.abs(direction) >= EPSILON) {
-            retVals[0] = tmin_numerator / direction;
-            retVals[1] = tmax_numerator / direction;
-        } else {
-            retVals[0] = tmin_numerator * Double.POSITIVE_INFINITY;
-            retVals[1] = tmax_numerator * Double.POSITIVE_INFINITY;
-        }
+    public double surfaceArea() {
+        double dx = max.getX() - min.getX();
+        double dy = max.getY() - min.getY();
+        double dz = max.getZ() - min.getZ();
 
-        if (retVals[0] > retVals[1]) {
-            double tmp = retVals[0];
-            retVals[0] = retVals[1];
-            retVals[1] = tmp;
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
         }
-
-        return retVals;
+        return 2 * (dx*dy + dy*dz + dz*dx);
     }
 
     /**
@@ -18,6 +18,8 @@ import static features.Precompute.EPSILON;
  * @version August 2nd, 2022
  */
 public class Cone extends Shape {
+    private static final long serialVersionUID = 1L;
+
     private double miny, maxy;  // Extents for cone height
     private boolean closed;
 
@@ -41,6 +43,7 @@ public class Cone extends Shape {
         } else {
             maxy = value;
         }
+        boundsChanged();
     }
 
     /**
@@ -63,6 +66,7 @@ public class Cone extends Shape {
         } else {
             miny = value;
         }
+        boundsChanged();
     }
 
     /**
@@ -85,6 +89,7 @@ public class Cone extends Shape {
      */
     public void closed(boolean value) {
         closed = value;
+        modified();
     }
 
     /**
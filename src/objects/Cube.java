@@ -20,6 +20,8 @@ import static features.Precompute.EPSILON;
  * @version August 1st, 2022
  */
 public class Cube extends Shape {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Get the points at which a Ray intersects a shape
      * @param ray The ray we wish to test
@@ -19,6 +19,8 @@ import static features.Precompute.EPSILON;
  * @version August 1st, 2022
  */
 public class Cylinder extends Shape {
+    private static final long serialVersionUID = 1L;
+
     private double miny, maxy;  // Extents for cylinder height
     private boolean closed;
 
@@ -42,6 +44,7 @@ public class Cylinder extends Shape {
         } else {
             maxy = value;
         }
+        boundsChanged();
     }
 
     /**
@@ -64,6 +67,7 @@ public class Cylinder extends Shape {
         } else {
             miny = value;
         }
+        boundsChanged();
     }
 
     /**
@@ -86,6 +90,7 @@ public class Cylinder extends Shape {
      */
     public void closed(boolean value) {
         closed = value;
+        modified();
     }
 
     /**
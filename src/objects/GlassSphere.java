@@ -10,6 +10,8 @@ import features.Material;
  * @version July 23rd, 2022
  */
 public class GlassSphere extends Sphere {
+    private static final long serialVersionUID = 1L;
+
     public GlassSphere() {
         super();
         Material m = new Material();
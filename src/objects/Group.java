@@ -3,6 +3,7 @@ package objects;
 import features.Intersection;
 import features.Point;
 import features.Ray;
+import features.RayPacket;
 import features.Vector;
 import org.apache.logging.log4j.core.config.InMemoryAdvertiser;
 import org.jetbrains.annotations.NotNull;
@@ -18,11 +19,22 @@ import static features.Precompute.EPSILON;
  * A group itself has no renderable surface, although it does have a position
  * and transformation in 3D space.
  *
+ * Children without finite bounds (such as planes) are kept apart from the
+ * rest: they're left out of the group's own bounding box and out of any
+ * hierarchy built over the group, and are simply tested against every ray.
+ * This keeps a floor plane from stretching the bounds of everything above it.
+ *
  * @author Mark Edwards
  * @version August 2nd, 2022
  */
 public class Group extends Shape {
+    private static final long serialVersionUID = 1L;
+
     protected ArrayList<Shape> contents;
+    // Caches, rebuilt when needed (or when the group is baked) after the
+    // group has been deserialised
+    private transient Partition partition;
+    private transient LinearBVH linearBVH;
 
     public Group() {
         super();
@@ -59,6 +71,123 @@ public class Group extends Shape {
         return s;
     }
 
+    /**
+     * Rebuilds the contents of this group into a bounding volume hierarchy
+     * on the calling thread.  See buildBVH(BVHBuilder).
+     */
+    public void buildBVH() {
+        buildBVH(new BVHBuilder());
+    }
+
+    /**
+     * Rebuilds the contents of this group into a bounding volume hierarchy of
+     * nested groups using the supplied builder.  The children keep their own
+     * transforms, so the group renders exactly as before, but rays can now skip
+     * whole branches of the tree instead of testing every child.
+     * @param builder The builder to use (serial or parallel)
+     */
+    public void buildBVH(@NotNull BVHBuilder builder) {
+        Partition p = partition();
+        if (p.bounded.size() <= BVHBuilder.MAX_LEAF_SIZE) {
+            return;
+        }
+
+        ArrayList<Shape> shapes = new ArrayList<>(p.bounded);
+        BVHNode root = builder.build(shapes);
+
+        // Unbounded children stay where they are, directly in this group
+        for (Shape s: shapes) {
+            s.clearParent();
+        }
+        contents.clear();
+        contents.addAll(p.unbounded);
+
+        for (Shape s: root.children()) {
+            addObject(s);
+        }
+        invalidateBounds();
+    }
+
+    /**
+     * Builds a flattened bounding volume hierarchy over the contents of this
+     * group on the calling thread.  See buildLinearBVH(BVHBuilder).
+     */
+    public void buildLinearBVH() {
+        buildLinearBVH(new BVHBuilder());
+    }
+
+    /**
+     * Builds a flattened bounding volume hierarchy over the contents of this
+     * group.  Unlike buildBVH(), the contents are left exactly as they are and
+     * the hierarchy is kept alongside them in compact arrays.  Any change to
+     * the contents (or to the transform of anything in them) discards the
+     * hierarchy, so it should be built once the group is complete.  Unbounded
+     * children are left out of the hierarchy.
+     * @param builder The builder to use (serial or parallel)
+     */
+    public void buildLinearBVH(@NotNull BVHBuilder builder) {
+        Partition p = partition();
+        if (p.bounded.isEmpty()) {
+            linearBVH = null;
+            return;
+        }
+        linearBVH = new LinearBVH(builder.build(p.bounded));
+    }
+
+    /**
+     * @return The flattened hierarchy for this group, or null if there isn't one
+     */
+    public LinearBVH linearBVH() {
+        return linearBVH;
+    }
+
+    /**
+     * Discards the cached bounds (and any flattened hierarchy) of this group
+     * and of every group above it.
+     */
+    void invalidateBounds() {
+        partition = null;
+        linearBVH = null;
+        boundsChanged();
+    }
+
+    /**
+     * Bakes this group and everything inside it.  Groups without a flattened
+     * hierarchy get one first, if they hold enough shapes for it to help.
+     * @param builder The builder to use for any hierarchies
+     */
+    public void bake(@NotNull BVHBuilder builder) {
+        for (Shape s: contents) {
+            if (s instanceof Group g) {
+                g.bake(builder);
+            } else {
+                s.bake();
+            }
+        }
+
+        if (linearBVH == null && partition().bounded.size() > BVHBuilder.MAX_LEAF_SIZE) {
+            buildLinearBVH(builder);
+        }
+        super.bake();
+    }
+
+    @Override
+    public void bake() {
+        bake(new BVHBuilder());
+    }
+
+    /**
+     * Discards the cached world transforms of this group and of everything
+     * inside it, since they all depend on this group's transform.
+     */
+    @Override
+    void worldTransformChanged() {
+        super.worldTransformChanged();
+        for (Shape s: contents) {
+            s.worldTransformChanged();
+        }
+    }
+
     /**
      * Return list of intersections between a ray and this object
      * @param ray The ray we wish to test
@@ -66,17 +195,57 @@ public class Group extends Shape {
      */
     @Override
     protected ArrayList<Intersection> local_intersect(@NotNull Ray ray) {
-        ArrayList<Intersection> xs = new ArrayList<>();
+        Partition p = partition();
+        LinearBVH bvh = linearBVH;
+        ArrayList<Intersection> xs;
 
-        if (bounds().intersects(ray)) {
-            for (Shape s : contents) {
-                xs.addAll(s.intersect(ray));
+        if (bvh != null) {
+            xs = bvh.intersect(ray);
+        } else {
+            xs = new ArrayList<>();
+            if (p.bounds.intersects(ray)) {
+                for (Shape s : p.bounded) {
+                    xs.addAll(s.intersect(ray));
+                }
             }
-            Collections.sort(xs);
         }
+
+        for (Shape s : p.unbounded) {
+            xs.addAll(s.intersect(ray));
+        }
+        Collections.sort(xs);
         return xs;
     }
 
+    /**
+     * Intersects a packet of rays with this group.  With a flattened BVH the
+     * whole packet walks the hierarchy together, otherwise each child is
+     * handed the packet in turn.
+     * @param packet The rays we wish to test
+     */
+    @Override
+    protected void local_intersect(@NotNull RayPacket packet) {
+        Partition p = partition();
+        LinearBVH bvh = linearBVH;
+
+        if (bvh != null) {
+            bvh.intersect(packet);
+        } else {
+            for (int i = 0; i < packet.size(); i++) {
+                if (p.bounds.intersects(packet.ray(i))) {
+                    for (Shape s : p.bounded) {
+                        s.intersect(packet);
+                    }
+                    break;
+                }
+            }
+        }
+
+        for (Shape s : p.unbounded) {
+            s.intersect(packet);
+        }
+    }
+
     /**
      * Returns the normal at the given point
      * @param p The point we wish to get the normal at (in object space)
@@ -104,13 +273,63 @@ public class Group extends Shape {
 
     @Override
     public BoundingBox bounds() {
-        BoundingBox box = new BoundingBox();
+        Partition p = partition();
+        BoundingBox box = new BoundingBox(p.bounds.min(), p.bounds.max());
 
-        for (Shape s: contents) {
-            BoundingBox sbox = s.parentSpaceBounds();
-            box.add(sbox);
+        for (Shape s: p.unbounded) {
+            box.add(s.parentSpaceBounds());
         }
-
         return box;
     }
+
+    /**
+     * @return true if none of the group's children are unbounded
+     */
+    @Override
+    public boolean isBounded() {
+        return partition().unbounded.isEmpty();
+    }
+
+    /**
+     * @return The children of this group which have no finite bounds
+     */
+    public ArrayList<Shape> unboundedContents() {
+        return new ArrayList<>(partition().unbounded);
+    }
+
+    /**
+     * Sorts the children into bounded and unbounded, and works out the bounds
+     * of the bounded ones.  This is only redone if something has changed since
+     * it was last asked for.
+     * @return The (cached) partition of the group's children
+     */
+    private Partition partition() {
+        Partition p = partition;
+
+        if (p == null) {
+            BoundingBox box = new BoundingBox();
+            ArrayList<Shape> bounded = new ArrayList<>();
+            ArrayList<Shape> unbounded = new ArrayList<>();
+
+            for (Shape s: contents) {
+                if (s.isBounded()) {
+                    box.add(s.parentSpaceBounds());
+                    bounded.add(s);
+                } else {
+                    unbounded.add(s);
+                }
+            }
+            p = new Partition(box, bounded, unbounded);
+            partition = p;
+        }
+
+        return p;
+    }
+
+    /**
+     * The group's children split by whether they have finite bounds, along with
+     * the bounds of the bounded ones.  Shared between callers, so none of it
+     * may be modified.
+     */
+    private record Partition(BoundingBox bounds, ArrayList<Shape> bounded, ArrayList<Shape> unbounded) {}
 }
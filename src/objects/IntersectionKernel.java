@@ -0,0 +1,82 @@
+package objects;
+
+import features.FastRay;
+import features.RayPacket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The inner loops of the acceleration structures: one ray against a block of
+ * triangles, and one box against a packet of rays.  Both work on structure of
+ * arrays data so that an implementation can process several lanes at once.
+ *
+ * Two implementations exist.  The vector one uses the (incubating) Java Vector
+ * API and is used whenever the jdk.incubator.vector module has been added to
+ * the JVM (run with --add-modules jdk.incubator.vector).  Otherwise, or if the
+ * system property raytracer.simd is set to false, the plain scalar one is used.
+ * Both give identical results.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+interface IntersectionKernel {
+    /**
+     * @return The number of values the kernel processes at once.  Triangle
+     *         blocks are padded out to a multiple of this.
+     */
+    int lanes();
+
+    /**
+     * Intersects a ray with every triangle in a block (Moller-Trumbore)
+     * @param block The triangles to test
+     * @param r The ray, in the space of the triangles
+     * @param t Receives the distance to each triangle that is hit
+     * @return A mask with bit i set if triangle i is hit
+     */
+    long triangles(@NotNull TriangleBlock block, @NotNull FastRay r, double @NotNull [] t);
+
+    /**
+     * Slab test of every active ray in a packet against a box held as six
+     * values (min x, y, z then max x, y, z) in an array.
+     * @param box The array holding the box
+     * @param offset Index of the box's min x value
+     * @param p The packet of rays
+     * @param active Mask of the rays we are interested in
+     * @return The mask of active rays which pass through the box
+     */
+    long boxes(float @NotNull [] box, int offset, @NotNull RayPacket p, long active);
+
+    /**
+     * @return The kernel in use for this JVM
+     */
+    static IntersectionKernel get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Lazily picks the implementation the first time a kernel is asked for
+     */
+    final class Holder {
+        private static final Logger log = LogManager.getLogger(IntersectionKernel.class);
+        private static final IntersectionKernel INSTANCE = create();
+
+        private Holder() {}
+
+        private static IntersectionKernel create() {
+            if (Boolean.parseBoolean(System.getProperty("raytracer.simd", "true"))) {
+                try {
+                    // Loaded by name, so that a JVM without the vector module
+                    // never links against it
+                    IntersectionKernel k = (IntersectionKernel) Class.forName("objects.VectorIntersectionKernel")
+                        .getDeclaredConstructor().newInstance();
+                    log.info("Using vector intersection kernel with "+ k.lanes() +" lanes");
+                    return k;
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    log.info("Vector API not available, using scalar intersection kernel");
+                }
+            }
+            return new ScalarIntersectionKernel();
+        }
+    }
+}
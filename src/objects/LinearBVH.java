@@ -0,0 +1,379 @@
+package objects;
+
+import features.Intersection;
+import features.FastRay;
+import features.Point;
+import features.Ray;
+import features.RayPacket;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * A bounding volume hierarchy flattened into primitive arrays.  Nodes are
+ * stored in depth-first order, so the first child of an interior node always
+ * immediately follows it and only the index of the second child needs to be
+ * kept.  Each node takes six floats for its bounds and two ints for its links:
+ *
+ *  Interior node: [index of second child, 0]
+ *  Leaf node:     [index of first shape, number of shapes]
+ *
+ * which comes to 32 bytes a node, compared to several hundred for a tree of
+ * Group/BoundingBox/Point objects.  The bounds are rounded outwards when they
+ * are narrowed to floats, so a box can only ever grow, never miss a shape.
+ *
+ * Leaves made up entirely of untransformed triangles also get a TriangleBlock,
+ * so that a ray is tested against all of the leaf's triangles in one go.
+ *
+ * Traversals keep their pending nodes on the thread's TraversalStack, so
+ * walking the hierarchy allocates nothing beyond the intersections found.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+public class LinearBVH {
+    // Bytes used per node (six floats plus two ints)
+    private static final int NODE_BYTES = 6 * Float.BYTES + 2 * Integer.BYTES;
+    // Packets with fewer active rays than this split into single rays
+    private static final int MIN_PACKET_RAYS = 4;
+
+    private final float[] bounds;
+    private final int[] links;
+    private final Shape[] shapes;
+    // Indexed by node; null for interior nodes and leaves that aren't all triangles
+    private final TriangleBlock[] blocks;
+    private final IntersectionKernel kernel;
+
+    /**
+     * Flattens a tree produced by the BVHBuilder
+     * @param root The root node of the tree
+     */
+    public LinearBVH(@NotNull BVHNode root) {
+        int nodeCount = root.nodeCount();
+        bounds = new float[nodeCount * 6];
+        links = new int[nodeCount * 2];
+        shapes = new Shape[root.shapeCount()];
+        blocks = new TriangleBlock[nodeCount];
+        kernel = IntersectionKernel.get();
+
+        flatten(root, 0, 0);
+    }
+
+    /**
+     * Writes the given node (and its subtree) into the arrays
+     * @param node The node to write
+     * @param index The node slot to write it into
+     * @param shapeIndex The next free slot in the shape array
+     * @return The next free slot in the shape array once the subtree is written
+     */
+    private int flatten(BVHNode node, int index, int shapeIndex) {
+        Point min = node.bounds().min();
+        Point max = node.bounds().max();
+        bounds[index*6] = roundDown(min.getX());
+        bounds[index*6+1] = roundDown(min.getY());
+        bounds[index*6+2] = roundDown(min.getZ());
+        bounds[index*6+3] = roundUp(max.getX());
+        bounds[index*6+4] = roundUp(max.getY());
+        bounds[index*6+5] = roundUp(max.getZ());
+
+        if (node.isLeaf()) {
+            links[index*2] = shapeIndex;
+            links[index*2+1] = node.shapes().size();
+            blocks[index] = TriangleBlock.of(node.shapes(), kernel.lanes());
+            for (Shape s: node.shapes()) {
+                shapes[shapeIndex++] = s;
+            }
+            return shapeIndex;
+        }
+
+        int second = index + 1 + node.left().nodeCount();
+        links[index*2] = second;
+        links[index*2+1] = 0;
+        shapeIndex = flatten(node.left(), index + 1, shapeIndex);
+        return flatten(node.right(), second, shapeIndex);
+    }
+
+    private static float roundDown(double v) {
+        float f = (float) v;
+        return f > v ? Math.nextDown(f) : f;
+    }
+
+    private static float roundUp(double v) {
+        float f = (float) v;
+        return f < v ? Math.nextUp(f) : f;
+    }
+
+    /**
+     * @return The number of nodes in the hierarchy
+     */
+    public int nodeCount() {
+        return links.length / 2;
+    }
+
+    /**
+     * @return The number of shapes held in the hierarchy
+     */
+    public int shapeCount() {
+        return shapes.length;
+    }
+
+    /**
+     * @return The approximate number of bytes taken by the node arrays
+     */
+    public long nodeBytes() {
+        return (long) nodeCount() * NODE_BYTES;
+    }
+
+    /**
+     * @return The number of leaves whose triangles are held in a TriangleBlock
+     */
+    public int blockCount() {
+        int count = 0;
+        for (TriangleBlock b: blocks) {
+            if (b != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersects a ray with every shape in a leaf
+     * @param node The leaf node
+     * @param ray The ray we wish to test
+     * @param xs The list to add intersections to
+     */
+    private void intersectLeaf(int node, @NotNull Ray ray, @NotNull ArrayList<Intersection> xs) {
+        if (blocks[node] != null) {
+            blocks[node].intersect(kernel, ray.fast(), xs);
+            return;
+        }
+
+        int first = links[node*2];
+        for (int i = first; i < first + links[node*2+1]; i++) {
+            xs.addAll(shapes[i].intersect(ray));
+        }
+    }
+
+    /**
+     * Finds every intersection between a ray and the shapes in the hierarchy.
+     * The ray should be in the same space as the shapes' parent group.
+     * @param ray The ray we wish to test
+     * @return The intersections, sorted into increasing values of t
+     */
+    public ArrayList<Intersection> intersect(@NotNull Ray ray) {
+        ArrayList<Intersection> xs = new ArrayList<>();
+        intersect(ray, 0, xs);
+        Collections.sort(xs);
+        return xs;
+    }
+
+    /**
+     * Walks the subtree rooted at the given node, collecting every
+     * intersection.  Both children of a node are tested together and the one
+     * the ray enters first is visited first, so intersections are found in
+     * roughly increasing order and the list costs little to sort.
+     * @param ray The ray we wish to test
+     * @param root The node at which to start
+     * @param xs The list to add intersections to
+     */
+    private void intersect(@NotNull Ray ray, int root, @NotNull ArrayList<Intersection> xs) {
+        FastRay fr = ray.fast();
+        if (fr.entry(bounds, root*6, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY) {
+            return;
+        }
+
+        TraversalStack stack = TraversalStack.get();
+        int base = stack.top;
+        int node = root;
+
+        try {
+            while (true) {
+                if (links[node*2+1] > 0) {
+                    intersectLeaf(node, ray, xs);
+                } else {
+                    int a = node + 1;
+                    int b = links[node*2];
+                    double ta = fr.entry(bounds, a*6, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+                    double tb = fr.entry(bounds, b*6, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+                    if (tb < ta) {
+                        int n = a; a = b; b = n;
+                        double t = ta; ta = tb; tb = t;
+                    }
+
+                    // Visit the nearer child next and come back for the other
+                    if (ta != Double.POSITIVE_INFINITY) {
+                        if (tb != Double.POSITIVE_INFINITY) {
+                            stack.push(b);
+                        }
+                        node = a;
+                        continue;
+                    }
+                }
+
+                if (stack.top == base) {
+                    break;
+                }
+                node = stack.nodes[--stack.top];
+            }
+        } finally {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Finds every intersection for a packet of rays.  The packet walks the tree
+     * as one: each node's bounds are tested once for all the rays still active
+     * and the node is only visited if at least one of them hits it.  Once the
+     * packet has thinned out to a handful of rays it's no longer worth keeping
+     * them together, so each remaining ray finishes that subtree on its own.
+     * Intersections are appended (unsorted) to each ray's list in the packet.
+     * @param packet The rays we wish to test, in the space of the shapes' parent
+     */
+    public void intersect(@NotNull RayPacket packet) {
+        TraversalStack stack = TraversalStack.get();
+        int base = stack.top;
+        int node = 0;
+        long active = packet.allRays();
+
+        try {
+            while (true) {
+                long mask = kernel.boxes(bounds, node*6, packet, active);
+
+                if (mask != 0) {
+                    if (Long.bitCount(mask) < MIN_PACKET_RAYS) {
+                        for (long m = mask; m != 0; m &= m - 1) {
+                            int r = Long.numberOfTrailingZeros(m);
+                            intersect(packet.ray(r), node, packet.hits(r));
+                        }
+                    } else {
+                        if (links[node*2+1] > 0) {
+                            for (long m = mask; m != 0; m &= m - 1) {
+                                int r = Long.numberOfTrailingZeros(m);
+                                intersectLeaf(node, packet.ray(r), packet.hits(r));
+                            }
+                        } else {
+                            stack.push(links[node*2], mask);
+                            node++;
+                            active = mask;
+                            continue;
+                        }
+                    }
+                }
+
+                if (stack.top == base) {
+                    break;
+                }
+                node = stack.nodes[--stack.top];
+                active = stack.masks[stack.top];
+            }
+        } finally {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Finds the visible hit of a ray (the intersection with the lowest
+     * non-negative t).  Children are visited nearest first, and once a hit has
+     * been found any node the ray enters beyond it is skipped entirely, so this
+     * usually touches far fewer nodes than intersect().
+     * @param ray The ray we wish to test
+     * @return The closest hit, or null if nothing is hit
+     */
+    public @Nullable Intersection hit(@NotNull Ray ray) {
+        return closest(ray, Double.POSITIVE_INFINITY, false);
+    }
+
+    /**
+     * Determines whether anything casting a shadow lies along a ray, closer
+     * than a given distance.  Used for shadow rays: the walk stops at the
+     * first such hit, and never enters a node beyond the distance.
+     * @param ray The ray we wish to test
+     * @param distance How far along the ray to look (the distance to the light)
+     * @return True if the ray hits a shadow casting shape within the distance
+     */
+    public boolean occluded(@NotNull Ray ray, double distance) {
+        return closest(ray, distance, true) != null;
+    }
+
+    /**
+     * Walks the hierarchy nearest child first, looking for the closest hit
+     * before a given distance
+     * @param ray The ray we wish to test
+     * @param tMax How far along the ray to look
+     * @param shadows True to take the first hit on a shadow casting shape,
+     *                rather than the closest hit on anything
+     * @return The hit, or null if there's none
+     */
+    private @Nullable Intersection closest(@NotNull Ray ray, double tMax, boolean shadows) {
+        FastRay fr = ray.fast();
+        Intersection closest = null;
+
+        if (fr.entry(bounds, 0, 0, tMax) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        // Pending nodes are stacked alongside the distance at which the ray
+        // enters them, so they can be dropped if a closer hit turns up first
+        TraversalStack stack = TraversalStack.get();
+        int base = stack.top;
+        int node = 0;
+        ArrayList<Intersection> xs = new ArrayList<>();
+
+        try {
+            while (true) {
+                if (links[node*2+1] > 0) {
+                    xs.clear();
+                    intersectLeaf(node, ray, xs);
+                    for (Intersection x: xs) {
+                        if (x.getTime() >= 0 && x.getTime() < tMax && (!shadows || x.getShape().castsShadow())) {
+                            if (shadows) {
+                                return x;
+                            }
+                            closest = x;
+                            tMax = x.getTime();
+                        }
+                    }
+                } else {
+                    int a = node + 1;
+                    int b = links[node*2];
+                    double ta = fr.entry(bounds, a*6, 0, tMax);
+                    double tb = fr.entry(bounds, b*6, 0, tMax);
+
+                    if (tb < ta) {
+                        int n = a; a = b; b = n;
+                        double t = ta; ta = tb; tb = t;
+                    }
+
+                    if (ta != Double.POSITIVE_INFINITY) {
+                        if (tb != Double.POSITIVE_INFINITY) {
+                            stack.push(b, tb);
+                        }
+                        node = a;
+                        continue;
+                    }
+                }
+
+                // Pop the next node that could still hold something closer
+                node = -1;
+                while (stack.top > base) {
+                    stack.top--;
+                    if (stack.entries[stack.top] <= tMax) {
+                        node = stack.nodes[stack.top];
+                        break;
+                    }
+                }
+                if (node < 0) {
+                    break;
+                }
+            }
+        } finally {
+            stack.top = base;
+        }
+
+        return closest;
+    }
+}
@@ -18,6 +18,7 @@ import static features.Precompute.EPSILON;
  * @version July 18th, 2022
  */
 public class Plane extends Shape {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Return list of intersections between a ray and this object
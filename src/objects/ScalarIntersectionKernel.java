@@ -0,0 +1,81 @@
+package objects;
+
+import features.FastRay;
+import features.RayPacket;
+import org.jetbrains.annotations.NotNull;
+
+import static features.Precompute.EPSILON;
+
+/**
+ * Plain Java implementation of the intersection kernels, processing one value
+ * at a time.  Used when the Vector API isn't available.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class ScalarIntersectionKernel implements IntersectionKernel {
+    @Override
+    public int lanes() {
+        return 1;
+    }
+
+    @Override
+    public long triangles(@NotNull TriangleBlock b, @NotNull FastRay r, double @NotNull [] t) {
+        long hits = 0;
+
+        for (int i = 0; i < b.size(); i++) {
+            // Same steps as Triangle.local_intersect, without the temporary vectors
+            double cx = r.dy * b.e1z[i] - r.dz * b.e1y[i];
+            double cy = r.dz * b.e1x[i] - r.dx * b.e1z[i];
+            double cz = r.dx * b.e1y[i] - r.dy * b.e1x[i];
+            double det = cx * b.e0x[i] + cy * b.e0y[i] + cz * b.e0z[i];
+
+            if (Math.abs(det) < EPSILON) {
+                continue;
+            }
+
+            double f = 1 / det;
+            double sx = r.ox - b.p0x[i], sy = r.oy - b.p0y[i], sz = r.oz - b.p0z[i];
+            double u = f * (sx * cx + sy * cy + sz * cz);
+
+            if (u < 0 || u > 1) {
+                continue;
+            }
+
+            double qx = sy * b.e0z[i] - sz * b.e0y[i];
+            double qy = sz * b.e0x[i] - sx * b.e0z[i];
+            double qz = sx * b.e0y[i] - sy * b.e0x[i];
+            double v = f * (r.dx * qx + r.dy * qy + r.dz * qz);
+
+            if (v < 0 || (u+v) > 1) {
+                continue;
+            }
+
+            t[i] = f * (b.e1x[i] * qx + b.e1y[i] * qy + b.e1z[i] * qz);
+            hits |= 1L << i;
+        }
+        return hits;
+    }
+
+    @Override
+    public long boxes(float @NotNull [] box, int offset, @NotNull RayPacket p, long active) {
+        float minX = box[offset], minY = box[offset+1], minZ = box[offset+2];
+        float maxX = box[offset+3], maxY = box[offset+4], maxZ = box[offset+5];
+        long hit = 0;
+
+        for (long m = active; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            double tx0 = (minX - p.ox[i]) * p.invDx[i], tx1 = (maxX - p.ox[i]) * p.invDx[i];
+            double ty0 = (minY - p.oy[i]) * p.invDy[i], ty1 = (maxY - p.oy[i]) * p.invDy[i];
+            double tz0 = (minZ - p.oz[i]) * p.invDz[i], tz1 = (maxZ - p.oz[i]) * p.invDz[i];
+
+            double tmin = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.min(tz0, tz1));
+            double tmax = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.max(tz0, tz1));
+
+            if (tmin <= tmax) {
+                hit |= 1L << i;
+            }
+        }
+        return hit;
+    }
+}
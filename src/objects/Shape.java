@@ -6,6 +6,10 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Objects;
 
@@ -13,22 +17,32 @@ import java.util.Objects;
  * Abstract class for all shapes within the world.  All shapes should
  * extend this class.
  *
+ * Shapes are serialisable, so that a world can be sent to another JVM.  A
+ * shape's material travels with it and is added to the MaterialTable at the
+ * other end, so shapes sharing a material there share its entry too.
+ *
  * @author Mark Edwards
  * @version July 14th, 2022
  */
-public abstract class Shape {
+public abstract class Shape implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final Logger log = LogManager.getLogger(Shape.class);
     private Matrix transform;
-    private Material material;
+    private transient Material material;
     private boolean shadowCaster;
     private Group parent;
+    // Composite world space conversions, worked out when first needed
+    private transient WorldTransforms world;
+    // Goes up whenever this shape, or anything inside it, is changed
+    private transient long modifications;
 
     /**
      * Constructor: generates a unique ID for each generated shape
      */
     public Shape() {
         transform = Matrix.identity(4);
-        material = new Material();
+        material = MaterialTable.DEFAULT;
         shadowCaster = true;
         parent = null;
     }
@@ -54,7 +68,9 @@ public abstract class Shape {
             unparent();
         }
         parent = parentGroup;
+        worldTransformChanged();
         parent.contents.add(this);
+        parent.invalidateBounds();
     }
 
     /**
@@ -63,16 +79,60 @@ public abstract class Shape {
     protected void unparent() {
         if (parent != null) {
             parent.contents.remove(this);
+            parent.invalidateBounds();
             parent = null;
+            worldTransformChanged();
+        }
+    }
+
+    /**
+     * Forget the parent group without touching the group's contents.  Used
+     * when a group rebuilds its own contents wholesale.
+     */
+    void clearParent() {
+        parent = null;
+        worldTransformChanged();
+    }
+
+    /**
+     * Must be called by subclasses whenever something changes the shape's
+     * bounds, so that any cached bounds in the enclosing groups are discarded.
+     */
+    protected void boundsChanged() {
+        modifications++;
+        if (parent != null) {
+            parent.invalidateBounds();
         }
     }
 
+    /**
+     * Counts a change to this shape that leaves its bounds alone, here and in
+     * every group above it.  Subclasses call this for changes to their own
+     * geometry that don't move their bounds.
+     */
+    protected void modified() {
+        for (Shape s = this; s != null; s = s.parent) {
+            s.modifications++;
+        }
+    }
+
+    /**
+     * @return A count which goes up whenever this shape or anything inside it
+     *         is changed (its transform, material, shadow casting, geometry or
+     *         contents), so that compiled scenes can tell when they're stale
+     */
+    public long modificationCount() {
+        return modifications;
+    }
+
     /**
      * Set the transform matrix for this shape to the supplied Matrix
      * @param m The transformation matrix we wish to apply
      */
     public void setTransform(@NotNull Matrix m) {
         transform = new Matrix(m);
+        worldTransformChanged();
+        boundsChanged();
     }
 
     /**
@@ -90,12 +150,21 @@ public abstract class Shape {
         return new Material(material);
     }
 
+    /**
+     * @return The shape's entry in the MaterialTable, which is shared by every
+     * shape with an equal material and must not be modified
+     */
+    public Material sharedMaterial() {
+        return material;
+    }
+
     /**
      * Updates the shape with a new material
      * @param m The material to assign
      */
     public void setMaterial(@NotNull Material m) {
-        material = new Material(m);
+        material = MaterialTable.intern(m);
+        modified();
     }
 
     /**
@@ -104,13 +173,7 @@ public abstract class Shape {
      * @return The point in object space
      */
     public Point worldToObject(@NotNull Point p) {
-        Point op = new Point(p);
-
-        if (parent != null) {
-            op = parent.worldToObject(p);
-        }
-
-        return transform.inverse().multiply(op).toPoint();
+        return world().toObject.multiply(p).toPoint();
     }
 
     /**
@@ -119,17 +182,53 @@ public abstract class Shape {
      * @return The normal converted to world space
      */
     public Vector normalToWorld(@NotNull Vector normal) {
-        Vector n = transform.inverse()
-                    .transpose()
+        return world().normalToWorld
                     .multiply(normal)
                     .toVector()
                     .normalize();
+    }
 
-        if (parent != null) {
-            n = parent.normalToWorld(n);
+    /**
+     * Gets the composite matrices taking world space to this shape's object
+     * space (the inverse transforms of the shape and all of its parents,
+     * multiplied together) and normals back again (the transpose of that).
+     * These are worked out once and kept until the transform of the shape or
+     * one of its parents changes, or the shape is moved to another group, so
+     * a shape deep inside nested groups costs no more to shade than one at the
+     * top level.
+     * @return The cached world transforms for this shape
+     */
+    private WorldTransforms world() {
+        WorldTransforms w = world;
+
+        if (w == null) {
+            Matrix toObject = transform.inverse();
+            Shape p = parent;
+            if (p != null) {
+                toObject = toObject.multiply(p.world().toObject);
+            }
+            w = new WorldTransforms(toObject, toObject.transpose());
+            world = w;
         }
+        return w;
+    }
+
+    /**
+     * Works out everything the shape caches lazily (its inverse transform and
+     * world transforms) ahead of time, so that a render reading the shape from
+     * several threads never has to fill in a cache.  Called when a World is
+     * compiled into a RenderScene.
+     */
+    public void bake() {
+        world();
+    }
 
-        return n;
+    /**
+     * Discards the cached world transforms of this shape.  Groups also pass
+     * this on to their contents.
+     */
+    void worldTransformChanged() {
+        world = null;
     }
 
     /**
@@ -147,6 +246,27 @@ public abstract class Shape {
         return local_intersect(local_ray);
     }
 
+    /**
+     * Packet version of intersect().  Every ray in the packet is tested against
+     * the shape and any intersections are appended to that ray's list.
+     * @param packet The rays we wish to test for intersection
+     */
+    public void intersect(@NotNull RayPacket packet) {
+        local_intersect(packet.transform(this.transform.inverse()));
+    }
+
+    /**
+     * Packet version of local_intersect.  By default each ray is just tested on
+     * its own; shapes which can share work between the rays (such as groups
+     * with a BVH) override this.
+     * @param packet The rays we wish to test, already in object space
+     */
+    protected void local_intersect(@NotNull RayPacket packet) {
+        for (int i = 0; i < packet.size(); i++) {
+            packet.hits(i).addAll(local_intersect(packet.ray(i)));
+        }
+    }
+
     /**
      * This abstract method must be provided by each individual subclass of shape
      * to determine the points at which a ray intersects the shape.
@@ -197,6 +317,7 @@ public abstract class Shape {
      */
     public void castsShadow(boolean s) {
         shadowCaster = s;
+        modified();
     }
 
     /**
@@ -205,6 +326,15 @@ public abstract class Shape {
      */
     public abstract BoundingBox bounds();
 
+    /**
+     * @return true if the shape has finite bounds.  Unbounded shapes (planes,
+     * open ended cylinders and cones) can't usefully be placed in a bounding
+     * volume hierarchy, so groups keep them aside and always test them.
+     */
+    public boolean isBounded() {
+        return bounds().isFinite();
+    }
+
     /**
      * @return The boundingbox that encompasses this shape in the shapes object space.
      */
@@ -233,4 +363,21 @@ public abstract class Shape {
     public int hashCode() {
         return Objects.hash(transform, material, shadowCaster, parent);
     }
+
+    private void writeObject(@NotNull ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // Shapes sharing a material share the table's instance, so each
+        // material is only written once
+        out.writeObject(material);
+    }
+
+    private void readObject(@NotNull ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        material = MaterialTable.intern((Material) in.readObject());
+    }
+
+    /**
+     * The composite world to object and normal to world matrices of a shape
+     */
+    private record WorldTransforms(Matrix toObject, Matrix normalToWorld) {}
 }
@@ -15,6 +15,8 @@ import java.util.ArrayList;
  * @version July 14th, 2022
  */
 public class Sphere extends Shape {
+    private static final long serialVersionUID = 1L;
+
     /**
      * Get the points at which a Ray intersects a shape
      * @param ray The ray we wish to test
@@ -9,6 +9,8 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 
 public class TestShape extends Shape {
+    private static final long serialVersionUID = 1L;
+
     public Ray saved_ray;
 
     /**
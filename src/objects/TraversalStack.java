@@ -0,0 +1,95 @@
+package objects;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch space for walking flattened hierarchies, so that a
+ * traversal allocates nothing once its thread has warmed up.  Each thread
+ * has one stack (see get()), shared by every LinearBVH it walks.
+ *
+ * Traversals nest, since a leaf may hold a group with a hierarchy of its own.
+ * A traversal therefore starts from the current top of the stack and puts the
+ * top back where it found it once it's done, leaving the entries below (those
+ * of the traversal that called it) alone.  The arrays may be replaced as they
+ * grow, so they must be read afresh after anything that could nest.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class TraversalStack {
+    private static final ThreadLocal<TraversalStack> local = ThreadLocal.withInitial(TraversalStack::new);
+
+    // Pending nodes, with the packet mask or entry distance of each
+    int[] nodes = new int[64];
+    long[] masks = new long[64];
+    double[] entries = new double[64];
+    int top;
+
+    // Scratch distances for the triangle kernels
+    private double[] times = new double[64];
+
+    private TraversalStack() {}
+
+    /**
+     * @return The calling thread's stack
+     */
+    static TraversalStack get() {
+        return local.get();
+    }
+
+    /**
+     * Pushes a node
+     * @param node The node
+     */
+    void push(int node) {
+        if (top == nodes.length) {
+            grow();
+        }
+        nodes[top++] = node;
+    }
+
+    /**
+     * Pushes a node along with the packet rays which reached it
+     * @param node The node
+     * @param mask The mask of rays
+     */
+    void push(int node, long mask) {
+        if (top == nodes.length) {
+            grow();
+        }
+        masks[top] = mask;
+        nodes[top++] = node;
+    }
+
+    /**
+     * Pushes a node along with the distance at which the ray enters it
+     * @param node The node
+     * @param entry The entry distance
+     */
+    void push(int node, double entry) {
+        if (top == nodes.length) {
+            grow();
+        }
+        entries[top] = entry;
+        nodes[top++] = node;
+    }
+
+    private void grow() {
+        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        masks = Arrays.copyOf(masks, masks.length * 2);
+        entries = Arrays.copyOf(entries, entries.length * 2);
+    }
+
+    /**
+     * Gets an array for the triangle kernels to write their distances into.
+     * Its contents are only good until the next call on the same thread.
+     * @param width The number of distances needed
+     * @return An array of at least that length
+     */
+    double[] times(int width) {
+        if (times.length < width) {
+            times = new double[Math.max(width, times.length * 2)];
+        }
+        return times;
+    }
+}
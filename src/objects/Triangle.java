@@ -15,6 +15,8 @@ import static features.Precompute.EPSILON;
  * @version August 3rd, 2022
  */
 public class Triangle extends Shape {
+    private static final long serialVersionUID = 1L;
+
     private final Point[] points;
     private final Vector[] edges;
     private final Vector normal;
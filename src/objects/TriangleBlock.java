@@ -0,0 +1,119 @@
+package objects;
+
+import features.FastRay;
+import features.Intersection;
+import features.Matrix;
+import features.Point;
+import features.Ray;
+import features.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A handful of triangles (typically one BVH leaf) held as structure of arrays:
+ * the first vertex and the two edge vectors of each triangle are split out into
+ * one array per component.  This lets the intersection kernel test a ray
+ * against all of them together.
+ *
+ * The arrays are padded out to a whole number of kernel lanes.  Padding
+ * triangles have zero length edges, which the kernel treats as parallel to
+ * every ray, so they are never hit.
+ *
+ * @author Mark Edwards
+ * @version October 19th, 2026
+ */
+final class TriangleBlock {
+    private final Triangle[] triangles;
+    private final int width;
+
+    final double[] p0x, p0y, p0z;
+    final double[] e0x, e0y, e0z;
+    final double[] e1x, e1y, e1z;
+
+    /**
+     * Builds a block from the given triangles
+     * @param triangles The triangles, none of which may have a transform
+     * @param lanes The number of lanes to pad the arrays out to
+     */
+    TriangleBlock(@NotNull List<Triangle> triangles, int lanes) {
+        this.triangles = triangles.toArray(new Triangle[0]);
+        width = (triangles.size() + lanes - 1) / lanes * lanes;
+
+        p0x = new double[width]; p0y = new double[width]; p0z = new double[width];
+        e0x = new double[width]; e0y = new double[width]; e0z = new double[width];
+        e1x = new double[width]; e1y = new double[width]; e1z = new double[width];
+
+        for (int i = 0; i < triangles.size(); i++) {
+            Triangle t = triangles.get(i);
+            Point p = t.point(0);
+            Vector e0 = t.edge(0);
+            Vector e1 = t.edge(1);
+
+            p0x[i] = p.getX(); p0y[i] = p.getY(); p0z[i] = p.getZ();
+            e0x[i] = e0.getX(); e0y[i] = e0.getY(); e0z[i] = e0.getZ();
+            e1x[i] = e1.getX(); e1y[i] = e1.getY(); e1z[i] = e1.getZ();
+        }
+    }
+
+    /**
+     * Builds a block for a BVH leaf if every shape in it is a plain,
+     * untransformed triangle.
+     * @param shapes The shapes in the leaf
+     * @param lanes The number of lanes to pad the arrays out to
+     * @return The block, or null if the leaf holds anything else
+     */
+    static @Nullable TriangleBlock of(@NotNull List<Shape> shapes, int lanes) {
+        Matrix identity = Matrix.identity(4);
+        Triangle[] triangles = new Triangle[shapes.size()];
+
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape s = shapes.get(i);
+            if (s.getClass() != Triangle.class || !s.getTransform().equals(identity)) {
+                return null;
+            }
+            triangles[i] = (Triangle) s;
+        }
+        return new TriangleBlock(Arrays.asList(triangles), lanes);
+    }
+
+    /**
+     * @return The number of triangles in the block
+     */
+    int size() {
+        return triangles.length;
+    }
+
+    /**
+     * @return The length of the arrays, including padding
+     */
+    int width() {
+        return width;
+    }
+
+    /**
+     * Intersects a ray with every triangle in the block, appending the hits
+     * to the given list.  Gives the same intersections as calling intersect()
+     * on each of the triangles in turn.
+     * @param ray The ray, in the space of the triangles
+     * @param xs The list to add intersections to
+     */
+    void intersect(@NotNull Ray ray, @NotNull List<Intersection> xs) {
+        intersect(IntersectionKernel.get(), ray.fast(), xs);
+    }
+
+    /**
+     * Intersects a ray with every triangle in the block using a specific
+     * kernel.  The kernel writes its distances into the thread's scratch
+     * array, so nothing is allocated beyond the intersections themselves.
+     */
+    void intersect(@NotNull IntersectionKernel kernel, @NotNull FastRay ray, @NotNull List<Intersection> xs) {
+        double[] t = TraversalStack.get().times(width);
+        for (long hits = kernel.triangles(this, ray, t); hits != 0; hits &= hits - 1) {
+            int i = Long.numberOfTrailingZeros(hits);
+            xs.add(new Intersection(t[i], triangles[i]));
+        }
+    }
+}
@@ -14,6 +14,8 @@ import java.util.Objects;
  * @version July 19th, 2022
  */
 public class BlendedPattern extends Pattern {
+    private static final long serialVersionUID = 1L;
+
     private final Pattern a;
     private final Pattern b;
     private final double blend;
@@ -79,12 +81,12 @@ public class BlendedPattern extends Pattern {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BlendedPattern that = (BlendedPattern) o;
-        return Double.compare(that.blend, blend) == 0 && a.equals(that.a) && b.equals(that.b);
+        return Double.compare(that.blend, blend) == 0 && a.equals(that.a) && b.equals(that.b) && getTransform().equals(that.getTransform());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(a, b, blend);
+        return Objects.hash(a, b, blend, getTransform());
     }
 
     @Override
@@ -14,6 +14,8 @@ import java.util.Objects;
  * @version July 18th, 2022
  */
 public class ConstantColour extends Pattern {
+    private static final long serialVersionUID = 1L;
+
     private Colour colour;
 
     /**
@@ -66,12 +68,12 @@ public class ConstantColour extends Pattern {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ConstantColour that = (ConstantColour) o;
-        return Objects.equals(colour, that.colour);
+        return Objects.equals(colour, that.colour) && getTransform().equals(that.getTransform());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(colour);
+        return Objects.hash(colour, getTransform());
     }
 
     @Override
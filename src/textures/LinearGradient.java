@@ -14,6 +14,8 @@ import java.util.Objects;
  * @version July 19th, 2022
  */
 public class LinearGradient extends Pattern {
+    private static final long serialVersionUID = 1L;
+
     private ArrayList<Colour> colours;
 
     /**
@@ -74,12 +76,12 @@ public class LinearGradient extends Pattern {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         LinearGradient that = (LinearGradient) o;
-        return colours.equals(that.colours);
+        return colours.equals(that.colours) && getTransform().equals(that.getTransform());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(colours);
+        return Objects.hash(colours, getTransform());
     }
 
     @Override
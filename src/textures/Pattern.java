@@ -5,6 +5,8 @@ import features.Matrix;
 import features.Point;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Serializable;
+
 /**
  * Abstract class for a generic pattern.  Individual pattern classes can then
  * override this as required.
@@ -15,7 +17,9 @@ import org.jetbrains.annotations.NotNull;
  * @author Mark Edwards
  * @version July 18th, 2022
  */
-public abstract class Pattern {
+public abstract class Pattern implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Matrix transform;
 
     /**
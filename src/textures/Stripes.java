@@ -15,6 +15,8 @@ import java.util.Objects;
  * @version July 18th, 2022
  */
 public class Stripes extends Pattern {
+    private static final long serialVersionUID = 1L;
+
     private ArrayList<Colour> colours;
 
     /**
@@ -81,12 +83,12 @@ public class Stripes extends Pattern {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Stripes stripes = (Stripes) o;
-        return colours.equals(stripes.colours);
+        return colours.equals(stripes.colours) && getTransform().equals(stripes.getTransform());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(colours);
+        return Objects.hash(colours, getTransform());
     }
 
     @Override
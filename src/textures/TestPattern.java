@@ -5,6 +5,7 @@ import features.Point;
 import org.jetbrains.annotations.NotNull;
 
 public class TestPattern extends Pattern {
+    private static final long serialVersionUID = 1L;
 
     @Override
     public Colour getColour() {